@@ -0,0 +1,67 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Generates service manifests of arbitrary sizes for benchmarking, based off of the test credentials template.
+ */
+final class BenchmarkManifests {
+    enum Format {VCAP, LIST, SINGLE}
+
+    private static final String CREDENTIALS_TEMPLATE_PATH = "src/test/resources/test-service-credentials.json.template";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BenchmarkManifests() {}
+
+    /**
+     * @param format The format of the manifest.
+     * @param serviceCount The number of services in the manifest. Ignored for {@link Format#SINGLE SINGLE} manifests.
+     * @return A manifest where the ID of the i-th service is {@code service-i}.
+     */
+    static String create(Format format, int serviceCount) throws IOException {
+        ObjectNode template = (ObjectNode) objectMapper.readTree(Files.readAllBytes(Paths.get(CREDENTIALS_TEMPLATE_PATH)));
+        JsonNodeFactory nodeFactory = objectMapper.getNodeFactory();
+
+        switch (format) {
+            case SINGLE:
+                return objectMapper.writeValueAsString(createCredentials(template, 0));
+            case LIST:
+                ArrayNode credsList = nodeFactory.arrayNode();
+                for (int i = 0; i < serviceCount; i++) credsList.add(createCredentials(template, i));
+                return objectMapper.writeValueAsString(credsList);
+            case VCAP:
+            default:
+                ArrayNode services = nodeFactory.arrayNode();
+                for (int i = 0; i < serviceCount; i++) {
+                    ObjectNode creds = createCredentials(template, i);
+                    ObjectNode service = nodeFactory.objectNode();
+                    service.put("name", creds.remove("id").asText());
+                    service.put("label", "solace-pubsub");
+                    service.set("credentials", creds);
+                    services.add(service);
+                }
+                ObjectNode vcap = nodeFactory.objectNode();
+                vcap.set("solace-pubsub", services);
+                return objectMapper.writeValueAsString(vcap);
+        }
+    }
+
+    static String getServiceId(int i) {
+        return "service-" + i;
+    }
+
+    private static ObjectNode createCredentials(ObjectNode template, int i) {
+        ObjectNode creds = template.deepCopy();
+        creds.put("id", getServiceId(i));
+        creds.put("msgVpnName", "vpn-" + i);
+        creds.put("clientPassword", "password-" + i);
+        return creds;
+    }
+}
@@ -0,0 +1,74 @@
+package com.solace.services.core.loader;
+
+/**
+ * <p>A log-linear histogram of latencies in nanoseconds, for load testing.</p>
+ *
+ * <p>Values below {@value #SUB_BUCKET_COUNT} are recorded exactly. Larger values are recorded within
+ *      1/{@value #HALF_SUB_BUCKET_COUNT} of their magnitude, which bounds the histogram to a few thousand counters
+ *      whatever the range of the recorded values. Histograms are not thread-safe, and are meant to be recorded to by a
+ *      single thread then {@link #add(LatencyHistogram) merged}.</p>
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_SHIFT = Long.SIZE - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[SUB_BUCKET_COUNT + MAX_SHIFT * HALF_SUB_BUCKET_COUNT];
+    private long totalCount;
+    private long maxValue;
+
+    /**
+     * @param value A latency in nanoseconds. Negative values are recorded as 0.
+     */
+    void record(long value) {
+        if (value < 0) value = 0;
+        counts[indexOf(value)]++;
+        totalCount++;
+        if (value > maxValue) maxValue = value;
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @param percentile A percentile between 0 and 100.
+     * @return The highest value equivalent to the one at the given percentile, 0 if nothing was recorded.
+     */
+    long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long cumulativeCount = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulativeCount += counts[i];
+            if (cumulativeCount >= rank) return Math.min(highestEquivalentValue(i), maxValue);
+        }
+        return maxValue;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        // Shifts the value so that it has SUB_BUCKET_BITS significant bits, its top bit being always set
+        int shift = (Long.SIZE - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - HALF_SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,301 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.solace.services.core.loader.SolaceManifestLoader.PostProcessor;
+import static com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
+import static com.solace.services.core.loader.SolaceManifestLoader.SolaceEnvSource;
+
+/**
+ * <p>Drives {@link SolaceCredentialsLoader#getSolaceServiceInfo(String)} lookups from several threads at once, while
+ *      the manifest is reloaded in the background, and reports the throughput and latency percentiles of every
+ *      scenario.</p>
+ *
+ * <p>Scenarios cover every combination of manifest source, format and size. Manifests are only ever read from a local
+ *      {@value SolaceManifestLoader#MANIFEST_FILE_NAME} file or from a JVM property, and are reloaded by atomically
+ *      replacing the file or by setting the property. Run through the {@code loadtest} profile, with the following
+ *      options:</p>
+ * <ul>
+ *     <li>{@code --threads} The number of lookup threads. Defaults to the number of available processors.</li>
+ *     <li>{@code --warmup} The seconds of unmeasured lookups before each scenario. Defaults to 2.</li>
+ *     <li>{@code --duration} The seconds of measured lookups of each scenario. Defaults to 5.</li>
+ *     <li>{@code --reload-interval} The milliseconds between manifest reloads, 0 for none. Defaults to 250.</li>
+ *     <li>{@code --sizes} The comma-separated numbers of services. Defaults to 1,100,1000,10000. Single-service
+ *          manifests are only run with 1 service.</li>
+ *     <li>{@code --formats} The comma-separated manifest formats. Defaults to VCAP,LIST,SINGLE.</li>
+ *     <li>{@code --sources} The comma-separated manifest sources, FILE or PROPERTY. Defaults to FILE,PROPERTY.</li>
+ * </ul>
+ */
+public class SolaceCredentialsLoaderLoadTest {
+    enum Source {FILE, PROPERTY}
+
+    private static final String RELOADED_PASSWORD_SUFFIX = "-reloaded";
+
+    private final int threadCount;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final long reloadIntervalMillis;
+
+    private SolaceCredentialsLoaderLoadTest(int threadCount, long warmupSeconds, long durationSeconds,
+                                            long reloadIntervalMillis) {
+        this.threadCount = threadCount;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.reloadIntervalMillis = reloadIntervalMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        long warmupSeconds = 2;
+        long durationSeconds = 5;
+        long reloadIntervalMillis = 250;
+        List<Integer> sizes = new ArrayList<>();
+        Collections.addAll(sizes, 1, 100, 1000, 10000);
+        List<BenchmarkManifests.Format> formats = new ArrayList<>();
+        Collections.addAll(formats, BenchmarkManifests.Format.values());
+        List<Source> sources = new ArrayList<>();
+        Collections.addAll(sources, Source.values());
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException(String.format("Missing value for %s", option));
+            String value = args[++i];
+            switch (option) {
+                case "--threads": threadCount = Integer.parseInt(value); break;
+                case "--warmup": warmupSeconds = Long.parseLong(value); break;
+                case "--duration": durationSeconds = Long.parseLong(value); break;
+                case "--reload-interval": reloadIntervalMillis = Long.parseLong(value); break;
+                case "--sizes":
+                    sizes.clear();
+                    for (String size : value.split(",")) sizes.add(Integer.parseInt(size.trim()));
+                    break;
+                case "--formats":
+                    formats.clear();
+                    for (String format : value.split(",")) {
+                        formats.add(BenchmarkManifests.Format.valueOf(format.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                case "--sources":
+                    sources.clear();
+                    for (String source : value.split(",")) {
+                        sources.add(Source.valueOf(source.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown option %s", option));
+            }
+        }
+
+        SolaceCredentialsLoaderLoadTest loadTest =
+                new SolaceCredentialsLoaderLoadTest(threadCount, warmupSeconds, durationSeconds, reloadIntervalMillis);
+        System.out.printf("%d threads, %d s warmup, %d s measurement, reloads every %d ms%n",
+                threadCount, warmupSeconds, durationSeconds, reloadIntervalMillis);
+        System.out.printf("%-8s %-6s %8s %12s %10s %10s %10s %10s %8s %8s%n", "Source", "Format", "Services",
+                "ops/s", "p50 us", "p99 us", "p999 us", "max us", "Reloads", "Misses");
+
+        for (Source source : sources) {
+            for (BenchmarkManifests.Format format : formats) {
+                for (int size : sizes) {
+                    if (format == BenchmarkManifests.Format.SINGLE && size != 1) continue;
+                    loadTest.run(source, format, size).print(source, format, size);
+                }
+            }
+        }
+    }
+
+    private Result run(Source source, BenchmarkManifests.Format format, int serviceCount) throws Exception {
+        String manifest = BenchmarkManifests.create(format, serviceCount);
+        // Changes the password of the first service, so that reloads re-bind at least one service
+        String reloadedManifest = manifest.replaceFirst(
+                "\"password-0\"", "\"password-0" + RELOADED_PASSWORD_SUFFIX + "\"");
+        ManifestSource manifestSource = source == Source.FILE ? new FileManifestSource() : new PropertyManifestSource();
+        try {
+            manifestSource.write(manifest);
+            SolaceCredentialsLoader loader = SolaceCredentialsLoader.createIsolated(
+                    new SolaceManifestLoader(manifestSource.getSearchQueries()));
+            loader.preload();
+
+            runPhase(loader, serviceCount, manifestSource, manifest, reloadedManifest, warmupNanos);
+            return runPhase(loader, serviceCount, manifestSource, manifest, reloadedManifest, durationNanos);
+        } finally {
+            manifestSource.close();
+        }
+    }
+
+    private Result runPhase(final SolaceCredentialsLoader loader, final int serviceCount,
+                            final ManifestSource manifestSource, final String manifest, final String reloadedManifest,
+                            long phaseNanos) throws InterruptedException, IOException {
+        final long deadline = System.nanoTime() + phaseNanos;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final LatencyHistogram[] histograms = new LatencyHistogram[threadCount];
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong reloads = new AtomicLong();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final LatencyHistogram histogram = histograms[i] = new LatencyHistogram();
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        long missCount = 0;
+                        while (System.nanoTime() < deadline) {
+                            String serviceId = BenchmarkManifests.getServiceId(random.nextInt(serviceCount));
+                            long startTime = System.nanoTime();
+                            SolaceServiceCredentials svcCreds = loader.getSolaceServiceInfo(serviceId);
+                            histogram.record(System.nanoTime() - startTime);
+                            if (svcCreds == null) missCount++;
+                        }
+                        misses.addAndGet(missCount);
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            }, "solace-load-test-" + i));
+        }
+
+        Thread reloadThread = null;
+        if (reloadIntervalMillis > 0) {
+            reloadThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()) > reloadIntervalMillis) {
+                            Thread.sleep(reloadIntervalMillis);
+                            manifestSource.write(reloads.incrementAndGet() % 2 == 1 ? reloadedManifest : manifest);
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            }, "solace-load-test-reload");
+        }
+
+        long startTime = System.nanoTime();
+        for (Thread thread : threads) thread.start();
+        if (reloadThread != null) reloadThread.start();
+        startLatch.countDown();
+        for (Thread thread : threads) thread.join();
+        long elapsedNanos = System.nanoTime() - startTime;
+        if (reloadThread != null) reloadThread.join();
+
+        if (!failures.isEmpty()) throw new IllegalStateException("Load test failed", failures.get(0));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (LatencyHistogram threadHistogram : histograms) histogram.add(threadHistogram);
+        // Restores the original manifest for the next phase
+        if (reloads.get() % 2 == 1) manifestSource.write(manifest);
+        return new Result(histogram, elapsedNanos, reloads.get(), misses.get());
+    }
+
+    private interface ManifestSource {
+        List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> getSearchQueries();
+
+        void write(String manifest) throws IOException;
+
+        void close() throws IOException;
+    }
+
+    private static class FileManifestSource implements ManifestSource {
+        private final Path dir;
+        private final Path file;
+
+        FileManifestSource() throws IOException {
+            dir = Files.createTempDirectory("solace-load-test");
+            file = dir.resolve(SolaceManifestLoader.MANIFEST_FILE_NAME);
+            System.setProperty(SolaceEnv.SOLACE_SERVICES_HOME.name(), dir.toString());
+        }
+
+        @Override
+        public List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> getSearchQueries() {
+            return Collections.<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>>singletonList(
+                    new ImmutableTriple<>(SolaceEnv.SOLACE_SERVICES_HOME, SolaceEnvSource.JVM, PostProcessor.FILE));
+        }
+
+        @Override
+        public void write(String manifest) throws IOException {
+            // Replaced atomically so that lookups never read a partially written manifest
+            Path tmpFile = Files.createTempFile(dir, "manifest", ".tmp");
+            Files.write(tmpFile, manifest.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            System.clearProperty(SolaceEnv.SOLACE_SERVICES_HOME.name());
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static class PropertyManifestSource implements ManifestSource {
+        @Override
+        public List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> getSearchQueries() {
+            return Collections.<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>>singletonList(
+                    new ImmutableTriple<>(SolaceEnv.SOLCAP_SERVICES, SolaceEnvSource.JVM, PostProcessor.NONE));
+        }
+
+        @Override
+        public void write(String manifest) {
+            System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), manifest);
+        }
+
+        @Override
+        public void close() {
+            System.clearProperty(SolaceEnv.SOLCAP_SERVICES.name());
+        }
+    }
+
+    private static class Result {
+        final LatencyHistogram histogram;
+        final long elapsedNanos;
+        final long reloads;
+        final long misses;
+
+        Result(LatencyHistogram histogram, long elapsedNanos, long reloads, long misses) {
+            this.histogram = histogram;
+            this.elapsedNanos = elapsedNanos;
+            this.reloads = reloads;
+            this.misses = misses;
+        }
+
+        void print(Source source, BenchmarkManifests.Format format, int serviceCount) {
+            double throughput = histogram.getTotalCount() / (elapsedNanos / 1e9);
+            System.out.printf(Locale.ROOT, "%-8s %-6s %8d %12.0f %10.1f %10.1f %10.1f %10.1f %8d %8d%n",
+                    source, format, serviceCount, throughput,
+                    toMicros(histogram.getValueAtPercentile(50)),
+                    toMicros(histogram.getValueAtPercentile(99)),
+                    toMicros(histogram.getValueAtPercentile(99.9)),
+                    toMicros(histogram.getMaxValue()),
+                    reloads, misses);
+        }
+
+        private static double toMicros(long nanos) {
+            return nanos / 1e3;
+        }
+    }
+}
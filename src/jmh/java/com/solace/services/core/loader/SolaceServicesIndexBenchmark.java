@@ -0,0 +1,81 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Service lookups and index builds with a {@link HashMap} versus a {@link SolaceServicesIndex}.</p>
+ *
+ * <p>The sizes bracket {@link SolaceServicesIndex#MIN_INDEXED_SERVICES}, the fewest services the loader indexes.</p>
+ *
+ * <p>Run with {@code -prof gc} to compare the bytes allocated per {@code build}, most of which the built map retains.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SolaceServicesIndexBenchmark {
+    @Param({"HASH_MAP", "INDEX"}) public String map;
+    @Param({"100", "10000", "30000", "50000", "100000"}) public int serviceCount;
+
+    private List<SolaceServiceCredentials> svcsCreds;
+    private Map<String, SolaceServiceCredentials> svcsCredsMap;
+    private String[] lookupIds;
+    private int lookup = 0;
+
+    @Setup
+    public void setup() {
+        svcsCreds = new ArrayList<>();
+        for (int i = 0; i < serviceCount; i++) {
+            SolaceServiceCredentialsImpl creds = new SolaceServiceCredentialsImpl();
+            creds.setId(BenchmarkManifests.getServiceId(i));
+            svcsCreds.add(creds);
+        }
+        svcsCredsMap = build();
+
+        // Copies of every ID in random order, as passed in by callers, so that lookups neither match on reference
+        // equality alone nor stay within a cache-friendly subset of the services
+        lookupIds = new String[serviceCount];
+        for (int i = 0; i < lookupIds.length; i++) lookupIds[i] = new String(BenchmarkManifests.getServiceId(i));
+        Random random = new Random(0);
+        Collections.shuffle(Arrays.asList(lookupIds), random);
+        Collections.shuffle(svcsCreds, random);
+    }
+
+    @Benchmark
+    public SolaceServiceCredentials get() {
+        if (++lookup == lookupIds.length) lookup = 0;
+        return svcsCredsMap.get(lookupIds[lookup]);
+    }
+
+    @Benchmark
+    public Map<String, SolaceServiceCredentials> build() {
+        if (map.equals("INDEX")) return SolaceServicesIndex.of(svcsCreds);
+
+        Map<String, SolaceServiceCredentials> hashMap = new HashMap<>();
+        for (SolaceServiceCredentials creds : svcsCreds) hashMap.put(creds.getId(), creds);
+        return hashMap;
+    }
+}
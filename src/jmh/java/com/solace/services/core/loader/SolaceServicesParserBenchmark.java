@@ -0,0 +1,52 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manifest parse throughput with reflective bean binding versus a bytecode-generating binding module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SolaceServicesParserBenchmark {
+    @Param({"REFLECTION", "BYTECODE"}) public String binding;
+    @Param({"VCAP", "LIST"}) public String format;
+    @Param({"1", "100"}) public int serviceCount;
+
+    private SolaceServicesParser servicesParser;
+    private String manifest;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        if (binding.equals("BYTECODE") && !ObjectMapperSingleton.registerBindingModule(objectMapper))
+            throw new IllegalStateException("No binding module found on the classpath");
+
+        servicesParser = new SolaceServicesParser(objectMapper);
+        manifest = BenchmarkManifests.create(BenchmarkManifests.Format.valueOf(format), serviceCount);
+    }
+
+    @Benchmark
+    public List<SolaceServiceCredentials> parse() throws IOException {
+        return servicesParser.parse(manifest);
+    }
+}
@@ -0,0 +1,62 @@
+package com.solace.services.core.loader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * <p>Adapts a {@link SolaceCredentialsLoader} to an {@code org.crac.Resource} so that its snapshots are dropped
+ *      before a checkpoint and reloaded after a restore.</p>
+ *
+ * <p>The {@code org.crac} API is accessed reflectively, so it remains an optional dependency.</p>
+ */
+class CheckpointResource implements InvocationHandler {
+    private static final String RESOURCE_CLASS_NAME = "org.crac.Resource";
+    private static final String CORE_CLASS_NAME = "org.crac.Core";
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointResource.class);
+
+    private final SolaceCredentialsLoader credentialsLoader;
+
+    private CheckpointResource(SolaceCredentialsLoader credentialsLoader) {
+        this.credentialsLoader = credentialsLoader;
+    }
+
+    /**
+     * Registers the loader to the global {@code org.crac} context.
+     * The context only keeps weak references to its resources, so the returned resource must be kept reachable.
+     * @param credentialsLoader The loader to register.
+     * @return The registered resource, null if the {@code org.crac} API is not on the classpath.
+     */
+    static Object register(SolaceCredentialsLoader credentialsLoader) {
+        try {
+            ClassLoader classLoader = CheckpointResource.class.getClassLoader();
+            Class<?> resourceClass = Class.forName(RESOURCE_CLASS_NAME, true, classLoader);
+            Object context = Class.forName(CORE_CLASS_NAME, true, classLoader).getMethod("getGlobalContext").invoke(null);
+            Object resource = Proxy.newProxyInstance(classLoader, new Class<?>[]{resourceClass},
+                    new CheckpointResource(credentialsLoader));
+            context.getClass().getMethod("register", resourceClass).invoke(context, resource);
+            return resource;
+        } catch (ClassNotFoundException e) {
+            logger.debug("{} is not on the classpath, skipping checkpoint registration", RESOURCE_CLASS_NAME);
+            return null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Failed to register a checkpoint resource", e);
+            return null;
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "beforeCheckpoint": credentialsLoader.beforeCheckpoint(); return null;
+            case "afterRestore": credentialsLoader.afterRestore(); return null;
+            case "equals": return proxy == args[0];
+            case "hashCode": return System.identityHashCode(proxy);
+            case "toString": return String.format("%s[%s]", getClass().getSimpleName(), credentialsLoader);
+            default: throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
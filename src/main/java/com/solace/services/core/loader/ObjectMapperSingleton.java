@@ -1,14 +1,50 @@
 package com.solace.services.core.loader;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class ObjectMapperSingleton extends ObjectMapper {
     private static ObjectMapper instance;
+    private static final Logger logger = LoggerFactory.getLogger(ObjectMapperSingleton.class);
+
+    // Optional modules which replace reflective bean binding with generated bytecode, in order of preference
+    private static final String[] BINDING_MODULES = {
+            "com.fasterxml.jackson.module.blackbird.BlackbirdModule",
+            "com.fasterxml.jackson.module.afterburner.AfterburnerModule"
+    };
 
     private ObjectMapperSingleton() {}
 
-    public static ObjectMapper getInstance() {
-        if (instance == null) instance = new ObjectMapper();
+    public static synchronized ObjectMapper getInstance() {
+        if (instance == null) {
+            instance = new ObjectMapper();
+            // Keeps the manifest, and thus its credentials, out of the messages of parser exceptions
+            instance.disable(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION);
+            if (Boolean.getBoolean(SolaceCredentialsLoader.BYTECODE_BINDING_PROPERTY)) registerBindingModule(instance);
+        }
         return instance;
     }
+
+    /**
+     * Registers the first bytecode-generating binding module found on the classpath.
+     * @param objectMapper The object mapper to register the module to.
+     * @return True if a module was registered.
+     */
+    static boolean registerBindingModule(ObjectMapper objectMapper) {
+        for (String moduleClassName : BINDING_MODULES) {
+            try {
+                objectMapper.registerModule((Module) Class.forName(moduleClassName).newInstance());
+                logger.debug("Registered Jackson binding module {}", moduleClassName);
+                return true;
+            } catch (ClassNotFoundException e) {
+                // Not on the classpath
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+                logger.warn("Ignoring Jackson binding module {}, it could not be registered", moduleClassName, e);
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,246 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+
+import javax.naming.Context;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * <p>The connection properties of Solace services, compiled once from their {@link SolaceServiceCredentials} so that
+ *      they can be reused to create any number of sessions.</p>
+ *
+ * <p>Properties are keyed by the names expected by the Solace JCSMP and JMS APIs, without depending on either:</p>
+ * <table summary="Compiled connection properties for each protocol.">
+ *     <tr><th>Protocol</th><th>Properties</th></tr>
+ *     <tr>
+ *         <td>{@link Protocol#JCSMP JCSMP}, {@link Protocol#JCSMP_TLS JCSMP_TLS},
+ *              {@link Protocol#JCSMP_COMPRESSED JCSMP_COMPRESSED}</td>
+ *         <td>The JCSMPProperties {@value #JCSMP_HOST}, {@value #JCSMP_VPN_NAME}, {@value #JCSMP_USERNAME} and
+ *              {@value #JCSMP_PASSWORD}.</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@link Protocol#JMS JMS}, {@link Protocol#JMS_TLS JMS_TLS}</td>
+ *         <td>The JNDI environment {@value Context#PROVIDER_URL}, {@value Context#SECURITY_PRINCIPAL} and
+ *              {@value Context#SECURITY_CREDENTIALS}, as well as {@value #JMS_VPN}.</td>
+ *     </tr>
+ * </table>
+ *
+ * <p>A service only has properties for the protocols it has hosts or URIs for. All returned properties and maps are
+ *      unmodifiable.</p>
+ */
+public class SolaceConnectionProperties {
+    public enum Protocol {JCSMP, JCSMP_TLS, JCSMP_COMPRESSED, JMS, JMS_TLS}
+
+    public static final String JCSMP_HOST = "host";
+    public static final String JCSMP_VPN_NAME = "vpn_name";
+    public static final String JCSMP_USERNAME = "username";
+    public static final String JCSMP_PASSWORD = "password";
+    public static final String JMS_VPN = "Solace_JMS_VPN";
+
+    private final Map<String, Map<Protocol, CompiledProperties>> svcsProperties;
+
+    private SolaceConnectionProperties(Map<String, Map<Protocol, CompiledProperties>> svcsProperties) {
+        this.svcsProperties = svcsProperties;
+    }
+
+    /**
+     * @param svcsCreds A map of {@link SolaceServiceCredentials#getId() service IDs} to {@link SolaceServiceCredentials}.
+     * @return The connection properties of every given service.
+     */
+    public static SolaceConnectionProperties compile(Map<String, ? extends SolaceServiceCredentials> svcsCreds) {
+        return compile(svcsCreds.values());
+    }
+
+    /**
+     * @param svcsCreds The credentials of several services.
+     * @return The connection properties of every given service, keyed by {@link SolaceServiceCredentials#getId() ID}.
+     */
+    public static SolaceConnectionProperties compile(Collection<? extends SolaceServiceCredentials> svcsCreds) {
+        Map<String, Map<Protocol, CompiledProperties>> svcsProperties = new HashMap<>();
+        for (SolaceServiceCredentials svcCreds : svcsCreds) {
+            Map<Protocol, CompiledProperties> svcProperties = new EnumMap<>(Protocol.class);
+            for (Protocol protocol : Protocol.values()) {
+                CompiledProperties properties = compile(svcCreds, protocol);
+                if (properties != null) svcProperties.put(protocol, properties);
+            }
+            svcsProperties.put(svcCreds.getId(), svcProperties);
+        }
+        return new SolaceConnectionProperties(svcsProperties);
+    }
+
+    /**
+     * @return The IDs of the compiled services.
+     */
+    public Set<String> getServiceIds() {
+        return Collections.unmodifiableSet(svcsProperties.keySet());
+    }
+
+    /**
+     * @param serviceId The ID of a Solace service.
+     * @param protocol The protocol to connect with.
+     * @return The unmodifiable connection properties, null if the service is unknown or has no hosts for the protocol.
+     */
+    public Properties getProperties(String serviceId, Protocol protocol) {
+        CompiledProperties properties = getCompiledProperties(serviceId, protocol);
+        return properties != null ? properties.properties : null;
+    }
+
+    /**
+     * @param serviceId The ID of a Solace service.
+     * @param protocol The protocol to connect with.
+     * @return The unmodifiable connection properties as a map, null if the service is unknown or has no hosts for the
+     *      protocol.
+     */
+    public Map<String, String> getPropertiesMap(String serviceId, Protocol protocol) {
+        CompiledProperties properties = getCompiledProperties(serviceId, protocol);
+        return properties != null ? properties.map : null;
+    }
+
+    private CompiledProperties getCompiledProperties(String serviceId, Protocol protocol) {
+        Map<Protocol, CompiledProperties> svcProperties = svcsProperties.get(serviceId);
+        return svcProperties != null ? svcProperties.get(protocol) : null;
+    }
+
+    private static CompiledProperties compile(SolaceServiceCredentials svcCreds, Protocol protocol) {
+        String host;
+        switch (protocol) {
+            case JCSMP: host = svcCreds.getSmfHost(); break;
+            case JCSMP_TLS: host = svcCreds.getSmfTlsHost(); break;
+            case JCSMP_COMPRESSED: host = svcCreds.getSmfZipHost(); break;
+            case JMS: host = svcCreds.getJmsJndiUri(); break;
+            case JMS_TLS: host = svcCreds.getJmsJndiTlsUri(); break;
+            default: host = null;
+        }
+        if (host == null || host.isEmpty()) return null;
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        switch (protocol) {
+            case JMS:
+            case JMS_TLS:
+                properties.put(Context.PROVIDER_URL, host);
+                setProperty(properties, JMS_VPN, svcCreds.getMsgVpnName());
+                setProperty(properties, Context.SECURITY_PRINCIPAL, svcCreds.getClientUsername());
+                setProperty(properties, Context.SECURITY_CREDENTIALS, svcCreds.getClientPassword());
+                break;
+            default:
+                properties.put(JCSMP_HOST, host);
+                setProperty(properties, JCSMP_VPN_NAME, svcCreds.getMsgVpnName());
+                setProperty(properties, JCSMP_USERNAME, svcCreds.getClientUsername());
+                setProperty(properties, JCSMP_PASSWORD, svcCreds.getClientPassword());
+        }
+        return new CompiledProperties(properties);
+    }
+
+    private static void setProperty(Map<String, String> properties, String key, String value) {
+        if (value != null) properties.put(key, value);
+    }
+
+    private static class CompiledProperties {
+        final Map<String, String> map;
+        final Properties properties;
+
+        CompiledProperties(Map<String, String> properties) {
+            this.map = Collections.unmodifiableMap(properties);
+            this.properties = new UnmodifiableProperties(properties);
+        }
+    }
+
+    private static class UnmodifiableProperties extends Properties {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean initialized;
+
+        UnmodifiableProperties(Map<String, String> properties) {
+            super.putAll(properties);
+            initialized = true;
+        }
+
+        @Override
+        public synchronized Object put(Object key, Object value) {
+            if (initialized) throw new UnsupportedOperationException();
+            return super.put(key, value);
+        }
+
+        @Override
+        public synchronized void putAll(Map<?, ?> t) {
+            if (initialized) throw new UnsupportedOperationException();
+            super.putAll(t);
+        }
+
+        @Override
+        public synchronized Object remove(Object key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized void clear() {
+            throw new UnsupportedOperationException();
+        }
+
+        // Overrides every mutator Hashtable added in Java 8, each of which would otherwise modify it without going
+        // through put(). They are not annotated with @Override since the sources are compiled at the Java 7 level,
+        // where Hashtable does not declare them, and are never called on a Java 7 JVM.
+        public synchronized Object putIfAbsent(Object key, Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        public synchronized boolean remove(Object key, Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        public synchronized Object replace(Object key, Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        public synchronized Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+            throw new UnsupportedOperationException();
+        }
+
+        public synchronized Object computeIfPresent(Object key,
+                                                    BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            throw new UnsupportedOperationException();
+        }
+
+        public synchronized Object compute(Object key,
+                                           BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            throw new UnsupportedOperationException();
+        }
+
+        public synchronized Object merge(Object key, Object value,
+                                         BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            throw new UnsupportedOperationException();
+        }
+
+        public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<Object> keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return Collections.unmodifiableSet(super.entrySet());
+        }
+
+        @Override
+        public Collection<Object> values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+    }
+}
@@ -1,20 +1,33 @@
 package com.solace.services.core.loader;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.solace.services.core.model.SolaceSecret;
 import com.solace.services.core.model.SolaceServiceCredentials;
-import com.solace.services.core.model.SolaceServiceCredentialsImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>Reads Solace service credentials from one of the property sources defined in {@link SolaceManifestLoader}.</p>
@@ -46,43 +59,88 @@ import java.util.Map;
  *     </tr>
  * </table>
  */
-public class SolaceCredentialsLoader {
-    private SolaceManifestLoader manifestLoader = new SolaceManifestLoader();
+public class SolaceCredentialsLoader implements Closeable {
+    /**
+     * Set this JVM property to true to {@link #preload() preload} the manifest in the background as soon as this
+     * class is initialized.
+     */
+    public static final String PRELOAD_PROPERTY = "solace.services.preload";
+
+    /**
+     * Set this JVM property to true to decode manifests without Jackson data-binding, and hence without reflection.
+     * This is the default within GraalVM native images.
+     */
+    public static final String REFLECTION_FREE_PROPERTY = "solace.services.reflectionFree";
+
+    /**
+     * Set this JVM property to true to register the Jackson Blackbird or Afterburner module, whichever is found first
+     * on the classpath, to the default object mapper, so that manifests are bound with generated bytecode rather than
+     * reflection. Neither is registered otherwise, even if found on the classpath.
+     */
+    public static final String BYTECODE_BINDING_PROPERTY = "solace.services.bytecodeBinding";
+
+    /**
+     * Set this JVM property to true to hold service passwords in off-heap {@link SolaceSecret secrets} instead of heap
+     * strings. The secrets of the services dropped {@link #beforeCheckpoint() before a checkpoint} are wiped, after
+     * which their passwords read as null. Services replaced when the manifest changes are left intact, since other
+     * loaders sharing the same snapshot may still be using them.
+     */
+    public static final String OFF_HEAP_SECRETS_PROPERTY = "solace.services.offHeapSecrets";
 
     private static final Logger logger = LoggerFactory.getLogger(SolaceCredentialsLoader.class);
-    private static final ObjectReader defaultReader;
-    private static final ObjectReader servicesReader;
-    private static final ObjectReader credsListReader;
-    private static final ObjectReader credReader;
-    private static final String SOLACE_MESSAGING_SVC_NAME = "solace-messaging";
-    private static final String SOLACE_PUBSUB_SVC_NAME = "solace-pubsub";
+
+    // Shared by all loaders using the default object mapper so that a preloaded snapshot benefits every loader
+    private static final SolaceServicesParser defaultServicesParser = createDefaultServicesParser();
 
     static {
-        ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
-        defaultReader = objectMapper.reader();
-        servicesReader = objectMapper.readerFor(VCAPServicesInfo.class);
-        credsListReader = objectMapper.readerFor(new TypeReference<List<SolaceServiceCredentialsImpl>>(){});
-        credReader = objectMapper.readerFor(SolaceServiceCredentialsImpl.class);
+        if (Boolean.getBoolean(PRELOAD_PROPERTY)) preloadInBackground();
     }
 
+    private SolaceManifestLoader manifestLoader = new SolaceManifestLoader();
+    private volatile SolaceServicesParser servicesParser = defaultServicesParser;
+    private volatile SolaceManifestDirectory manifestDirectory = new SolaceManifestDirectory(servicesParser);
+    private volatile boolean layeredManifests = false;
+    private volatile boolean manifestDirectoryEnabled = false;
+
+    // Layered view cache, only recomputed when any of the layers' manifests change
+    private List<String> cachedLayers = Collections.emptyList();
+    private Map<String, List<SolaceServiceCredentials>> cachedLayersCreds = Collections.emptyMap();
+    private Map<String, SolaceServiceCredentials> cachedLayeredCreds = Collections.emptyMap();
+
+    // Null unless refreshing ahead
+    private volatile SolaceServicesRefresher refresher;
+
+    // Replaced whenever the sidecar's address changes
+    private volatile SolaceServicesSidecarClient sidecarClient;
+    private volatile boolean sidecarFailing = false;
+
+    // Keyed by the identity of the services it was compiled from
+    private volatile ConnectionPropertiesCache connectionPropertiesCache;
+
+    // Strongly referenced since checkpoint contexts only weakly reference their resources
+    private Object checkpointResource;
+
     /**
      * Fetches all the Solace services from the cloud environment's manifest.
      * @return A map of {@link SolaceServiceCredentials#getId() service IDs} to {@link SolaceServiceCredentials}.
      */
     public Map<String, SolaceServiceCredentials> getAllSolaceServiceInfo() {
-        String raw = manifestLoader.getManifest();
-        if (raw == null || raw.isEmpty()) return new HashMap<>();
+        return new HashMap<>(getServicesCredentials());
+    }
 
-        Map<String, SolaceServiceCredentials> svcsCreds = new HashMap<>();
-        try {
-            for (SolaceServiceCredentials creds : getServicesCredentials(raw)) svcsCreds.put(creds.getId(), creds);
-        } catch (IOException e) {
-            String msg = String.format("The provided services manifest does not have the expected format:\n%s", raw);
-            logger.error(msg);
-            throw new IllegalArgumentException(msg);
-        }
+    /**
+     * Gets the connection properties of all the Solace services from the cloud environment's manifest.
+     * They are only compiled anew when the manifest's services change.
+     * @return The connection properties of every service, keyed by {@link SolaceServiceCredentials#getId() ID}.
+     */
+    public SolaceConnectionProperties getConnectionProperties() {
+        Map<String, SolaceServiceCredentials> svcsCreds = getServicesCredentials();
+        ConnectionPropertiesCache cache = connectionPropertiesCache;
+        if (cache != null && cache.svcsCreds == svcsCreds) return cache.connectionProperties;
 
-        return svcsCreds;
+        SolaceConnectionProperties connectionProperties = SolaceConnectionProperties.compile(svcsCreds);
+        connectionPropertiesCache = new ConnectionPropertiesCache(svcsCreds, connectionProperties);
+        return connectionProperties;
     }
 
     /**
@@ -90,8 +148,9 @@ public class SolaceCredentialsLoader {
      * @return A single {@link SolaceServiceCredentials}, null if none found.
      */
     public SolaceServiceCredentials getSolaceServiceInfo() {
-        Iterator<Map.Entry<String, SolaceServiceCredentials>> iterator = getAllSolaceServiceInfo().entrySet().iterator();
-        return iterator.hasNext() ? iterator.next().getValue() : null;
+        // Looked up in the snapshot itself rather than in a copy of it
+        Iterator<SolaceServiceCredentials> iterator = getServicesCredentials().values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
     }
 
     /**
@@ -100,7 +159,210 @@ public class SolaceCredentialsLoader {
      * @return The {@link SolaceServiceCredentials} associated to the given ID, null if none found.
      */
     public SolaceServiceCredentials getSolaceServiceInfo(String serviceId) {
-        return getAllSolaceServiceInfo().get(serviceId);
+        return getServicesCredentials().get(serviceId);
+    }
+
+    /**
+     * Gets the specified Solace services from the application environment's services manifest.
+     * The manifest is loaded once, and only the requested services are retained unless a snapshot of it was already
+     * taken. If a service ID is defined more than once, the last occurrence is used, as with every other lookup.
+     * @param serviceIds The IDs of the Solace services.
+     * @return A map of each requested service ID to its associated {@link SolaceServiceCredentials}.
+     *      IDs with no associated service are mapped to null.
+     */
+    public Map<String, SolaceServiceCredentials> getSolaceServiceInfo(Collection<String> serviceIds) {
+        Set<String> pendingIds = new HashSet<>(serviceIds);
+        Map<String, SolaceServiceCredentials> svcsCreds = new LinkedHashMap<>();
+        for (String serviceId : serviceIds) svcsCreds.put(serviceId, null);
+
+        SolaceServicesRefresher currentRefresher = pendingIds.isEmpty() ? null : refresher;
+        if (currentRefresher != null) {
+            Map<String, SolaceServiceCredentials> refreshedCreds = currentRefresher.getServicesCredentials();
+            for (String serviceId : serviceIds) svcsCreds.put(serviceId, refreshedCreds.get(serviceId));
+            return svcsCreds;
+        }
+
+        Map<String, SolaceServiceCredentials> sidecarCreds = pendingIds.isEmpty() ? null : getSidecarServicesCredentials();
+        if (sidecarCreds != null) {
+            for (String serviceId : serviceIds) svcsCreds.put(serviceId, sidecarCreds.get(serviceId));
+            return svcsCreds;
+        }
+
+        if (layeredManifests && !pendingIds.isEmpty()) {
+            Map<String, SolaceServiceCredentials> layeredCreds = getLayeredServicesCredentials();
+            for (String serviceId : serviceIds) svcsCreds.put(serviceId, layeredCreds.get(serviceId));
+            return svcsCreds;
+        }
+
+        Path manifestDir = pendingIds.isEmpty() ? null : getManifestDirectory();
+        if (manifestDir != null) {
+            Map<String, SolaceServiceCredentials> dirCreds = manifestDirectory.getServicesCredentials(manifestDir);
+            for (String serviceId : serviceIds) svcsCreds.put(serviceId, dirCreds.get(serviceId));
+            return svcsCreds;
+        }
+
+        String raw = pendingIds.isEmpty() ? null : manifestLoader.getManifest();
+        if (raw == null || raw.isEmpty()) return svcsCreds;
+
+        Map<String, SolaceServiceCredentials> snapshot = servicesParser.getCachedSnapshot(raw);
+        if (snapshot != null) {
+            for (String serviceId : serviceIds) svcsCreds.put(serviceId, snapshot.get(serviceId));
+            return svcsCreds;
+        }
+
+        try {
+            servicesParser.find(raw, pendingIds, svcsCreds);
+        } catch (IOException e) {
+            throw invalidManifest(new SolaceManifestParseException(e, raw));
+        }
+
+        if (!pendingIds.isEmpty()) logger.debug("No Solace services found for IDs {}", pendingIds);
+        return svcsCreds;
+    }
+
+    /**
+     * Iterates over the Solace services of the application environment's manifest one at a time, so that manifests
+     * too large to be held whole in memory can still be processed. A manifest file is read as its services are
+     * iterated over, rather than up front.
+     * Only the manifest which {@link SolaceManifestLoader#getManifest()} loads is iterated over, regardless of the
+     * sidecar, layered manifests or a manifest directory, and snapshots are neither used nor taken.
+     * @return An iterator over every service of the manifest, including those sharing an ID, which must be closed
+     *      unless exhausted. Empty if no manifest was found.
+     * @throws SolaceManifestParseException If the manifest's root is malformed or could not be read. Errors in its
+     *      services are thrown by the iterator as they are reached.
+     */
+    public SolaceServicesIterator iterateSolaceServices() {
+        SolaceManifestLoader.ManifestSource source = manifestLoader.findManifestSource();
+        if (source == null) return SolaceServicesIterator.empty();
+
+        try {
+            return source.file != null ? servicesParser.iterate(source.file) : servicesParser.iterate(source.content);
+        } catch (IOException e) {
+            throw invalidManifest(new SolaceManifestParseException(e, source.content));
+        }
+    }
+
+    /**
+     * Marshals the services of the given manifest, rather than those of a manifest found in the environment.
+     * The bytes are fed straight to the JSON parser without first being decoded into a string.
+     * @param manifest A UTF-8, UTF-16 or UTF-32 encoded service manifest, optionally compressed as detected by
+     *      {@link SolaceManifestCompression}, in which case it is decompressed as it is parsed. The stream is not
+     *      closed.
+     * @return A map of {@link SolaceServiceCredentials#getId() service IDs} to {@link SolaceServiceCredentials}.
+     * @throws IOException If the stream could not be read.
+     * @throws SolaceManifestParseException If the manifest does not have the expected format.
+     */
+    public Map<String, SolaceServiceCredentials> parse(InputStream manifest) throws IOException {
+        try {
+            return toServicesMap(servicesParser.parse(manifest));
+        } catch (JsonProcessingException e) {
+            throw invalidManifest(new SolaceManifestParseException(e, null));
+        }
+    }
+
+    /**
+     * Marshals the services of the given manifest, rather than those of a manifest found in the environment.
+     * The bytes are fed straight to the JSON parser without first being decoded into a string.
+     * @param manifest A buffer containing a UTF-8, UTF-16 or UTF-32 encoded service manifest, optionally compressed.
+     * @param offset The offset of the manifest within the buffer.
+     * @param length The length of the manifest.
+     * @return A map of {@link SolaceServiceCredentials#getId() service IDs} to {@link SolaceServiceCredentials}.
+     * @throws SolaceManifestParseException If the manifest does not have the expected format.
+     */
+    public Map<String, SolaceServiceCredentials> parse(byte[] manifest, int offset, int length) {
+        if (SolaceManifestCompression.isCompressed(manifest, offset, length)) {
+            try {
+                return parse(new ByteArrayInputStream(manifest, offset, length));
+            } catch (IOException e) {
+                throw invalidManifest(new SolaceManifestParseException(e, null));
+            }
+        }
+
+        try {
+            return toServicesMap(servicesParser.parse(manifest, offset, length));
+        } catch (IOException e) {
+            throw invalidManifest(new SolaceManifestParseException(e, manifest, offset, length));
+        }
+    }
+
+    /**
+     * Marshals the services of the given manifest, rather than those of a manifest found in the environment.
+     * The bytes are fed straight to the JSON parser without first being decoded into a string.
+     * @param manifest A buffer whose remaining bytes are a UTF-8, UTF-16 or UTF-32 encoded service manifest,
+     *      optionally compressed. Its position is left unchanged.
+     * @return A map of {@link SolaceServiceCredentials#getId() service IDs} to {@link SolaceServiceCredentials}.
+     * @throws SolaceManifestParseException If the manifest does not have the expected format.
+     */
+    public Map<String, SolaceServiceCredentials> parse(ByteBuffer manifest) {
+        if (manifest.hasArray()) {
+            return parse(manifest.array(), manifest.arrayOffset() + manifest.position(), manifest.remaining());
+        }
+
+        try {
+            return parse(new ByteBufferBackedInputStream(manifest.duplicate()));
+        } catch (IOException e) {
+            throw invalidManifest(new SolaceManifestParseException(e, null));
+        }
+    }
+
+    /**
+     * Loads and marshals the manifest ahead of time, so that lookups are served from a ready snapshot for as long as
+     * the manifest is unchanged. Can be used to keep the cost of the first lookup off of an application's first
+     * request.
+     * @return The number of services found.
+     */
+    public int preload() {
+        long startTime = System.nanoTime();
+        int serviceCount = getAllSolaceServiceInfo().size();
+        logger.debug("Preloaded {} Solace services in {} ms",
+                serviceCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return serviceCount;
+    }
+
+    /**
+     * Drops every cached snapshot of this loader, as well as the shared snapshot of loaders using the default object
+     * mapper, so that no credentials are captured in a JVM checkpoint.
+     * @see #registerCheckpointHooks()
+     */
+    public void beforeCheckpoint() {
+        SolaceServicesRefresher currentRefresher = refresher;
+        if (currentRefresher != null) currentRefresher.clear();
+        servicesParser.clearSnapshot();
+        connectionPropertiesCache = null;
+        SolaceServicesSidecarClient currentSidecarClient = sidecarClient;
+        if (currentSidecarClient != null) currentSidecarClient.clear();
+        sidecarClient = null;
+        synchronized (this) {
+            manifestDirectory = new SolaceManifestDirectory(servicesParser);
+            cachedLayers = Collections.emptyList();
+            cachedLayersCreds = Collections.emptyMap();
+            cachedLayeredCreds = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * {@link #preload() Preloads} the manifest of the restored environment after a JVM checkpoint is restored.
+     * Failures are logged rather than thrown so that they don't fail the restore.
+     * @see #registerCheckpointHooks()
+     */
+    public void afterRestore() {
+        try {
+            // The restored environment may differ from the one that was snapshotted
+            manifestLoader.refreshEnvSnapshot();
+            preload();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to preload the Solace services manifest after restore", e);
+        }
+    }
+
+    /**
+     * Registers this loader's {@link #beforeCheckpoint()} and {@link #afterRestore()} hooks to the global
+     * <a href="https://github.com/CRaC/org.crac">org.crac</a> context.
+     * @return True if registered, false if the {@code org.crac} API is not on the classpath.
+     */
+    public synchronized boolean registerCheckpointHooks() {
+        if (checkpointResource == null) checkpointResource = CheckpointResource.register(this);
+        return checkpointResource != null;
     }
 
     /**
@@ -108,49 +370,315 @@ public class SolaceCredentialsLoader {
      * @return True if a manifest was found in the environment.
      */
     public boolean manifestExists() {
+        Map<String, SolaceServiceCredentials> sidecarCreds = getSidecarServicesCredentials();
+        if (sidecarCreds != null) return !sidecarCreds.isEmpty();
+        if (layeredManifests) return !manifestLoader.getManifests().isEmpty();
+        if (getManifestDirectory() != null) return true;
         String manifest = manifestLoader.getManifest();
         return manifest != null && !manifest.isEmpty();
     }
 
-    private List<SolaceServiceCredentials> getServicesCredentials(String raw) throws IOException {
-        List<SolaceServiceCredentialsImpl> svcsCreds = new LinkedList<>();
-        JsonNode node = defaultReader.readTree(raw);
+    /**
+     * Sets the object mapper used to marshal manifests. By default, a plain {@link ObjectMapper} is used, with
+     * either the Jackson Blackbird or Afterburner module registered if opted into with
+     * {@value #BYTECODE_BINDING_PROPERTY}.
+     * @param objectMapper A pre-configured object mapper. It must not be reconfigured after being set.
+     */
+    public synchronized void setObjectMapper(ObjectMapper objectMapper) {
+        // Not shared with other loaders since the mapper's configuration may affect the marshalled services
+        servicesParser = new SolaceServicesParser(objectMapper);
+        manifestDirectory = new SolaceManifestDirectory(servicesParser);
+        cachedLayers = Collections.emptyList();
+        cachedLayersCreds = Collections.emptyMap();
+        cachedLayeredCreds = Collections.emptyMap();
+    }
 
-        if (node.isObject() && ( node.has(SOLACE_MESSAGING_SVC_NAME) || node.has(SOLACE_PUBSUB_SVC_NAME) ) ) {
-            VCAPServicesInfo services = servicesReader.readValue(raw);
-            for (SolaceMessagingServiceInfo serviceInfo : services.getSolaceMessagingServices()) {
-                SolaceServiceCredentialsImpl svcCreds = serviceInfo.getCredentials();
-                svcCreds.setId(getServiceId(serviceInfo));
-                svcsCreds.add(svcCreds);
+    /**
+     * Restricts the loaded services to the given credentials fields, and to the services accepted by the given filter,
+     * for applications which only use a few fields of some of the manifest's services. Services are then decoded
+     * straight from the manifest's tokens, as with {@link #REFLECTION_FREE_PROPERTY}: the values of other fields are
+     * skipped without being decoded, and services are filtered as soon as they are decoded. The fields from which
+     * service IDs are resolved, {@code id}, {@code msgVpnName} and {@code activeManagementHostname}, are always
+     * decoded. Replaces any {@link #setObjectMapper(ObjectMapper) object mapper}. Services fetched from a
+     * {@link SolaceServicesSidecar} are neither projected nor filtered.
+     * @param fieldNames The names of the {@link SolaceServiceCredentials} fields to load, such as {@code smfHosts} or
+     *      {@code clientPassword}, null to load every field.
+     * @param filter The filter of the services to load, null to load every service.
+     * @throws IllegalArgumentException If any of the field names is not that of a service credentials field.
+     */
+    public synchronized void setProjection(Collection<String> fieldNames, SolaceServiceFilter filter) {
+        Set<String> projectedFields = null;
+        if (fieldNames != null) {
+            projectedFields = new HashSet<>(fieldNames);
+            for (String fieldName : projectedFields) {
+                if (!SolaceServicesDecoder.FIELD_NAMES.contains(fieldName)) {
+                    throw new IllegalArgumentException(String.format("Unknown service credentials field %s", fieldName));
+                }
             }
-        } else if (node.isArray()) {
-            svcsCreds = credsListReader.readValue(raw);
-        } else {
-            svcsCreds.add((SolaceServiceCredentialsImpl) credReader.readValue(raw));
         }
 
-        for (SolaceServiceCredentialsImpl svcCreds : svcsCreds) svcCreds.setId(getServiceId(svcCreds));
-        return new LinkedList<SolaceServiceCredentials>(svcsCreds);
+        // Not shared with other loaders since the projection affects the marshalled services
+        servicesParser = projectedFields == null && filter == null ? createDefaultServicesParser() :
+                new SolaceServicesParser(new JsonFactory().disable(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION),
+                        projectedFields, filter);
+        manifestDirectory = new SolaceManifestDirectory(servicesParser);
+        cachedLayers = Collections.emptyList();
+        cachedLayersCreds = Collections.emptyMap();
+        cachedLayeredCreds = Collections.emptyMap();
+        SolaceServicesRefresher currentRefresher = refresher;
+        if (currentRefresher != null) currentRefresher.clear();
     }
 
-    private String getServiceId(SolaceMessagingServiceInfo solaceMessagingServiceInfo) {
-        // Default: Service's meta-name if it exists,
-        //          '@'-delimited concatenation of the service's VPN name and active management host name otherwise
-        SolaceServiceCredentials solaceServiceCredentials = solaceMessagingServiceInfo.getCredentials();
-        String id = solaceServiceCredentials.getId();
-        String metaName = solaceMessagingServiceInfo.getName();
+    /**
+     * Sets whether the manifests of every available source are merged into a single layered view.
+     * Services are merged by ID, where a service from a higher-precedence source, as defined in
+     * {@link SolaceManifestLoader}, overrides the service with the same ID from a lower-precedence source.
+     * Otherwise, only the manifest of the highest-precedence source is used.
+     * @param layeredManifests True to merge all available manifests. False by default.
+     */
+    public void setLayeredManifests(boolean layeredManifests) {
+        this.layeredManifests = layeredManifests;
+    }
+
+    /**
+     * Sets whether a {@value SolaceManifestLoader#MANIFEST_DIR_NAME} directory found in the
+     * {@link SolaceManifestLoader.SolaceEnv#SOLACE_SERVICES_HOME SOLACE_SERVICES_HOME} takes the place of its
+     * {@value SolaceManifestLoader#MANIFEST_FILE_NAME} file.
+     * Every {@value SolaceManifestDirectory#MANIFEST_FILE_GLOB} file in this directory is a manifest of its own,
+     * and their services are merged by ID in file name order.
+     * This setting is ignored when {@link #setLayeredManifests(boolean) layered manifests} are enabled.
+     * @param manifestDirectoryEnabled True to load manifest directories. False by default.
+     */
+    public void setManifestDirectoryEnabled(boolean manifestDirectoryEnabled) {
+        this.manifestDirectoryEnabled = manifestDirectoryEnabled;
+    }
 
-        if (id != null && !id.isEmpty()) return id;
-        else if (metaName != null && !metaName.isEmpty()) return metaName;
-        else return getServiceId(solaceServiceCredentials);
+    /**
+     * Sets whether the services are refreshed ahead of time in the background, rather than loaded on every lookup.
+     * Lookups are then served from the last loaded services, which are reloaded shortly before the refresh interval
+     * has elapsed since they were loaded, and only replaced once fully parsed. If a reload fails, the last loaded
+     * services keep being served, and the next attempt is backed off exponentially. Changes to the manifest and to this
+     * loader's settings are seen by the next reload. Refreshing stops once this loader is {@link #close() closed} or
+     * garbage collected. See {@link SolaceServicesRefresher} for details.
+     * @param refreshInterval The maximum age of the served services, unless reloads fail. Disabled if not positive,
+     *      which is the default.
+     * @param unit The unit of the refresh interval.
+     */
+    public synchronized void setRefreshAhead(long refreshInterval, TimeUnit unit) {
+        if (refresher != null) refresher.stop();
+        refresher = refreshInterval > 0 ? SolaceServicesRefresher.start(this, unit.toNanos(refreshInterval)) : null;
     }
 
-    private String getServiceId(SolaceServiceCredentials solaceServiceCredentials) {
-        // Default: '@'-delimited concatenation of the service's VPN name and active management host name
-        String id = solaceServiceCredentials.getId();
-        String msgVpnName = solaceServiceCredentials.getMsgVpnName();
-        String activeManagementHostname = solaceServiceCredentials.getActiveManagementHostname();
+    /**
+     * Stops {@link #setRefreshAhead(long, TimeUnit) refreshing ahead}, and drops the services cached by this loader
+     * alone, whose off-heap {@link SolaceSecret secrets} are wiped. The snapshot shared by loaders using the default
+     * object mapper is left to them. The loader can still be used afterwards, and loads its services anew.
+     */
+    @Override
+    public synchronized void close() {
+        if (refresher != null) refresher.stop();
+        refresher = null;
+        SolaceServicesSidecarClient currentSidecarClient = sidecarClient;
+        if (currentSidecarClient != null) currentSidecarClient.clear();
+        sidecarClient = null;
+        if (servicesParser != defaultServicesParser) servicesParser.clearSnapshot();
+    }
 
-        return id != null && !id.isEmpty() ? id : msgVpnName+'@'+activeManagementHostname;
+    // For Testing
+    SolaceServicesRefresher getRefresher() {
+        return refresher;
+    }
+
+    /**
+     * @param sidecarEnabled True to fetch the services of the {@link SolaceServicesSidecar} whose address is set in the
+     *      environment, if any, rather than loading the manifest. True by default.
+     */
+    void setSidecarEnabled(boolean sidecarEnabled) {
+        manifestLoader.setSidecarEnabled(sidecarEnabled);
+    }
+
+    /**
+     * Creates a loader for the given manifest sources with a services parser of its own, so that its snapshot is not
+     * displaced by that of other loaders.
+     */
+    static SolaceCredentialsLoader createIsolated(SolaceManifestLoader manifestLoader) {
+        SolaceCredentialsLoader loader = new SolaceCredentialsLoader();
+        loader.manifestLoader = manifestLoader;
+        loader.servicesParser = createDefaultServicesParser();
+        loader.manifestDirectory = new SolaceManifestDirectory(loader.servicesParser);
+        return loader;
+    }
+
+    /**
+     * Sets whether the manifest sources are probed concurrently rather than one after the other, such as when
+     * {@link SolaceManifestLoader.SolaceEnv#SOLACE_SERVICES_HOME SOLACE_SERVICES_HOME} is on a slow network filesystem.
+     * The manifest of the highest-precedence source with content still wins, and the probes of lower-precedence
+     * sources are cancelled as soon as it is known.
+     * @param parallelProbing True to probe sources concurrently. False by default.
+     */
+    public void setParallelProbing(boolean parallelProbing) {
+        manifestLoader.setParallelProbing(parallelProbing);
+    }
+
+    /**
+     * Sets whether the JVM properties and OS environments of the manifest sources are looked up once and kept in a
+     * snapshot, rather than looked up on every load. Manifest files are still read on every load.
+     * @param envSnapshotEnabled True to snapshot the environments. False by default.
+     * @see #refreshEnvSnapshot()
+     */
+    public void setEnvSnapshotEnabled(boolean envSnapshotEnabled) {
+        manifestLoader.setEnvSnapshotEnabled(envSnapshotEnabled);
+    }
+
+    /**
+     * Looks up the JVM properties and OS environments of the manifest sources anew, so that changes to the JVM
+     * properties are seen while {@link #setEnvSnapshotEnabled(boolean) snapshotting} is enabled.
+     */
+    public void refreshEnvSnapshot() {
+        manifestLoader.refreshEnvSnapshot();
+    }
+
+    static SolaceServicesParser createDefaultServicesParser() {
+        // GraalVM sets this property within native images
+        if (Boolean.getBoolean(REFLECTION_FREE_PROPERTY) || System.getProperty("org.graalvm.nativeimage.imagecode") != null)
+            // Keeps the manifest, and thus its credentials, out of the messages of parser exceptions
+            return new SolaceServicesParser(
+                    new JsonFactory().disable(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION));
+        else return new SolaceServicesParser(ObjectMapperSingleton.getInstance());
+    }
+
+    static Thread preloadInBackground() {
+        Thread preloadThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new SolaceCredentialsLoader().preload();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to preload the Solace services manifest", e);
+                }
+            }
+        }, "solace-services-preload");
+        preloadThread.setDaemon(true);
+        preloadThread.start();
+        return preloadThread;
+    }
+
+    /**
+     * @return The services of the manifest, or the last refreshed services if {@link #setRefreshAhead(long, TimeUnit)
+     *      refreshing ahead}. Unchanged manifests return the same map instance, which must not be modified.
+     */
+    Map<String, SolaceServiceCredentials> getServicesCredentials() {
+        SolaceServicesRefresher currentRefresher = refresher;
+        return currentRefresher != null ? currentRefresher.getServicesCredentials() : loadServicesCredentials();
+    }
+
+    /**
+     * @return The services of the manifest, loaded from its sources. Unchanged manifests return the same map instance,
+     *      which must not be modified.
+     */
+    Map<String, SolaceServiceCredentials> loadServicesCredentials() {
+        Map<String, SolaceServiceCredentials> sidecarCreds = getSidecarServicesCredentials();
+        if (sidecarCreds != null) return sidecarCreds;
+
+        if (layeredManifests) return getLayeredServicesCredentials();
+
+        Path manifestDir = getManifestDirectory();
+        if (manifestDir != null) return manifestDirectory.getServicesCredentials(manifestDir);
+
+        String raw = manifestLoader.getManifest();
+        if (raw == null || raw.isEmpty()) return Collections.emptyMap();
+
+        try {
+            return servicesParser.getSnapshot(raw);
+        } catch (IOException e) {
+            throw invalidManifest(new SolaceManifestParseException(e, raw));
+        }
+    }
+
+    private Path getManifestDirectory() {
+        return manifestDirectoryEnabled ? manifestLoader.getManifestDirectory() : null;
+    }
+
+    private synchronized Map<String, SolaceServiceCredentials> getLayeredServicesCredentials() {
+        List<String> layers = manifestLoader.getManifests();
+        if (layers.equals(cachedLayers)) return cachedLayeredCreds;
+
+        Map<String, List<SolaceServiceCredentials>> layersCreds = new HashMap<>();
+        List<SolaceServiceCredentials> svcsCredsList = new ArrayList<>();
+        for (ListIterator<String> iterator = layers.listIterator(layers.size()); iterator.hasPrevious();) {
+            // Lowest precedence first so that higher-precedence layers override it
+            String raw = iterator.previous();
+            List<SolaceServiceCredentials> layerCreds = cachedLayersCreds.get(raw);
+            if (layerCreds == null) {
+                try {
+                    layerCreds = servicesParser.parse(raw);
+                } catch (IOException e) {
+                    throw invalidManifest(new SolaceManifestParseException(e, raw));
+                }
+            }
+
+            layersCreds.put(raw, layerCreds);
+            svcsCredsList.addAll(layerCreds);
+        }
+
+        Map<String, SolaceServiceCredentials> svcsCreds = SolaceServicesIndex.mapOf(svcsCredsList);
+        cachedLayers = layers;
+        cachedLayersCreds = layersCreds;
+        cachedLayeredCreds = svcsCreds;
+        return svcsCreds;
+    }
+
+    /**
+     * @return The services fetched from the sidecar, null if there is no sidecar or if it could not serve them, in which
+     *      case the manifest is loaded locally.
+     */
+    private Map<String, SolaceServiceCredentials> getSidecarServicesCredentials() {
+        String sidecarAddress = manifestLoader.getSidecarAddress();
+        if (sidecarAddress == null) return null;
+
+        SolaceServicesSidecarClient client = sidecarClient;
+        if (client == null || !client.getAddress().equals(sidecarAddress)) {
+            sidecarClient = client = new SolaceServicesSidecarClient(sidecarAddress);
+        }
+
+        try {
+            Map<String, SolaceServiceCredentials> svcsCreds = client.getServicesCredentials();
+            if (sidecarFailing) {
+                sidecarFailing = false;
+                logger.info("Fetching Solace services from the sidecar at {} again", sidecarAddress);
+            }
+            return svcsCreds;
+        } catch (IOException e) {
+            // Only logged once per outage, since every lookup tries the sidecar first
+            if (!sidecarFailing) {
+                sidecarFailing = true;
+                logger.warn("Failed to fetch Solace services from the sidecar at {}, loading the manifest locally: {}",
+                        sidecarAddress, e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    private Map<String, SolaceServiceCredentials> toServicesMap(List<SolaceServiceCredentials> svcsCredsList) {
+        Map<String, SolaceServiceCredentials> svcsCreds = new HashMap<>();
+        for (SolaceServiceCredentials creds : svcsCredsList) svcsCreds.put(creds.getId(), creds);
+        return svcsCreds;
+    }
+
+    private SolaceManifestParseException invalidManifest(SolaceManifestParseException e) {
+        // Only the bounded and redacted message, since the manifest holds credentials
+        logger.error(e.getMessage());
+        return e;
+    }
+
+    private static class ConnectionPropertiesCache {
+        final Map<String, SolaceServiceCredentials> svcsCreds;
+        final SolaceConnectionProperties connectionProperties;
+
+        ConnectionPropertiesCache(Map<String, SolaceServiceCredentials> svcsCreds,
+                                  SolaceConnectionProperties connectionProperties) {
+            this.svcsCreds = svcsCreds;
+            this.connectionProperties = connectionProperties;
+        }
     }
 }
@@ -0,0 +1,156 @@
+package com.solace.services.core.loader;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>Detects compressed manifests by their magic bytes, and decompresses them as they are read.</p>
+ *
+ * <p>Gzip is always supported. Zstandard is supported if <a href="https://github.com/luben/zstd-jni">zstd-jni</a> is
+ *      on the classpath, and is loaded reflectively so that it remains an optional dependency.</p>
+ */
+final class SolaceManifestCompression {
+    static final String GZIP_EXTENSION = ".gz";
+    static final String ZSTD_EXTENSION = ".zst";
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1F, (byte) 0x8B};
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD};
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_PRESIZE = 1024 * 1024;
+    private static final Constructor<? extends InputStream> ZSTD_INPUT_STREAM = getZstdInputStreamConstructor();
+
+    private SolaceManifestCompression() {}
+
+    /**
+     * @return True if Zstandard-compressed manifests can be decompressed.
+     */
+    static boolean isZstdSupported() {
+        return ZSTD_INPUT_STREAM != null;
+    }
+
+    /**
+     * @return True if the given bytes start with the magic bytes of a supported compression format.
+     */
+    static boolean isCompressed(byte[] content, int offset, int length) {
+        return startsWith(content, offset, length, GZIP_MAGIC) || startsWith(content, offset, length, ZSTD_MAGIC);
+    }
+
+    /**
+     * @param file The path of an uncompressed manifest file.
+     * @return The path of the same manifest with a compression extension, null if there is none.
+     */
+    static Path findCompressedFile(Path file) {
+        String fileName = file.getFileName().toString();
+        Path gzipFile = file.resolveSibling(fileName + GZIP_EXTENSION);
+        if (Files.exists(gzipFile)) return gzipFile;
+        Path zstdFile = file.resolveSibling(fileName + ZSTD_EXTENSION);
+        if (Files.exists(zstdFile)) return zstdFile;
+        return null;
+    }
+
+    /**
+     * Reads a manifest file, decompressing it as it is read if it is compressed.
+     * @param file The path of a manifest file, compressed or not.
+     * @return The manifest.
+     * @throws IOException If the file could not be read, or if it is compressed and corrupt or compressed in a format
+     *      that is not supported.
+     */
+    static String read(Path file) throws IOException {
+        try (InputStream content = Files.newInputStream(file)) {
+            return decode(content, Files.size(file));
+        }
+    }
+
+    /**
+     * Decodes a manifest as UTF-8, regardless of the platform's default charset, decompressing it first if it is
+     * compressed. The bytes are decoded as they are read and inflated, so that neither the compressed nor the
+     * decompressed bytes are ever buffered as a whole.
+     * @param content A manifest, compressed or not. The stream is not closed.
+     * @param length The length of the stream, used as a hint of the manifest's length.
+     * @return The manifest.
+     * @throws IOException If the stream could not be read, or if it is compressed and corrupt or compressed in a format
+     *      that is not supported.
+     */
+    static String decode(InputStream content, long length) throws IOException {
+        // Only presized up to a bound, since a compressed manifest's length is unknown until it is inflated
+        StringBuilder manifest = new StringBuilder((int) Math.min(length, MAX_PRESIZE));
+        try (Reader reader = new InputStreamReader(decompress(content), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[BUFFER_SIZE];
+            for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) manifest.append(buffer, 0, read);
+        }
+        return manifest.toString();
+    }
+
+    /**
+     * @param manifest A manifest, compressed or not.
+     * @return A stream of the given stream's decompressed bytes if compressed, of its bytes as is otherwise. Closing
+     *      the returned stream does not close the given stream.
+     * @throws IOException If the manifest is compressed in a format that is not supported.
+     */
+    static InputStream decompress(InputStream manifest) throws IOException {
+        InputStream in = new FilterInputStream(manifest.markSupported() ? manifest :
+                new BufferedInputStream(manifest, BUFFER_SIZE)) {
+            @Override
+            public void close() {
+                // Left to the given stream's owner
+            }
+        };
+
+        byte[] magic = new byte[ZSTD_MAGIC.length];
+        in.mark(magic.length);
+        int magicLength = 0;
+        while (magicLength < magic.length) {
+            int read = in.read(magic, magicLength, magic.length - magicLength);
+            if (read < 0) break;
+            magicLength += read;
+        }
+        in.reset();
+
+        if (startsWith(magic, 0, magicLength, GZIP_MAGIC)) return new GZIPInputStream(in, BUFFER_SIZE);
+        if (startsWith(magic, 0, magicLength, ZSTD_MAGIC)) return newZstdInputStream(in);
+        return in;
+    }
+
+    private static InputStream newZstdInputStream(InputStream in) throws IOException {
+        if (ZSTD_INPUT_STREAM == null) {
+            throw new IOException("The manifest is Zstandard-compressed, which requires com.github.luben:zstd-jni " +
+                    "on the classpath");
+        }
+
+        try {
+            return ZSTD_INPUT_STREAM.newInstance(in);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Failed to open the Zstandard decompressor", e.getCause());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IOException("Failed to open the Zstandard decompressor", e);
+        }
+    }
+
+    private static boolean startsWith(byte[] content, int offset, int length, byte[] magic) {
+        if (length < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if (content[offset + i] != magic[i]) return false;
+        }
+        return true;
+    }
+
+    private static Constructor<? extends InputStream> getZstdInputStreamConstructor() {
+        try {
+            return Class.forName("com.github.luben.zstd.ZstdInputStream").asSubclass(InputStream.class)
+                    .getConstructor(InputStream.class);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Loads the services of every manifest file matching {@value #MANIFEST_FILE_GLOB} within a manifest directory.</p>
+ *
+ * <p>Files are parsed in parallel and merged by service ID in file name order, where a service from a later file
+ *      overrides the service with the same ID from an earlier one. A file that cannot be read or parsed is skipped
+ *      without affecting the others.</p>
+ *
+ * <p>Parsed files are cached, and are only re-parsed when their modification time or size changes. As long as none of
+ *      the directory's files were added, removed or changed, the same map instance is returned.</p>
+ */
+class SolaceManifestDirectory {
+    static final String MANIFEST_FILE_GLOB = "*.json";
+    private static final Logger logger = LoggerFactory.getLogger(SolaceManifestDirectory.class);
+    private static final ForkJoinPool parsePool = new ForkJoinPool();
+
+    private final SolaceServicesParser servicesParser;
+    private Map<Path, ParsedFile> parsedFiles = new HashMap<>();
+    // The services last merged, from the files last listed in the last loaded directory
+    private Path mergedDir;
+    private List<Path> mergedFiles = Collections.emptyList();
+    private Map<String, SolaceServiceCredentials> mergedCreds;
+
+    SolaceManifestDirectory(SolaceServicesParser servicesParser) {
+        this.servicesParser = servicesParser;
+    }
+
+    /**
+     * Loads and merges the services of every manifest file in the given directory.
+     * @param dir The manifest directory.
+     * @return A map of {@link SolaceServiceCredentials#getId() service IDs} to {@link SolaceServiceCredentials}.
+     *      Unchanged files return the same map instance, which must not be modified.
+     */
+    synchronized Map<String, SolaceServiceCredentials> getServicesCredentials(Path dir) {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(dir, MANIFEST_FILE_GLOB)) {
+            for (Path file : dirStream) if (Files.isRegularFile(file)) files.add(file);
+        } catch (IOException e) {
+            logger.error("Error listing the manifest files of {}", dir);
+            return new HashMap<>();
+        }
+        Collections.sort(files);
+
+        Map<Path, ParsedFile> newParsedFiles = new HashMap<>();
+        List<Callable<ParsedFile>> parseTasks = new ArrayList<>();
+        for (final Path file : files) {
+            final BasicFileAttributes attributes = readAttributes(file);
+            ParsedFile parsedFile = parsedFiles.get(file);
+            if (parsedFile != null && parsedFile.isUpToDate(attributes)) {
+                newParsedFiles.put(file, parsedFile);
+            } else {
+                parseTasks.add(new Callable<ParsedFile>() {
+                    @Override
+                    public ParsedFile call() {
+                        return parseFile(file, attributes);
+                    }
+                });
+            }
+        }
+
+        if (parseTasks.isEmpty() && dir.equals(mergedDir) && files.equals(mergedFiles)) return mergedCreds;
+
+        try {
+            for (Future<ParsedFile> parseTask : parsePool.invokeAll(parseTasks)) {
+                ParsedFile parsedFile = parseTask.get();
+                newParsedFiles.put(parsedFile.file, parsedFile);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("Interrupted while loading the manifest files of %s", dir), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(String.format("Failed to load the manifest files of %s", dir), e.getCause());
+        }
+        parsedFiles = newParsedFiles;
+
+        List<SolaceServiceCredentials> svcsCreds = new ArrayList<>();
+        for (Path file : files) svcsCreds.addAll(newParsedFiles.get(file).svcsCreds);
+        mergedDir = dir;
+        mergedFiles = files;
+        mergedCreds = SolaceServicesIndex.mapOf(svcsCreds);
+        return mergedCreds;
+    }
+
+    private ParsedFile parseFile(Path file, BasicFileAttributes attributes) {
+        String raw;
+        try {
+            raw = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("Ignoring manifest file {}, it could not be read", file);
+            return new ParsedFile(file, attributes, Collections.<SolaceServiceCredentials>emptyList());
+        }
+
+        List<SolaceServiceCredentials> svcsCreds;
+        try {
+            svcsCreds = servicesParser.parse(raw);
+        } catch (IOException e) {
+            logger.error("Ignoring manifest file {}: {}", file, new SolaceManifestParseException(e, raw).getMessage());
+            svcsCreds = Collections.emptyList();
+        }
+        return new ParsedFile(file, attributes, svcsCreds);
+    }
+
+    private BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class ParsedFile {
+        final Path file;
+        final FileTime lastModifiedTime;
+        final long size;
+        final List<SolaceServiceCredentials> svcsCreds;
+
+        ParsedFile(Path file, BasicFileAttributes attributes, List<SolaceServiceCredentials> svcsCreds) {
+            this.file = file;
+            this.lastModifiedTime = attributes != null ? attributes.lastModifiedTime() : null;
+            this.size = attributes != null ? attributes.size() : -1;
+            this.svcsCreds = svcsCreds;
+        }
+
+        boolean isUpToDate(BasicFileAttributes attributes) {
+            return attributes != null && lastModifiedTime != null &&
+                    lastModifiedTime.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * <p>The formats of a service manifest, as described in {@link SolaceCredentialsLoader}.</p>
+ *
+ * <p>Detection only peeks at the manifest's first significant character to tell arrays from objects. Objects are then
+ *      told apart by scanning their top-level keys, without descending into any of their values.</p>
+ */
+enum SolaceManifestFormat {
+    VCAP, LIST, SINGLE;
+
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    /**
+     * @param raw A JSON string representing a service manifest.
+     * @param jsonFactory The factory of the parser used to scan an object's top-level keys.
+     * @return The manifest's format, null if it could not be detected.
+     */
+    static SolaceManifestFormat detect(String raw, JsonFactory jsonFactory) {
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '[') return LIST;
+            if (c == '{') {
+                try (JsonParser parser = jsonFactory.createParser(raw)) {
+                    return scanObject(parser);
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+            if (!isWhitespace(c) && c != BYTE_ORDER_MARK) return null;
+        }
+        return null;
+    }
+
+    /**
+     * @param raw A buffer containing an encoded service manifest. Only UTF-8 is detected.
+     * @param offset The offset of the manifest within the buffer.
+     * @param length The length of the manifest.
+     * @param jsonFactory The factory of the parser used to scan an object's top-level keys.
+     * @return The manifest's format, null if it could not be detected.
+     */
+    static SolaceManifestFormat detect(byte[] raw, int offset, int length, JsonFactory jsonFactory) {
+        int i = offset;
+        int end = offset + length;
+        // UTF-8 byte order mark
+        if (length >= 3 && raw[i] == (byte) 0xEF && raw[i + 1] == (byte) 0xBB && raw[i + 2] == (byte) 0xBF) i += 3;
+
+        for (; i < end; i++) {
+            byte b = raw[i];
+            if (b == '[') return LIST;
+            if (b == '{') {
+                try (JsonParser parser = jsonFactory.createParser(raw, offset, length)) {
+                    return scanObject(parser);
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+            if (!isWhitespace((char) b)) return null;
+        }
+        return null;
+    }
+
+    /**
+     * Scans the top-level keys of a manifest for the field holding its services if it is VCAP-formatted, without
+     * descending into any of their values. As with data-binding, {@code solace-pubsub} takes precedence over
+     * {@code solace-messaging} unless null.
+     * @param parser A parser positioned before the manifest's root token.
+     * @return The name of the field holding the manifest's services, null if the manifest is not VCAP-formatted.
+     * @throws IOException If the manifest's root is malformed.
+     */
+    static String findServicesField(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) return null;
+
+        String servicesField = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (fieldName.equals(SolaceServicesParser.SOLACE_PUBSUB_SVC_NAME)) {
+                if (token != JsonToken.VALUE_NULL) return fieldName;
+                if (servicesField == null) servicesField = fieldName;
+            } else if (fieldName.equals(SolaceServicesParser.SOLACE_MESSAGING_SVC_NAME)) {
+                servicesField = fieldName;
+            }
+            parser.skipChildren();
+        }
+        return servicesField;
+    }
+
+    private static SolaceManifestFormat scanObject(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) return null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            if (fieldName.equals(SolaceServicesParser.SOLACE_PUBSUB_SVC_NAME) ||
+                    fieldName.equals(SolaceServicesParser.SOLACE_MESSAGING_SVC_NAME)) {
+                return VCAP;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return parser.getCurrentToken() == JsonToken.END_OBJECT ? SINGLE : null;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
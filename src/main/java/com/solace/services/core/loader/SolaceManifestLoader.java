@@ -7,11 +7,24 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>Only deals with manifest retrieval. No manifest marshalling or validation is done at this level.</p>
@@ -25,19 +38,66 @@ import java.util.List;
  *     <li>Fallback check for file {@value #MANIFEST_FILE_NAME} in the user's home directory.</li>
  * </ol>
  *
+ * <p>A {@value #MANIFEST_FILE_NAME} file may be compressed, as detected by {@link SolaceManifestCompression}. In its
+ *      absence, the same file with a {@value SolaceManifestCompression#GZIP_EXTENSION} or
+ *      {@value SolaceManifestCompression#ZSTD_EXTENSION} extension is read instead.</p>
+ *
  * <p>Of the mentioned environments, some may be associated to a content
  *      {@link SolaceManifestLoader.PostProcessor post-processor}.</p>
+ *
+ * <p>{@link SolaceManifestLoader.SolaceEnvSource#PROVIDED PROVIDED} environments are read from the values given at
+ *      construction instead of from the JVM, such as the manifest sources of a single tenant.</p>
  * <p>Specific associations can be found by looking at the entries given to {@link #searchQueries}.</p>
+ *
+ * <p>The address of a {@link SolaceServicesSidecar} serving pre-parsed services is looked up in
+ *      {@link SolaceManifestLoader.SolaceEnv#SOLACE_SERVICES_SIDECAR SOLACE_SERVICES_SIDECAR}, first in the JVM
+ *      properties then as an OS environment. The sidecar only takes the place of the fallback: it is not used while
+ *      any of the environments above is set, so that a manifest set explicitly is never overridden by whatever
+ *      listens on the sidecar's address.</p>
+ *
+ * <p>If {@link #setEnvSnapshotEnabled(boolean) enabled}, the environments and the user's home directory are looked up
+ *      once and kept in a snapshot, which is only {@link #refreshEnvSnapshot() refreshed} on demand.</p>
  */
 class SolaceManifestLoader {
-    enum SolaceEnv {SOLACE_CREDENTIALS, SOLCAP_SERVICES, SOLACE_SERVICES_HOME}
-    enum SolaceEnvSource {JVM, ENV}
+    enum SolaceEnv {SOLACE_CREDENTIALS, SOLCAP_SERVICES, SOLACE_SERVICES_HOME, SOLACE_SERVICES_SIDECAR,
+        SOLACE_SERVICES_SIDECAR_SECRET}
+    enum SolaceEnvSource {
+        JVM("JVM property"), ENV("OS environment"), PROVIDED("provided environment");
+
+        private final String description;
+
+        SolaceEnvSource(String description) {
+            this.description = description;
+        }
+
+        String getDescription() {
+            return description;
+        }
+    }
     enum PostProcessor {NONE, FILE, REST}
 
     static final String MANIFEST_FILE_NAME = ".solaceservices";
+    static final String MANIFEST_DIR_NAME = MANIFEST_FILE_NAME + ".d";
     private static final Logger logger = LoggerFactory.getLogger(SolaceManifestLoader.class);
+    // Looked up once rather than on every load, since it is checked first and OS environments cannot change
+    private static final String ENV_SIDECAR_ADDRESS = System.getenv(SolaceEnv.SOLACE_SERVICES_SIDECAR.name());
+    private static final ExecutorService probePool = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "solace-manifest-probe-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     private List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries;
+    private Map<SolaceEnv, String> providedEnv = Collections.emptyMap();
+    private boolean userHomeFallback = true;
+    private boolean sidecarEnabled = true;
+    private volatile EnvSnapshot envSnapshot;
+    private boolean parallelProbing = false;
 
     public SolaceManifestLoader() {
         searchQueries = new LinkedList<>();
@@ -54,58 +114,321 @@ class SolaceManifestLoader {
         this.searchQueries = searchQueries;
     }
 
+    /**
+     * Creates a loader isolated from the JVM's own manifest sources, such as one serving a single tenant.
+     * There is no fallback to the user's home directory.
+     * @param searchQueries The search queries, in order of precedence.
+     * @param providedEnv The values of the {@link SolaceEnvSource#PROVIDED PROVIDED} environments.
+     */
+    SolaceManifestLoader(List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries,
+                         Map<SolaceEnv, String> providedEnv) {
+        this.searchQueries = searchQueries;
+        this.providedEnv = providedEnv;
+        this.userHomeFallback = false;
+        this.sidecarEnabled = false;
+    }
+
     /**
      * Finds and loads a manifest from the application's environment as per the precedence defined in the search queries.
      * The manifest contents are retrieved <b>as is</b> and is not checked for validity.
      * @return A JSON string representing a service manifest, null if not found.
      */
     public String getManifest() {
-        String content = null;
+        if (parallelProbing) {
+            List<String> manifests = probeInParallel(true);
+            return manifests.isEmpty() ? null : manifests.get(0);
+        }
+
+        String content;
+        // Indexed rather than iterated so that lookups don't allocate, the search queries being few
+        for (int i = 0; i < searchQueries.size(); i++) {
+            content = readSource(searchQueries.get(i));
+            if (content != null && !content.isEmpty()) return content;
+        }
+
+        // Fallback
+        if (!userHomeFallback) return null;
+        content = readFile(getUserHome(), MANIFEST_FILE_NAME);
+        if (content != null && !content.isEmpty()) return content;
+        else return null;
+    }
+
+    /**
+     * Loads the manifests of every source found in the application's environment, including the fallback.
+     * The manifest contents are retrieved <b>as is</b> and are not checked for validity.
+     * @return The JSON strings of the found service manifests, ordered from highest to lowest precedence.
+     *      Empty if none were found.
+     */
+    public List<String> getManifests() {
+        if (parallelProbing) return probeInParallel(false);
+
+        List<String> manifests = new LinkedList<>();
         for (Triple<SolaceEnv, SolaceEnvSource, PostProcessor> searchQuery : searchQueries) {
-            String sourceName = searchQuery.getLeft().name();
-            switch (searchQuery.getMiddle()) {
-                case JVM: content = System.getProperty(sourceName, null); break;
-                case ENV: content = System.getenv(sourceName); break;
+            String content = readSource(searchQuery);
+            if (content != null && !content.isEmpty()) manifests.add(content);
+        }
+
+        // Fallback
+        if (!userHomeFallback) return manifests;
+        String content = readFile(getUserHome(), MANIFEST_FILE_NAME);
+        if (content != null && !content.isEmpty()) manifests.add(content);
+        return manifests;
+    }
+
+    /**
+     * Finds a manifest directory named {@value #MANIFEST_DIR_NAME} as per the precedence defined in the search queries.
+     * A manifest directory takes the place of the {@value #MANIFEST_FILE_NAME} file for
+     *      {@link SolaceManifestLoader.PostProcessor#FILE FILE} queries.
+     * A directory without any manifest file is skipped, so that it does not hide lower-precedence sources.
+     * @return The path to the manifest directory, null if not found or if a higher-precedence source has a manifest.
+     */
+    public Path getManifestDirectory() {
+        for (Triple<SolaceEnv, SolaceEnvSource, PostProcessor> searchQuery : searchQueries) {
+            if (searchQuery.getRight().equals(PostProcessor.FILE)) {
+                String dir = readEnv(searchQuery);
+                if (dir != null && !dir.isEmpty()) {
+                    Path dirPath = Paths.get(dir, MANIFEST_DIR_NAME);
+                    if (hasManifestFile(dirPath)) return dirPath;
+                    // Only checked for being non-empty, since its contents are not needed
+                    if (findReadableFile(dir) != null) return null;
+                }
+                continue;
             }
 
-            // Post Processing
-            if (content!= null && !content.isEmpty()) {
-                switch (searchQuery.getRight()) {
-                    case FILE: content = readFile(content, MANIFEST_FILE_NAME); break;
-                    case REST: content = getManifestFromCredentials(content); break;
+            String content = readSource(searchQuery);
+            if (content != null && !content.isEmpty()) return null;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the source of the manifest that {@link #getManifest()} loads, for diagnostics and streaming. Manifests held
+     * by files are not read, but only checked for being non-empty.
+     * @return The highest-precedence source with a manifest, including the fallback, null if none.
+     */
+    ManifestSource findManifestSource() {
+        for (Triple<SolaceEnv, SolaceEnvSource, PostProcessor> searchQuery : searchQueries) {
+            String name = String.format("%s (%s)", searchQuery.getLeft(), searchQuery.getMiddle().getDescription());
+            if (searchQuery.getRight().equals(PostProcessor.FILE)) {
+                String dir = readEnv(searchQuery);
+                Path file = dir != null && !dir.isEmpty() ? findReadableFile(dir) : null;
+                if (file != null) return new ManifestSource(name, file, null);
+                continue;
+            }
+
+            String content = readSource(searchQuery);
+            if (content != null && !content.isEmpty()) return new ManifestSource(name, null, content);
+        }
+
+        if (!userHomeFallback) return null;
+        Path file = findReadableFile(getUserHome());
+        return file != null ? new ManifestSource("user home", file, null) : null;
+    }
+
+    /**
+     * @return The address of the sidecar serving this host's services, null if none, if disabled, or if any of the
+     *      search queries' environments is set.
+     */
+    public String getSidecarAddress() {
+        if (!sidecarEnabled) return null;
+        EnvSnapshot snapshot = envSnapshot;
+        String address = snapshot != null ? snapshot.sidecarAddress : lookupSidecarAddress();
+        if (address == null) return null;
+
+        // Explicit sources take precedence over the sidecar
+        for (Triple<SolaceEnv, SolaceEnvSource, PostProcessor> searchQuery : searchQueries) {
+            String value = readEnv(searchQuery);
+            if (value != null && !value.isEmpty()) return null;
+        }
+        return address;
+    }
+
+    /**
+     * @param sidecarEnabled True to look up the address of a {@link SolaceServicesSidecar}. True by default, except for
+     *      loaders isolated to provided environments, which never use the sidecar.
+     */
+    void setSidecarEnabled(boolean sidecarEnabled) {
+        this.sidecarEnabled = sidecarEnabled;
+    }
+
+    private String readSource(Triple<SolaceEnv, SolaceEnvSource, PostProcessor> searchQuery) {
+        String content = readEnv(searchQuery);
+
+        // Post Processing
+        if (content!= null && !content.isEmpty()) {
+            switch (searchQuery.getRight()) {
+                case FILE: content = readFile(content, MANIFEST_FILE_NAME); break;
+                case REST: content = getManifestFromCredentials(content); break;
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Sets whether every source, including the fallback, is probed concurrently rather than one after the other.
+     * Precedence is still honoured: the manifest of the highest-precedence source with content is returned, and the
+     * probes of lower-precedence sources are cancelled as soon as it is known.
+     * @param parallelProbing True to probe sources concurrently. False by default.
+     */
+    void setParallelProbing(boolean parallelProbing) {
+        this.parallelProbing = parallelProbing;
+    }
+
+    /**
+     * @param firstOnly True to stop at the highest-precedence source with content.
+     * @return The found manifests, ordered from highest to lowest precedence.
+     */
+    private List<String> probeInParallel(boolean firstOnly) {
+        List<Future<String>> probes = new ArrayList<>();
+        for (final Triple<SolaceEnv, SolaceEnvSource, PostProcessor> searchQuery : searchQueries) {
+            probes.add(probePool.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return readSource(searchQuery);
+                }
+            }));
+        }
+
+        if (userHomeFallback) {
+            probes.add(probePool.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return readFile(getUserHome(), MANIFEST_FILE_NAME);
+                }
+            }));
+        }
+
+        List<String> manifests = new LinkedList<>();
+        try {
+            for (Future<String> probe : probes) {
+                String content = probe.get();
+                if (content != null && !content.isEmpty()) {
+                    manifests.add(content);
+                    if (firstOnly) break;
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while probing the manifest sources", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to probe the manifest sources", e.getCause());
+        } finally {
+            // The remaining probes are no longer needed once a higher-precedence source has content
+            for (Future<String> probe : probes) probe.cancel(true);
+        }
+        return manifests;
+    }
 
-            if (content != null && !content.isEmpty()) return content;
+    /**
+     * Sets whether the environments are looked up once and kept in a snapshot, rather than looked up on every load.
+     * OS environments cannot change during the JVM's lifetime, but JVM properties can, in which case the snapshot
+     * must be {@link #refreshEnvSnapshot() refreshed} for the changes to be seen.
+     * @param envSnapshotEnabled True to snapshot the environments. False by default.
+     */
+    void setEnvSnapshotEnabled(boolean envSnapshotEnabled) {
+        envSnapshot = envSnapshotEnabled ? takeEnvSnapshot() : null;
+    }
+
+    /**
+     * Looks up the environments anew, if {@link #setEnvSnapshotEnabled(boolean) snapshotting} is enabled.
+     */
+    void refreshEnvSnapshot() {
+        if (envSnapshot != null) envSnapshot = takeEnvSnapshot();
+    }
+
+    private EnvSnapshot takeEnvSnapshot() {
+        Map<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>, String> values = new HashMap<>();
+        for (Triple<SolaceEnv, SolaceEnvSource, PostProcessor> searchQuery : searchQueries) {
+            values.put(searchQuery, lookupEnv(searchQuery));
         }
+        return new EnvSnapshot(values, System.getProperty("user.home"), lookupSidecarAddress());
+    }
 
-        // Fallback
-        content = readFile(System.getProperty("user.home"), MANIFEST_FILE_NAME);
-        if (content != null && !content.isEmpty()) return content;
-        else return null;
+    private String readEnv(Triple<SolaceEnv, SolaceEnvSource, PostProcessor> searchQuery) {
+        EnvSnapshot snapshot = envSnapshot;
+        return snapshot != null ? snapshot.values.get(searchQuery) : lookupEnv(searchQuery);
+    }
+
+    private String getUserHome() {
+        EnvSnapshot snapshot = envSnapshot;
+        return snapshot != null ? snapshot.userHome : System.getProperty("user.home");
+    }
+
+    private String lookupSidecarAddress() {
+        String address = System.getProperty(SolaceEnv.SOLACE_SERVICES_SIDECAR.name());
+        if (address == null || address.isEmpty()) address = ENV_SIDECAR_ADDRESS;
+        return address == null || address.isEmpty() ? null : address;
+    }
+
+    private String lookupEnv(Triple<SolaceEnv, SolaceEnvSource, PostProcessor> searchQuery) {
+        String sourceName = searchQuery.getLeft().name();
+        switch (searchQuery.getMiddle()) {
+            case JVM: return System.getProperty(sourceName, null);
+            case ENV: return System.getenv(sourceName);
+            case PROVIDED: return providedEnv.get(searchQuery.getLeft());
+            default: return null;
+        }
     }
 
     private String readFile(String dir, String fileName) {
-        Path filePath = Paths.get(dir.concat(File.separator).concat(fileName));
-        if (Files.notExists(filePath)) {
-            if (!dir.equals(System.getProperty("user.home")))
-                logger.warn("File {} does not exist", filePath);
+        Path filePath = findFile(dir, fileName);
+        if (filePath == null) {
+            if (!dir.equals(getUserHome()))
+                logger.warn("File {} does not exist", dir.concat(File.separator).concat(fileName));
             return "";
-        } else if (!Files.isReadable(filePath)) {
+        }
+
+        if (!Files.isReadable(filePath)) {
             logger.warn(String.format("%s cannot be opened for reading. Ignoring file parameter...", filePath));
             return "";
         }
 
         String fileContents;
         try {
-            fileContents = new String(Files.readAllBytes(filePath));
+            // Decoded as it is read and decompressed, without buffering the file's bytes as a whole
+            fileContents = SolaceManifestCompression.read(filePath);
+        } catch (ClosedByInterruptException e) {
+            // The probe of this file was cancelled
+            return "";
         } catch (IOException e) {
-            logger.error("Error reading {}", filePath);
+            logger.error("Error reading {}: {}", filePath, e.getMessage());
             return "";
         }
         return fileContents;
     }
 
+    /**
+     * @return The path of the given file, or of the same file with a compression extension in its absence, null if
+     *      neither exists.
+     */
+    private static Path findFile(String dir, String fileName) {
+        Path filePath = Paths.get(dir.concat(File.separator).concat(fileName));
+        return Files.notExists(filePath) ? SolaceManifestCompression.findCompressedFile(filePath) : filePath;
+    }
+
+    /**
+     * @return The path of the directory's manifest file, as found by {@link #findFile(String, String)}, null if it
+     *      does not exist, cannot be read or is empty.
+     */
+    private static boolean hasManifestFile(Path dir) {
+        if (!Files.isDirectory(dir)) return false;
+        try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(dir, SolaceManifestDirectory.MANIFEST_FILE_GLOB)) {
+            for (Path file : dirStream) if (Files.isRegularFile(file)) return true;
+        } catch (IOException e) {
+            logger.error("Error listing {}: {}", dir, e.getMessage());
+        }
+        return false;
+    }
+
+    private static Path findReadableFile(String dir) {
+        Path filePath = findFile(dir, MANIFEST_FILE_NAME);
+        try {
+            return filePath != null && Files.isReadable(filePath) && Files.size(filePath) > 0 ? filePath : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     private String getManifestFromCredentials(String credentials) { //TODO
         String manifest = "";
         return manifest;
@@ -114,5 +437,35 @@ class SolaceManifestLoader {
     // For Testing
     void setSearchQueries(List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries) {
         this.searchQueries = searchQueries;
+        refreshEnvSnapshot();
+    }
+
+    /**
+     * The source of a manifest, as found by {@link #findManifestSource()}.
+     */
+    static class ManifestSource {
+        final String name;
+        // Either is null, depending on whether the manifest is held by a file
+        final Path file;
+        final String content;
+
+        ManifestSource(String name, Path file, String content) {
+            this.name = name;
+            this.file = file;
+            this.content = content;
+        }
+    }
+
+    private static class EnvSnapshot {
+        final Map<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>, String> values;
+        final String userHome;
+        final String sidecarAddress;
+
+        EnvSnapshot(Map<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>, String> values, String userHome,
+                    String sidecarAddress) {
+            this.values = values;
+            this.userHome = userHome;
+            this.sidecarAddress = sidecarAddress;
+        }
     }
 }
@@ -0,0 +1,291 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.ContentReference;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Thrown when a service manifest does not have the expected format.</p>
+ *
+ * <p>The exception carries the {@link #getLocation() location} of the error within the manifest, the original parser
+ *      exception as its cause, and a bounded {@link #getExcerpt() excerpt} of the manifest around the error. The
+ *      excerpt keeps the manifest's structure and keys, but every string value and bare token other than
+ *      {@code true}, {@code false} and {@code null} is redacted, so that it can safely be logged.</p>
+ */
+public class SolaceManifestParseException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    // Number of characters, or bytes for encoded manifests, kept on either side of the error
+    static final int EXCERPT_RADIUS = 32;
+    static final String REDACTED = "***";
+    private static final String TRUNCATED = "...";
+
+    // Quoting states of the manifest at the start of an excerpt
+    private static final int OUTSIDE = 0;
+    private static final int INSIDE = 1;
+    private static final int ESCAPED = 2;
+
+    private final transient JsonLocation location;
+    private final String excerpt;
+
+    /**
+     * @param cause The exception thrown while parsing the manifest.
+     * @param raw The manifest, null if unavailable.
+     */
+    SolaceManifestParseException(IOException cause, CharSequence raw) {
+        this(cause, getLocation(cause), raw);
+    }
+
+    /**
+     * @param cause The exception thrown while parsing the manifest.
+     * @param raw A buffer containing the encoded manifest. Excerpts are only taken from UTF-8 manifests.
+     * @param offset The offset of the manifest within the buffer.
+     * @param length The length of the manifest.
+     */
+    SolaceManifestParseException(IOException cause, byte[] raw, int offset, int length) {
+        this(cause, getLocation(cause), raw, offset, length);
+    }
+
+    private SolaceManifestParseException(IOException cause, JsonLocation location, CharSequence raw) {
+        this(cause, location, raw != null && location != null ? excerpt(raw, location.getCharOffset()) : null);
+    }
+
+    private SolaceManifestParseException(IOException cause, JsonLocation location,
+                                         byte[] raw, int offset, int length) {
+        this(cause, location,
+                location != null ? excerpt(raw, offset, length, location.getByteOffset()) : null);
+    }
+
+    private SolaceManifestParseException(IOException cause, JsonLocation location, String excerpt) {
+        super(formatMessage(cause, location, excerpt), cause);
+        this.location = location;
+        this.excerpt = excerpt;
+    }
+
+    /**
+     * @return The location of the error within the manifest, null if unknown. It does not reference the manifest.
+     */
+    public JsonLocation getLocation() {
+        return location;
+    }
+
+    /**
+     * @return The line number of the error, starting from 1, or -1 if unknown.
+     */
+    public int getLineNr() {
+        return location != null ? location.getLineNr() : -1;
+    }
+
+    /**
+     * @return The column number of the error, starting from 1, or -1 if unknown.
+     */
+    public int getColumnNr() {
+        return location != null ? location.getColumnNr() : -1;
+    }
+
+    /**
+     * @return The character offset of the error within a string manifest, -1 if unknown or if the manifest was
+     *      encoded.
+     */
+    public long getCharOffset() {
+        return location != null ? location.getCharOffset() : -1;
+    }
+
+    /**
+     * @return The byte offset of the error within an encoded manifest, -1 if unknown or if the manifest was a string.
+     */
+    public long getByteOffset() {
+        return location != null ? location.getByteOffset() : -1;
+    }
+
+    /**
+     * @return The redacted excerpt of the manifest around the error, null if unavailable.
+     */
+    public String getExcerpt() {
+        return excerpt;
+    }
+
+    private static JsonLocation getLocation(IOException cause) {
+        if (!(cause instanceof JsonProcessingException)) return null;
+        JsonLocation location = ((JsonProcessingException) cause).getLocation();
+        if (location == null || location == JsonLocation.NA) return null;
+        // Copied without its content reference, which may hold on to the manifest
+        return new JsonLocation(ContentReference.unknown(), location.getByteOffset(), location.getCharOffset(),
+                location.getLineNr(), location.getColumnNr());
+    }
+
+    private static String formatMessage(IOException cause, JsonLocation location, String excerpt) {
+        StringBuilder msg = new StringBuilder("The provided services manifest does not have the expected format");
+        if (location != null) {
+            msg.append(String.format(" at line %d, column %d", location.getLineNr(), location.getColumnNr()));
+        } else if (!(cause instanceof JsonProcessingException)) {
+            // Parser messages may quote the manifest's contents
+            msg.append(": ").append(cause.getMessage());
+        }
+        if (excerpt != null) msg.append(", near: ").append(excerpt);
+        return msg.toString();
+    }
+
+    static String excerpt(CharSequence raw, long errorOffset) {
+        if (errorOffset < 0) return null;
+        int error = (int) Math.min(errorOffset, raw.length());
+        int start = Math.max(0, error - EXCERPT_RADIUS);
+        int end = Math.min(raw.length(), error + EXCERPT_RADIUS);
+
+        int state = scanQuotes(raw, 0, start);
+        // Start from the escaping backslash so that the escaped character is not taken as a closing quote
+        if (state == ESCAPED) start--;
+        return redact(raw, start, end, state != OUTSIDE);
+    }
+
+    static String excerpt(byte[] raw, int offset, int length, long errorOffset) {
+        if (errorOffset < 0 || !isUtf8(raw, offset, length)) return null;
+        int error = offset + (int) Math.min(errorOffset, length);
+        int start = Math.max(offset, error - EXCERPT_RADIUS);
+        int end = Math.min(offset + length, error + EXCERPT_RADIUS);
+
+        // Quotes and backslashes are single bytes in UTF-8, and never part of a multi-byte character
+        int state = scanQuotes(new ByteSequence(raw), offset, start);
+        if (state == ESCAPED) start--;
+        String window = new String(raw, start, end - start, StandardCharsets.UTF_8);
+        String excerpt = redact(window, 0, window.length(), state != OUTSIDE);
+        return (start > offset ? TRUNCATED : "") + excerpt + (end < offset + length ? TRUNCATED : "");
+    }
+
+    private static int scanQuotes(CharSequence raw, int start, int end) {
+        int state = OUTSIDE;
+        for (int i = start; i < end; i++) {
+            char c = raw.charAt(i);
+            if (state == ESCAPED) state = INSIDE;
+            else if (c == '"') state = state == OUTSIDE ? INSIDE : OUTSIDE;
+            else if (c == '\\' && state == INSIDE) state = ESCAPED;
+        }
+        return state;
+    }
+
+    private static String redact(CharSequence raw, int start, int end, boolean inString) {
+        StringBuilder excerpt = new StringBuilder();
+        if (start > 0) excerpt.append(TRUNCATED);
+
+        int i = start;
+        // Unknown while the opening quote of the current string lies before the excerpt
+        int openingQuote = -1;
+        while (i < end) {
+            char c = raw.charAt(i);
+            if (inString) {
+                int closingQuote = findClosingQuote(raw, i, end);
+                if (closingQuote < 0) {
+                    // Cut off by the excerpt, so whether it is a key or a value is unknown
+                    excerpt.append(REDACTED);
+                    i = end;
+                } else {
+                    if (openingQuote >= 0 && isKey(raw, openingQuote, closingQuote + 1)) {
+                        excerpt.append(raw, i, closingQuote);
+                    } else {
+                        excerpt.append(REDACTED);
+                    }
+                    excerpt.append('"');
+                    i = closingQuote + 1;
+                }
+                inString = false;
+            } else if (c == '"') {
+                excerpt.append(c);
+                openingQuote = i;
+                inString = true;
+                i++;
+            } else if (isWhitespace(c)) {
+                // Kept on a single line
+                excerpt.append(' ');
+                i++;
+            } else if (isStructural(c)) {
+                excerpt.append(c);
+                i++;
+            } else {
+                int tokenEnd = i + 1;
+                while (tokenEnd < end && !isDelimiter(raw.charAt(tokenEnd))) tokenEnd++;
+                String token = raw.subSequence(i, tokenEnd).toString();
+                excerpt.append(token.equals("true") || token.equals("false") || token.equals("null") ?
+                        token : REDACTED);
+                i = tokenEnd;
+            }
+        }
+
+        if (end < raw.length()) excerpt.append(TRUNCATED);
+        return excerpt.toString();
+    }
+
+    private static int findClosingQuote(CharSequence raw, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = raw.charAt(i);
+            if (c == '\\') i++;
+            else if (c == '"') return i;
+        }
+        return -1;
+    }
+
+    /**
+     * A string is only a key by its position, which is after the start of an object or a comma, and before a colon.
+     * A value followed by a stray colon, as in {@code "password": "value": 1}, is therefore not mistaken for a key.
+     */
+    private static boolean isKey(CharSequence raw, int openingQuote, int afterString) {
+        int i = openingQuote - 1;
+        while (i >= 0 && isWhitespace(raw.charAt(i))) i--;
+        if (i < 0 || (raw.charAt(i) != '{' && raw.charAt(i) != ',')) return false;
+
+        for (i = afterString; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (!isWhitespace(c)) return c == ':';
+        }
+        return false;
+    }
+
+    private static boolean isUtf8(byte[] raw, int offset, int length) {
+        // UTF-16 and UTF-32 manifests start with either a byte order mark or a null byte
+        if (length < 2) return true;
+        byte b0 = raw[offset];
+        byte b1 = raw[offset + 1];
+        return b0 != 0 && b1 != 0 && !(b0 == (byte) 0xFE && b1 == (byte) 0xFF) &&
+                !(b0 == (byte) 0xFF && b1 == (byte) 0xFE);
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == '"' || isWhitespace(c) || isStructural(c);
+    }
+
+    private static boolean isStructural(char c) {
+        return c == '{' || c == '}' || c == '[' || c == ']' || c == ':' || c == ',';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Views the bytes of an encoded manifest as characters, for the ASCII characters that are scanned.
+     */
+    private static class ByteSequence implements CharSequence {
+        private final byte[] bytes;
+
+        ByteSequence(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
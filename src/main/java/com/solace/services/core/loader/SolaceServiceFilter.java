@@ -0,0 +1,46 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+
+/**
+ * <p>Selects the services to load from a manifest, see
+ *      {@link SolaceCredentialsLoader#setProjection(java.util.Collection, SolaceServiceFilter)}.</p>
+ *
+ * <p>A service is tested as soon as it has been decoded, with its ID resolved. Only its projected fields are decoded,
+ *      along with the fields used to resolve its ID, which are always decoded.</p>
+ */
+public abstract class SolaceServiceFilter {
+    /**
+     * @param svcCreds A decoded service.
+     * @return True to load the service, false to drop it.
+     */
+    public abstract boolean accept(SolaceServiceCredentials svcCreds);
+
+    /**
+     * @param msgVpnName A message VPN name.
+     * @return A filter accepting only the services of the given message VPN.
+     */
+    public static SolaceServiceFilter msgVpnName(final String msgVpnName) {
+        if (msgVpnName == null) throw new IllegalArgumentException("The message VPN name must not be null");
+        return new SolaceServiceFilter() {
+            @Override
+            public boolean accept(SolaceServiceCredentials svcCreds) {
+                return msgVpnName.equals(svcCreds.getMsgVpnName());
+            }
+        };
+    }
+
+    /**
+     * @param idPrefix A prefix of {@link SolaceServiceCredentials#getId() service IDs}.
+     * @return A filter accepting only the services whose ID starts with the given prefix.
+     */
+    public static SolaceServiceFilter idPrefix(final String idPrefix) {
+        if (idPrefix == null) throw new IllegalArgumentException("The ID prefix must not be null");
+        return new SolaceServiceFilter() {
+            @Override
+            public boolean accept(SolaceServiceCredentials svcCreds) {
+                return svcCreds.getId() != null && svcCreds.getId().startsWith(idPrefix);
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package com.solace.services.core.loader;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * <p>The command-line entry point of the jar:</p>
+ * <pre>
+ * java -jar solace-services-info.jar inspect [--iterations &lt;n&gt;]
+ * java -jar solace-services-info.jar sidecar &lt;address&gt; [poll interval in ms]
+ * </pre>
+ *
+ * <ul>
+ *     <li>{@code inspect}: Loads the manifest of this JVM's environment as the {@link SolaceCredentialsLoader} would,
+ *          and reports its source, size, services and duplicate IDs, and the timings of each load stage, as described
+ *          in {@link SolaceServicesInspector}. With several iterations, warm timings are reported along with the cold
+ *          ones.</li>
+ *     <li>{@code sidecar}: Runs a {@link SolaceServicesSidecar}.</li>
+ * </ul>
+ *
+ * <p>The jar's dependencies are expected next to it, as listed in its manifest's {@code Class-Path}. Otherwise, put
+ *      them on the classpath and run this class by name.</p>
+ */
+public class SolaceServicesCli {
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+
+    private SolaceServicesCli() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("sidecar")) {
+            SolaceServicesSidecar.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        System.exit(run(args, new SolaceManifestLoader(), System.out, System.err));
+    }
+
+    static int run(String[] args, SolaceManifestLoader manifestLoader, PrintStream out, PrintStream err) {
+        if (args.length == 0 || !args[0].equals("inspect")) return usage(err);
+
+        int iterations = 1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--iterations") && i + 1 < args.length) {
+                try {
+                    iterations = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    return usage(err);
+                }
+                if (iterations < 1) return usage(err);
+            } else {
+                return usage(err);
+            }
+        }
+
+        return new SolaceServicesInspector(manifestLoader).inspect(iterations, out) ? EXIT_OK : EXIT_FAILED;
+    }
+
+    private static int usage(PrintStream err) {
+        err.println("Usage:");
+        err.println("  inspect [--iterations <n>]");
+        err.println("  sidecar <address> [poll interval in ms]");
+        return EXIT_USAGE;
+    }
+}
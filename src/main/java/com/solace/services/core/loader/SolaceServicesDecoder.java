@@ -0,0 +1,238 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.solace.services.core.model.SolaceSecret;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Reflection-free alternative to Jackson data-binding which decodes services straight from a manifest's tokens.</p>
+ *
+ * <p>Intended for environments where reflection is unavailable or must be declared ahead of time,
+ *      such as GraalVM native images. Unknown properties are ignored.</p>
+ *
+ * <p>If secrets are stored off-heap, passwords are copied straight from the parser's buffer into a
+ *      {@link SolaceSecret} without ever being held as a heap string.</p>
+ *
+ * <p>Decoding can be restricted to a projection of the credentials fields, in which case the values of the other
+ *      fields are skipped over token by token without ever being decoded.</p>
+ */
+class SolaceServicesDecoder {
+    static final Set<String> FIELD_NAMES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "id", "clientUsername", "clientPassword", "msgVpnName", "smfHosts", "smfTlsHosts", "smfZipHosts",
+            "jmsJndiUris", "jmsJndiTlsUris", "restUris", "restTlsUris", "amqpUris", "amqpTlsUris", "mqttUris",
+            "mqttTlsUris", "mqttWsUris", "mqttWssUris", "managementHostnames", "managementPassword",
+            "managementUsername", "activeManagementHostname", "dmrClusterName", "dmrClusterPassword")));
+
+    // Always decoded, since service IDs are resolved from them
+    static final Set<String> ID_FIELD_NAMES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "id", "msgVpnName", "activeManagementHostname")));
+
+    private final boolean offHeapSecrets;
+    private final Set<String> fieldNames;
+
+    SolaceServicesDecoder(boolean offHeapSecrets) {
+        this(offHeapSecrets, null);
+    }
+
+    /**
+     * @param offHeapSecrets True to decode passwords into off-heap secrets.
+     * @param fieldNames The names of the only credentials fields to decode, along with the {@link #ID_FIELD_NAMES ID
+     *      fields}, null to decode them all. The values of other fields are skipped without being decoded.
+     */
+    SolaceServicesDecoder(boolean offHeapSecrets, Set<String> fieldNames) {
+        this.offHeapSecrets = offHeapSecrets;
+        if (fieldNames == null) {
+            this.fieldNames = null;
+        } else {
+            this.fieldNames = new HashSet<>(fieldNames);
+            this.fieldNames.addAll(ID_FIELD_NAMES);
+        }
+    }
+
+    /**
+     * Decodes every service in the manifest.
+     * @param parser A parser positioned before the manifest's root token.
+     * @return The credentials of every service in the manifest, with their IDs resolved.
+     * @throws IOException If the manifest does not have one of the expected formats.
+     */
+    List<SolaceServiceCredentialsImpl> decode(JsonParser parser) throws IOException {
+        List<SolaceServiceCredentialsImpl> svcsCreds = new LinkedList<>();
+        JsonToken token = parser.nextToken();
+
+        if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) svcsCreds.add(decodeCredentials(parser));
+        } else if (token == JsonToken.START_OBJECT) {
+            // The root is either a VCAP-formatted map of services or the credentials of a single service
+            SolaceServiceCredentialsImpl singleCreds = new SolaceServiceCredentialsImpl();
+            List<SolaceMessagingServiceInfo> pubSubServices = null;
+            List<SolaceMessagingServiceInfo> messagingServices = null;
+            boolean isVCAP = false;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if (fieldName.equals(SolaceServicesParser.SOLACE_PUBSUB_SVC_NAME)) {
+                    pubSubServices = decodeServices(parser);
+                    isVCAP = true;
+                } else if (fieldName.equals(SolaceServicesParser.SOLACE_MESSAGING_SVC_NAME)) {
+                    messagingServices = decodeServices(parser);
+                    isVCAP = true;
+                } else {
+                    decodeField(parser, fieldName, singleCreds);
+                }
+            }
+
+            if (isVCAP) {
+                List<SolaceMessagingServiceInfo> services = pubSubServices != null ? pubSubServices : messagingServices;
+                if (services != null) {
+                    for (SolaceMessagingServiceInfo serviceInfo : services) {
+                        SolaceServiceCredentialsImpl svcCreds = serviceInfo.getCredentials();
+                        svcCreds.setId(SolaceServicesParser.getServiceId(serviceInfo));
+                        svcsCreds.add(svcCreds);
+                    }
+                }
+            } else {
+                svcsCreds.add(singleCreds);
+            }
+        } else {
+            throw new JsonParseException(parser, String.format("Unexpected manifest root token %s", token));
+        }
+
+        for (SolaceServiceCredentialsImpl svcCreds : svcsCreds) svcCreds.setId(SolaceServicesParser.getServiceId(svcCreds));
+        return svcsCreds;
+    }
+
+    /**
+     * @param parser A parser positioned at the start of a service's credentials object.
+     * @return The service's credentials. Its ID is <b>not</b> resolved.
+     * @throws IOException If the credentials are not an object or if any of its properties have an unexpected type.
+     */
+    SolaceServiceCredentialsImpl decodeCredentials(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+            throw new JsonParseException(parser, "Expected an object of service credentials");
+
+        SolaceServiceCredentialsImpl svcCreds = new SolaceServiceCredentialsImpl();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            decodeField(parser, fieldName, svcCreds);
+        }
+        return svcCreds;
+    }
+
+    /**
+     * @param parser A parser positioned at the start of a VCAP-formatted service object.
+     * @return The service's meta-name and credentials.
+     * @throws IOException If the service is not an object or if any of its properties have an unexpected type.
+     */
+    SolaceMessagingServiceInfo decodeServiceInfo(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+            throw new JsonParseException(parser, "Expected a service object");
+
+        SolaceMessagingServiceInfo serviceInfo = new SolaceMessagingServiceInfo();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "credentials":
+                    serviceInfo.setCredentials(token == JsonToken.VALUE_NULL ? null : decodeCredentials(parser));
+                    break;
+                case "name": serviceInfo.setName(decodeString(parser)); break;
+                default: parser.skipChildren();
+            }
+        }
+        return serviceInfo;
+    }
+
+    private List<SolaceMessagingServiceInfo> decodeServices(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) return null;
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY)
+            throw new JsonParseException(parser, "Expected an array of services");
+
+        List<SolaceMessagingServiceInfo> services = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) services.add(decodeServiceInfo(parser));
+        return services;
+    }
+
+    private void decodeField(JsonParser parser, String fieldName, SolaceServiceCredentialsImpl svcCreds)
+            throws IOException {
+        if (fieldNames != null && !fieldNames.contains(fieldName)) {
+            parser.skipChildren();
+            return;
+        }
+
+        switch (fieldName) {
+            case "id": svcCreds.setId(decodeString(parser)); break;
+            case "clientUsername": svcCreds.setClientUsername(decodeString(parser)); break;
+            case "clientPassword":
+                if (offHeapSecrets) svcCreds.setClientPasswordSecret(decodeSecret(parser));
+                else svcCreds.setClientPassword(decodeString(parser));
+                break;
+            case "msgVpnName": svcCreds.setMsgVpnName(decodeString(parser)); break;
+            case "smfHosts": svcCreds.setSmfHosts(decodeStringList(parser)); break;
+            case "smfTlsHosts": svcCreds.setSmfTlsHosts(decodeStringList(parser)); break;
+            case "smfZipHosts": svcCreds.setSmfZipHosts(decodeStringList(parser)); break;
+            case "jmsJndiUris": svcCreds.setJmsJndiUris(decodeStringList(parser)); break;
+            case "jmsJndiTlsUris": svcCreds.setJmsJndiTlsUris(decodeStringList(parser)); break;
+            case "restUris": svcCreds.setRestUris(decodeStringList(parser)); break;
+            case "restTlsUris": svcCreds.setRestTlsUris(decodeStringList(parser)); break;
+            case "amqpUris": svcCreds.setAmqpUris(decodeStringList(parser)); break;
+            case "amqpTlsUris": svcCreds.setAmqpTlsUris(decodeStringList(parser)); break;
+            case "mqttUris": svcCreds.setMqttUris(decodeStringList(parser)); break;
+            case "mqttTlsUris": svcCreds.setMqttTlsUris(decodeStringList(parser)); break;
+            case "mqttWsUris": svcCreds.setMqttWsUris(decodeStringList(parser)); break;
+            case "mqttWssUris": svcCreds.setMqttWssUris(decodeStringList(parser)); break;
+            case "managementHostnames": svcCreds.setManagementHostnames(decodeStringList(parser)); break;
+            case "managementPassword":
+                if (offHeapSecrets) svcCreds.setManagementPasswordSecret(decodeSecret(parser));
+                else svcCreds.setManagementPassword(decodeString(parser));
+                break;
+            case "managementUsername": svcCreds.setManagementUsername(decodeString(parser)); break;
+            case "activeManagementHostname": svcCreds.setActiveManagementHostname(decodeString(parser)); break;
+            case "dmrClusterName": svcCreds.setDmrClusterName(decodeString(parser)); break;
+            case "dmrClusterPassword":
+                if (offHeapSecrets) svcCreds.setDmrClusterPasswordSecret(decodeSecret(parser));
+                else svcCreds.setDmrClusterPassword(decodeString(parser));
+                break;
+            default: parser.skipChildren();
+        }
+    }
+
+    private String decodeString(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) return null;
+        if (!token.isScalarValue())
+            throw new JsonParseException(parser, String.format("Expected a string value, got %s", token));
+        return parser.getText();
+    }
+
+    private SolaceSecret decodeSecret(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) return null;
+        if (!token.isScalarValue())
+            throw new JsonParseException(parser, String.format("Expected a string value, got %s", token));
+        return SolaceSecret.of(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    private List<String> decodeStringList(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) return null;
+        if (token != JsonToken.START_ARRAY)
+            throw new JsonParseException(parser, String.format("Expected an array of strings, got %s", token));
+
+        List<String> values = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) values.add(decodeString(parser));
+        return values;
+    }
+}
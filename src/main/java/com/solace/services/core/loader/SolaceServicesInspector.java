@@ -0,0 +1,158 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.loader.SolaceManifestLoader.ManifestSource;
+import com.solace.services.core.model.SolaceServiceCredentials;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Runs the load pipeline of a {@link SolaceCredentialsLoader} and reports what it found, and how long each of its
+ *      stages took:</p>
+ * <ul>
+ *     <li>{@code read}: Finding the manifest source and reading its manifest.</li>
+ *     <li>{@code parse}: Marshalling every service of the manifest.</li>
+ *     <li>{@code index}: Indexing the services by ID.</li>
+ *     <li>{@code load}: A lookup through the loader itself, which reuses its snapshot of an unchanged manifest after
+ *          the first iteration.</li>
+ * </ul>
+ *
+ * <p>The first iteration is reported as cold, since it also pays for class loading and runs interpreted, and any
+ *      further iterations as warm. Services are printed with their passwords masked.</p>
+ */
+class SolaceServicesInspector {
+    private static final String[] STAGES = {"read", "parse", "index", "load"};
+
+    private final SolaceManifestLoader manifestLoader;
+    private final SolaceServicesParser servicesParser;
+    private final SolaceCredentialsLoader credentialsLoader;
+
+    SolaceServicesInspector(SolaceManifestLoader manifestLoader) {
+        this.manifestLoader = manifestLoader;
+        this.servicesParser = SolaceCredentialsLoader.createDefaultServicesParser();
+        this.credentialsLoader = SolaceCredentialsLoader.createIsolated(manifestLoader);
+    }
+
+    /**
+     * @param iterations The number of times the pipeline is run.
+     * @param out The stream to which the report is printed.
+     * @return True if a manifest was found and marshalled.
+     */
+    boolean inspect(int iterations, PrintStream out) {
+        String sidecarAddress = manifestLoader.getSidecarAddress();
+        if (sidecarAddress != null) {
+            out.printf("Sidecar:        %s (the load stage fetches its services instead)%n", sidecarAddress);
+        }
+
+        ManifestSource source = manifestLoader.findManifestSource();
+        if (source == null) {
+            out.println("No manifest found");
+            return false;
+        }
+
+        out.printf("Source:         %s%n", source.name);
+        if (source.file != null) out.printf("File:           %s (%s)%n", source.file, formatFileSize(source));
+
+        long[][] timings = new long[STAGES.length][iterations];
+        String raw = null;
+        List<SolaceServiceCredentials> svcsCredsList = null;
+        try {
+            for (int i = 0; i < iterations; i++) {
+                long startTime = System.nanoTime();
+                raw = manifestLoader.getManifest();
+                long readTime = System.nanoTime();
+                if (raw == null || raw.isEmpty()) {
+                    out.println("The manifest vanished while being inspected");
+                    return false;
+                }
+                svcsCredsList = servicesParser.parse(raw);
+                long parseTime = System.nanoTime();
+                SolaceServicesIndex.mapOf(svcsCredsList);
+                long indexTime = System.nanoTime();
+                credentialsLoader.loadServicesCredentials();
+                long loadTime = System.nanoTime();
+
+                timings[0][i] = readTime - startTime;
+                timings[1][i] = parseTime - readTime;
+                timings[2][i] = indexTime - parseTime;
+                timings[3][i] = loadTime - indexTime;
+            }
+        } catch (IOException e) {
+            out.println(new SolaceManifestParseException(e, raw).getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            // Parse exceptions only quote a redacted excerpt of the manifest
+            out.println(e.getMessage());
+            return false;
+        }
+
+        out.printf("Manifest:       %d chars%n", raw.length());
+        out.printf("Services:       %d%n", svcsCredsList.size());
+        out.printf("Duplicate IDs:  %s%n", formatDuplicateIds(svcsCredsList));
+        out.println();
+        printTimings(timings, out);
+        out.println();
+
+        out.println("Resolved services, the last of any duplicates being used:");
+        for (SolaceServiceCredentials svcCreds : SolaceServicesIndex.mapOf(svcsCredsList).values()) {
+            out.printf("  %s: %s%n", svcCreds.getId(), svcCreds);
+        }
+        return true;
+    }
+
+    private static void printTimings(long[][] timings, PrintStream out) {
+        int iterations = timings[0].length;
+        if (iterations == 1) {
+            out.println("Stage      cold ms");
+        } else {
+            out.printf("Stage      cold ms   warm ms over %d iterations (min / median / max)%n", iterations - 1);
+        }
+
+        for (int stage = 0; stage < STAGES.length; stage++) {
+            long[] stageTimings = timings[stage];
+            out.printf(Locale.ROOT, "%-8s %9.3f", STAGES[stage], toMillis(stageTimings[0]));
+            if (iterations > 1) {
+                long[] warmTimings = Arrays.copyOfRange(stageTimings, 1, iterations);
+                Arrays.sort(warmTimings);
+                out.printf(Locale.ROOT, "   %.3f / %.3f / %.3f", toMillis(warmTimings[0]),
+                        toMillis(warmTimings[warmTimings.length / 2]), toMillis(warmTimings[warmTimings.length - 1]));
+            }
+            out.println();
+        }
+    }
+
+    private static String formatDuplicateIds(List<SolaceServiceCredentials> svcsCredsList) {
+        Map<String, Integer> idCounts = new LinkedHashMap<>();
+        for (SolaceServiceCredentials svcCreds : svcsCredsList) {
+            Integer count = idCounts.get(svcCreds.getId());
+            idCounts.put(svcCreds.getId(), count == null ? 1 : count + 1);
+        }
+
+        StringBuilder duplicates = new StringBuilder();
+        for (Map.Entry<String, Integer> idCount : idCounts.entrySet()) {
+            if (idCount.getValue() < 2) continue;
+            if (duplicates.length() > 0) duplicates.append(", ");
+            duplicates.append(idCount.getKey()).append(" (x").append(idCount.getValue()).append(')');
+        }
+        return duplicates.length() > 0 ? duplicates.toString() : "none";
+    }
+
+    private static String formatFileSize(ManifestSource source) {
+        try {
+            return Files.size(source.file) + " bytes";
+        } catch (IOException e) {
+            return "size unknown";
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,161 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.solace.services.core.model.SolaceServiceCredentials;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Iterates over the services of a manifest in their order of appearance, binding each one only as it is requested,
+ *      so that no more than one service is held in memory at a time whatever the manifest's size.</p>
+ *
+ * <p>Service IDs are resolved as described in {@link SolaceCredentialsLoader}. Services sharing an ID are all
+ *      returned, whereas lookups would only return the last one of them.</p>
+ *
+ * <p>The iterator is closed as soon as its last service has been returned, or once it failed. Iterators which are not
+ *      exhausted must be closed to release their manifest.</p>
+ */
+public final class SolaceServicesIterator implements Iterator<SolaceServiceCredentials>, Closeable {
+    private final SolaceServicesParser servicesParser;
+    private final JsonParser parser;
+    private final String servicesField;
+    private final Closeable source;
+    private final CharSequence raw;
+
+    private boolean started = false;
+    private boolean vcapServices = false;
+    private boolean singleService = false;
+    private boolean closed = false;
+    private SolaceServiceCredentials next;
+
+    /**
+     * @param servicesParser The parser binding each service.
+     * @param parser A parser positioned before the manifest's root token.
+     * @param servicesField The {@link SolaceManifestFormat#findServicesField(JsonParser) field holding the services}
+     *      of a VCAP-formatted manifest, null if the manifest is not VCAP-formatted.
+     * @param source The source of the manifest, closed along with the parser, null if none.
+     * @param raw The manifest, quoted in parse exceptions, null if unavailable.
+     */
+    SolaceServicesIterator(SolaceServicesParser servicesParser, JsonParser parser, String servicesField,
+                           Closeable source, CharSequence raw) {
+        this.servicesParser = servicesParser;
+        this.parser = parser;
+        this.servicesField = servicesField;
+        this.source = source;
+        this.raw = raw;
+    }
+
+    static SolaceServicesIterator empty() {
+        SolaceServicesIterator iterator = new SolaceServicesIterator(null, null, null, null, null);
+        iterator.closed = true;
+        return iterator;
+    }
+
+    /**
+     * @throws SolaceManifestParseException If the next service does not have the expected format, or if the
+     *      manifest could not be read.
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        if (closed) return false;
+
+        try {
+            next = readNext();
+        } catch (IOException e) {
+            close();
+            throw new SolaceManifestParseException(e, raw);
+        }
+
+        if (next == null) close();
+        return next != null;
+    }
+
+    /**
+     * @throws SolaceManifestParseException If the next service does not have the expected format, or if the
+     *      manifest could not be read.
+     */
+    @Override
+    public SolaceServiceCredentials next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        SolaceServiceCredentials svcCreds = next;
+        next = null;
+        return svcCreds;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Services cannot be removed from a manifest");
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            parser.close();
+            if (source != null) source.close();
+        } catch (IOException e) {
+            // Nothing left to read from it
+        }
+    }
+
+    /**
+     * @return The next service, null if there are none left.
+     */
+    private SolaceServiceCredentials readNext() throws IOException {
+        if (!started) {
+            started = true;
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) return readNextElement();
+            if (token == null) throw new JsonParseException(parser, "No manifest content");
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, String.format("Unexpected manifest root token %s", token));
+            }
+
+            if (servicesField == null) {
+                singleService = true;
+                return servicesParser.bindService(parser, false);
+            }
+            return findServices() ? readNextElement() : null;
+        }
+        return singleService ? null : readNextElement();
+    }
+
+    /**
+     * Skips the top-level fields of a VCAP-formatted manifest up to its services.
+     * @return True if positioned at the start of the services' array, false if there are none.
+     */
+    private boolean findServices() throws IOException {
+        vcapServices = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (!fieldName.equals(servicesField)) {
+                parser.skipChildren();
+                continue;
+            }
+
+            if (token == JsonToken.VALUE_NULL) return false;
+            if (token != JsonToken.START_ARRAY) throw new JsonParseException(parser, "Expected an array of services");
+            return true;
+        }
+        return false;
+    }
+
+    private SolaceServiceCredentials readNextElement() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) throw new JsonParseException(parser, "Unexpected end of the manifest");
+            SolaceServiceCredentials svcCreds = servicesParser.bindService(parser, vcapServices);
+            // Otherwise dropped by the parser's filter
+            if (svcCreds != null) return svcCreds;
+        }
+        return null;
+    }
+}
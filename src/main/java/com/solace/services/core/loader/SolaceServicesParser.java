@@ -0,0 +1,364 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Marshals raw service manifests into {@link SolaceServiceCredentials}.</p>
+ *
+ * <p>Supported manifest formats and their service ID resolution are described in {@link SolaceCredentialsLoader}.</p>
+ *
+ * <p>Services are either bound through Jackson data-binding or, if created with only a {@link JsonFactory},
+ *      through the reflection-free {@link SolaceServicesDecoder}. The latter can be restricted to a projection of the
+ *      credentials fields, and services can be dropped by a {@link SolaceServiceFilter} as soon as they are decoded.</p>
+ */
+class SolaceServicesParser {
+    static final String SOLACE_MESSAGING_SVC_NAME = "solace-messaging";
+    static final String SOLACE_PUBSUB_SVC_NAME = "solace-pubsub";
+
+    private final JsonFactory jsonFactory;
+    private final SolaceServicesDecoder decoder;
+    private final ObjectReader defaultReader;
+    private final ObjectReader servicesReader;
+    private final ObjectReader credsListReader;
+    private final ObjectReader credReader;
+    private final ObjectReader serviceInfoReader;
+    private final SolaceServiceFilter filter;
+    private final boolean offHeapSecrets = Boolean.getBoolean(SolaceCredentialsLoader.OFF_HEAP_SECRETS_PROPERTY);
+    private volatile SolaceServicesSnapshot snapshot;
+
+    SolaceServicesParser(ObjectMapper objectMapper) {
+        jsonFactory = objectMapper.getFactory();
+        decoder = null;
+        defaultReader = objectMapper.reader();
+        servicesReader = objectMapper.readerFor(VCAPServicesInfo.class);
+        credsListReader = objectMapper.readerFor(new TypeReference<List<SolaceServiceCredentialsImpl>>(){});
+        credReader = objectMapper.readerFor(SolaceServiceCredentialsImpl.class);
+        serviceInfoReader = objectMapper.readerFor(SolaceMessagingServiceInfo.class);
+        filter = null;
+    }
+
+    SolaceServicesParser(JsonFactory jsonFactory) {
+        this(jsonFactory, null, null);
+    }
+
+    /**
+     * @param jsonFactory The factory of the parsers from which services are decoded.
+     * @param fieldNames The names of the only credentials fields to decode, as described in
+     *      {@link SolaceServicesDecoder#SolaceServicesDecoder(boolean, Set)}, null to decode them all.
+     * @param filter The filter of the services to keep, null to keep them all.
+     */
+    SolaceServicesParser(JsonFactory jsonFactory, Set<String> fieldNames, SolaceServiceFilter filter) {
+        this.jsonFactory = jsonFactory;
+        decoder = new SolaceServicesDecoder(offHeapSecrets, fieldNames);
+        defaultReader = servicesReader = credsListReader = credReader = serviceInfoReader = null;
+        this.filter = filter;
+    }
+
+    /**
+     * Marshals every service in the given manifest.
+     * @param raw A JSON string representing a service manifest.
+     * @return The credentials of every service in the manifest, with their IDs resolved.
+     * @throws IOException If the manifest does not have one of the expected formats.
+     */
+    List<SolaceServiceCredentials> parse(String raw) throws IOException {
+        SolaceManifestFormat format = decoder != null ? null : SolaceManifestFormat.detect(raw, jsonFactory);
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            return parse(parser, format);
+        }
+    }
+
+    /**
+     * Marshals every service in the given encoded manifest without decoding it into a string first.
+     * @see #parse(String)
+     */
+    List<SolaceServiceCredentials> parse(byte[] raw, int offset, int length) throws IOException {
+        SolaceManifestFormat format = decoder != null ? null : SolaceManifestFormat.detect(raw, offset, length, jsonFactory);
+        try (JsonParser parser = jsonFactory.createParser(raw, offset, length)) {
+            return parse(parser, format);
+        }
+    }
+
+    /**
+     * Marshals every service in the given encoded manifest without decoding it into a string first.
+     * A compressed manifest is decompressed as it is parsed. The stream is not closed.
+     * @see #parse(String)
+     */
+    List<SolaceServiceCredentials> parse(InputStream raw) throws IOException {
+        try (InputStream manifest = SolaceManifestCompression.decompress(raw);
+             JsonParser parser = jsonFactory.createParser(manifest)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            // The stream cannot be rewound after a key scan, so only a list's root token can be detected
+            if (decoder == null && parser.nextToken() == JsonToken.START_ARRAY) {
+                return parse(parser, SolaceManifestFormat.LIST);
+            }
+            return parse(parser, null);
+        }
+    }
+
+    /**
+     * @param parser A parser positioned before or at the manifest's root token.
+     * @param format The manifest's {@link SolaceManifestFormat#detect(String, JsonFactory) detected} format,
+     *      null if undetected, in which case the format is detected from the manifest's tree.
+     */
+    private List<SolaceServiceCredentials> parse(JsonParser parser, SolaceManifestFormat format) throws IOException {
+        if (decoder != null) {
+            List<SolaceServiceCredentials> svcsCreds = new LinkedList<>();
+            for (SolaceServiceCredentialsImpl svcCreds : decoder.decode(parser)) {
+                if (accept(svcCreds)) svcsCreds.add(svcCreds);
+            }
+            return svcsCreds;
+        }
+
+        List<SolaceServiceCredentialsImpl> svcsCreds = new LinkedList<>();
+        if (format != null) {
+            switch (format) {
+                case VCAP: svcsCreds = bindServices(servicesReader.<VCAPServicesInfo>readValue(parser)); break;
+                case LIST: svcsCreds = credsListReader.readValue(parser); break;
+                case SINGLE: svcsCreds.add(credReader.<SolaceServiceCredentialsImpl>readValue(parser)); break;
+            }
+            return resolve(svcsCreds);
+        }
+
+        // Bind from the tree so that the manifest is only tokenized once
+        JsonNode node = defaultReader.readTree(parser);
+        if (node == null || node.isMissingNode()) throw new JsonParseException(parser, "No manifest content");
+
+        if (node.isObject() && ( node.has(SOLACE_MESSAGING_SVC_NAME) || node.has(SOLACE_PUBSUB_SVC_NAME) ) ) {
+            svcsCreds = bindServices(servicesReader.<VCAPServicesInfo>readValue(node));
+        } else if (node.isArray()) {
+            svcsCreds = credsListReader.readValue(node);
+        } else {
+            svcsCreds.add(credReader.<SolaceServiceCredentialsImpl>readValue(node));
+        }
+
+        return resolve(svcsCreds);
+    }
+
+    private List<SolaceServiceCredentials> resolve(List<SolaceServiceCredentialsImpl> svcsCreds) {
+        List<SolaceServiceCredentials> resolved = new LinkedList<>();
+        for (SolaceServiceCredentialsImpl svcCreds : svcsCreds) {
+            svcCreds.setId(getServiceId(svcCreds));
+            if (!accept(svcCreds)) continue;
+            if (offHeapSecrets) svcCreds.moveSecretsOffHeap();
+            resolved.add(svcCreds);
+        }
+        return resolved;
+    }
+
+    /**
+     * @param svcCreds A service, with its ID resolved.
+     * @return True if the service is kept by the filter. The off-heap secrets of dropped services are wiped.
+     */
+    private boolean accept(SolaceServiceCredentialsImpl svcCreds) {
+        if (filter == null || filter.accept(svcCreds)) return true;
+        if (offHeapSecrets) svcCreds.wipeSecrets();
+        return false;
+    }
+
+    private List<SolaceServiceCredentialsImpl> bindServices(VCAPServicesInfo services) {
+        List<SolaceServiceCredentialsImpl> svcsCreds = new LinkedList<>();
+        for (SolaceMessagingServiceInfo serviceInfo : services.getSolaceMessagingServices()) {
+            SolaceServiceCredentialsImpl svcCreds = serviceInfo.getCredentials();
+            svcCreds.setId(getServiceId(serviceInfo));
+            svcsCreds.add(svcCreds);
+        }
+        return svcsCreds;
+    }
+
+    /**
+     * Marshals a single service.
+     * @param parser A parser positioned at the start of the service's object.
+     * @param vcapService True if the object is a VCAP-formatted service, false if it is the service's credentials.
+     * @return The service's credentials, with its ID resolved, null if dropped by the filter.
+     * @throws IOException If the service does not have the expected format.
+     */
+    SolaceServiceCredentials bindService(JsonParser parser, boolean vcapService) throws IOException {
+        SolaceServiceCredentialsImpl svcCreds;
+        if (vcapService) {
+            SolaceMessagingServiceInfo serviceInfo = decoder != null ?
+                    decoder.decodeServiceInfo(parser) : serviceInfoReader.<SolaceMessagingServiceInfo>readValue(parser);
+            svcCreds = serviceInfo.getCredentials();
+            svcCreds.setId(getServiceId(serviceInfo));
+        } else {
+            svcCreds = decoder != null ?
+                    decoder.decodeCredentials(parser) : credReader.<SolaceServiceCredentialsImpl>readValue(parser);
+            svcCreds.setId(getServiceId(svcCreds));
+        }
+        if (!accept(svcCreds)) return null;
+        // The decoder reads secrets straight off-heap
+        if (offHeapSecrets && decoder == null) svcCreds.moveSecretsOffHeap();
+        return svcCreds;
+    }
+
+    /**
+     * Iterates over the services of the given manifest, binding each one only as it is requested.
+     * A VCAP-formatted manifest's top-level keys are scanned first for the field holding its services.
+     * @param raw A JSON string representing a service manifest.
+     * @return An iterator over the manifest's services, with their IDs resolved.
+     * @throws IOException If the manifest's root is malformed.
+     */
+    SolaceServicesIterator iterate(String raw) throws IOException {
+        String servicesField;
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            servicesField = SolaceManifestFormat.findServicesField(parser);
+        }
+        return new SolaceServicesIterator(this, jsonFactory.createParser(raw), servicesField, null, raw);
+    }
+
+    /**
+     * Iterates over the services of the given manifest file, which is read and decompressed as they are requested.
+     * @param file The file holding a UTF-8, UTF-16 or UTF-32 encoded service manifest, optionally compressed.
+     * @see #iterate(String)
+     */
+    SolaceServicesIterator iterate(Path file) throws IOException {
+        String servicesField;
+        try (InputStream in = Files.newInputStream(file);
+             JsonParser parser = jsonFactory.createParser(SolaceManifestCompression.decompress(in))) {
+            servicesField = SolaceManifestFormat.findServicesField(parser);
+        }
+
+        InputStream in = Files.newInputStream(file);
+        try {
+            JsonParser parser = jsonFactory.createParser(SolaceManifestCompression.decompress(in));
+            return new SolaceServicesIterator(this, parser, servicesField, in, null);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    JsonParser createParser(String raw) throws IOException {
+        return jsonFactory.createParser(raw);
+    }
+
+    /**
+     * Gets the services of the given manifest from the last snapshot, only marshalling the manifest if it differs from
+     * the one of the last snapshot. In which case, only the services which changed since the last snapshot are
+     * marshalled, see {@link SolaceServicesSnapshot}.
+     * @param raw A JSON string representing a service manifest.
+     * @return An unmodifiable map of {@link SolaceServiceCredentials#getId() service IDs} to
+     *      {@link SolaceServiceCredentials}.
+     * @throws IOException If the manifest does not have one of the expected formats.
+     */
+    Map<String, SolaceServiceCredentials> getSnapshot(String raw) throws IOException {
+        Map<String, SolaceServiceCredentials> svcsCreds = getCachedSnapshot(raw);
+        if (svcsCreds != null) return svcsCreds;
+
+        synchronized (this) {
+            // Another thread may have already taken the snapshot of this manifest
+            svcsCreds = getCachedSnapshot(raw);
+            if (svcsCreds != null) return svcsCreds;
+
+            // The replaced services are left as they are, since this parser may be shared by loaders still holding them
+            snapshot = SolaceServicesSnapshot.take(this, raw, snapshot);
+            return snapshot.svcsCreds;
+        }
+    }
+
+    /**
+     * @param raw A JSON string representing a service manifest.
+     * @return The services of the last snapshot if it was taken of the given manifest, null otherwise.
+     */
+    Map<String, SolaceServiceCredentials> getCachedSnapshot(String raw) {
+        SolaceServicesSnapshot current = snapshot;
+        return current != null && current.raw.equals(raw) ? current.svcsCreds : null;
+    }
+
+    /**
+     * Drops the last snapshot, so that the next {@link #getSnapshot(String)} marshals its manifest.
+     * Its off-heap secrets are wiped, so this must only be called on an explicit release by the owner of the snapshot,
+     * such as {@link SolaceCredentialsLoader#beforeCheckpoint()}.
+     */
+    synchronized void clearSnapshot() {
+        SolaceServicesSnapshot previous = snapshot;
+        snapshot = null;
+        if (offHeapSecrets && previous != null) {
+            for (SolaceServiceCredentials svcCreds : previous.svcsCreds.values()) wipeSecrets(svcCreds);
+        }
+    }
+
+    /**
+     * Marshals only the requested services from the given manifest, without taking a snapshot of it. As with every
+     * other lookup, the last occurrence of a service ID is used, so the whole manifest is always read.
+     * @param raw A JSON string representing a service manifest.
+     * @param pendingIds The IDs of the services to find. Found IDs are removed from this set.
+     * @param svcsCreds The map in which to put the found services.
+     * @throws IOException If the manifest does not have one of the expected formats.
+     */
+    void find(String raw, Set<String> pendingIds, Map<String, SolaceServiceCredentials> svcsCreds) throws IOException {
+        Set<String> foundIds = new HashSet<>();
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+                // Bind the list one element at a time so that only the requested services are retained
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    SolaceServiceCredentials svcCreds = bindService(parser, false);
+                    if (svcCreds != null) keep(svcCreds, pendingIds, foundIds, svcsCreds);
+                }
+                pendingIds.removeAll(foundIds);
+                return;
+            }
+        }
+
+        for (SolaceServiceCredentials svcCreds : parse(raw)) keep(svcCreds, pendingIds, foundIds, svcsCreds);
+        pendingIds.removeAll(foundIds);
+    }
+
+    /**
+     * Puts the given service if it is requested, replacing an earlier occurrence found by the same
+     * {@link #find(String, Set, Map)}. The off-heap secrets of unrequested and replaced services are wiped.
+     */
+    private void keep(SolaceServiceCredentials svcCreds, Set<String> pendingIds, Set<String> foundIds,
+                      Map<String, SolaceServiceCredentials> svcsCreds) {
+        if (!pendingIds.contains(svcCreds.getId())) {
+            wipeSecrets(svcCreds);
+            return;
+        }
+        SolaceServiceCredentials previous = svcsCreds.put(svcCreds.getId(), svcCreds);
+        if (!foundIds.add(svcCreds.getId())) wipeSecrets(previous);
+    }
+
+    private void wipeSecrets(SolaceServiceCredentials svcCreds) {
+        if (offHeapSecrets && svcCreds instanceof SolaceServiceCredentialsImpl)
+            ((SolaceServiceCredentialsImpl) svcCreds).wipeSecrets();
+    }
+
+    static String getServiceId(SolaceMessagingServiceInfo solaceMessagingServiceInfo) {
+        // Default: Service's meta-name if it exists,
+        //          '@'-delimited concatenation of the service's VPN name and active management host name otherwise
+        SolaceServiceCredentials solaceServiceCredentials = solaceMessagingServiceInfo.getCredentials();
+        String id = solaceServiceCredentials.getId();
+        String metaName = solaceMessagingServiceInfo.getName();
+
+        if (id != null && !id.isEmpty()) return id;
+        else if (metaName != null && !metaName.isEmpty()) return metaName;
+        else return getServiceId(solaceServiceCredentials);
+    }
+
+    static String getServiceId(SolaceServiceCredentials solaceServiceCredentials) {
+        // Default: '@'-delimited concatenation of the service's VPN name and active management host name
+        String id = solaceServiceCredentials.getId();
+        String msgVpnName = solaceServiceCredentials.getMsgVpnName();
+        String activeManagementHostname = solaceServiceCredentials.getActiveManagementHostname();
+
+        return id != null && !id.isEmpty() ? id : msgVpnName+'@'+activeManagementHostname;
+    }
+}
@@ -0,0 +1,181 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Reloads the services of a {@link SolaceCredentialsLoader} in the background ahead of their expiry, so that lookups
+ *      are served from the last loaded services and never wait for the manifest to be read and parsed.</p>
+ *
+ * <p>Services expire once the refresh interval has elapsed since they were loaded. Each reload is scheduled up to
+ *      {@value #MAX_JITTER_PERCENT}% ahead of the expiry at random, so that the processes of a fleet started together
+ *      do not all reload at the same moment. Reloaded services only replace the current ones once fully parsed. If a
+ *      reload fails, the current services keep being served, and it is retried after
+ *      {@value #INITIAL_BACKOFF_MILLIS} ms, or after the refresh interval if shorter. The delay until the next attempt
+ *      is then doubled after each consecutive failure, up to {@value #MAX_BACKOFF_MILLIS} ms whatever the refresh
+ *      interval.</p>
+ *
+ * <p>Reloads of every loader run on a single daemon thread. The loader is only weakly referenced, so that a loader
+ *      which is no longer used can be garbage collected without being {@link SolaceCredentialsLoader#close() closed},
+ *      upon which refreshing stops.</p>
+ */
+final class SolaceServicesRefresher {
+    static final int MAX_JITTER_PERCENT = 10;
+    static final long INITIAL_BACKOFF_MILLIS = 1000;
+    static final long MAX_BACKOFF_MILLIS = 5 * 60 * 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(SolaceServicesRefresher.class);
+    private static final ScheduledThreadPoolExecutor scheduler = createScheduler();
+
+    private final WeakReference<SolaceCredentialsLoader> credentialsLoader;
+    private final long intervalNanos;
+    // Null until first loaded, and once dropped before a checkpoint
+    private final AtomicReference<Map<String, SolaceServiceCredentials>> svcsCreds = new AtomicReference<>();
+    private volatile int failureCount = 0;
+    private ScheduledFuture<?> scheduledRefresh;
+    private boolean stopped = false;
+
+    private SolaceServicesRefresher(SolaceCredentialsLoader credentialsLoader, long intervalNanos) {
+        this.credentialsLoader = new WeakReference<>(credentialsLoader);
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * Starts refreshing the services of the given loader. They are first loaded by the first lookup.
+     * @param credentialsLoader The loader whose services are refreshed.
+     * @param intervalNanos The refresh interval.
+     * @return The started refresher.
+     */
+    static SolaceServicesRefresher start(SolaceCredentialsLoader credentialsLoader, long intervalNanos) {
+        SolaceServicesRefresher refresher = new SolaceServicesRefresher(credentialsLoader, intervalNanos);
+        refresher.scheduleRefresh();
+        return refresher;
+    }
+
+    /**
+     * Stops refreshing. The current services are still served.
+     */
+    synchronized void stop() {
+        stopped = true;
+        if (scheduledRefresh != null) scheduledRefresh.cancel(false);
+    }
+
+    /**
+     * @return The current services, loaded first if none were loaded yet. Unchanged services return the same map
+     *      instance, which must not be modified.
+     * @throws SolaceManifestParseException If no services were loaded yet, and the manifest does not have the expected
+     *      format.
+     */
+    Map<String, SolaceServiceCredentials> getServicesCredentials() {
+        Map<String, SolaceServiceCredentials> current = svcsCreds.get();
+        if (current != null) return current;
+
+        // Only ever called by the loader, which is hence still referenced
+        current = credentialsLoader.get().loadServicesCredentials();
+        if (svcsCreds.compareAndSet(null, current)) return current;
+        // A reload got there first, whose services are at least as recent
+        Map<String, SolaceServiceCredentials> reloaded = svcsCreds.get();
+        return reloaded != null ? reloaded : current;
+    }
+
+    /**
+     * Drops the current services, so that they are loaded anew by the next lookup.
+     */
+    void clear() {
+        svcsCreds.set(null);
+    }
+
+    /**
+     * Reloads the services, keeping the current ones if the reload fails. Stops refreshing if the loader was garbage
+     * collected.
+     * @return True if reloaded.
+     */
+    boolean refresh() {
+        SolaceCredentialsLoader loader = credentialsLoader.get();
+        if (loader == null) {
+            stop();
+            return false;
+        }
+
+        try {
+            long startTime = System.nanoTime();
+            Map<String, SolaceServiceCredentials> reloaded = loader.loadServicesCredentials();
+            svcsCreds.set(reloaded);
+            if (failureCount > 0) logger.info("Refreshed the Solace services again");
+            failureCount = 0;
+            logger.debug("Refreshed {} Solace services in {} ms",
+                    reloaded.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            return true;
+        } catch (RuntimeException e) {
+            failureCount++;
+            logger.warn("Failed to refresh the Solace services, serving the last loaded services " +
+                    "(consecutive failures: {}): {}", failureCount, e.getMessage());
+            return false;
+        }
+    }
+
+    int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @param intervalNanos The refresh interval.
+     * @param failureCount The number of consecutive failed reloads.
+     * @param random A random number between 0 inclusive and 1 exclusive, drawing the jitter.
+     * @return The delay until the next reload.
+     */
+    static long getDelayNanos(long intervalNanos, int failureCount, double random) {
+        long delayNanos = intervalNanos;
+        if (failureCount > 0) {
+            // No later than the next refresh would have been, so that transient failures are soon recovered from
+            long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(MAX_BACKOFF_MILLIS);
+            delayNanos = Math.min(intervalNanos, TimeUnit.MILLISECONDS.toNanos(INITIAL_BACKOFF_MILLIS));
+            for (int i = 1; i < failureCount && delayNanos < maxDelayNanos; i++) delayNanos *= 2;
+            delayNanos = Math.min(delayNanos, maxDelayNanos);
+        }
+        return delayNanos - (long) (delayNanos * (MAX_JITTER_PERCENT / 100.0) * random);
+    }
+
+    private synchronized void scheduleRefresh() {
+        if (stopped) return;
+        long delayNanos = getDelayNanos(intervalNanos, failureCount, ThreadLocalRandom.current().nextDouble());
+        scheduledRefresh = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // Rescheduled even if the reload threw an Error, which would otherwise end refreshing for good
+                try {
+                    refresh();
+                } finally {
+                    scheduleRefresh();
+                }
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "solace-services-refresh-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Stopped refreshers would otherwise hold on to their loaders until their reload was due
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,324 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Loads the manifest of its host once and serves its pre-parsed services to the {@link SolaceCredentialsLoader}s
+ *      of every JVM on the host, so that they neither read nor parse the manifest themselves.</p>
+ *
+ * <p>The manifest is found as described in {@link SolaceManifestLoader}, and is checked for changes at a fixed
+ *      interval. Loaders fetch the services of the sidecar whose address is set in the
+ *      {@link SolaceManifestLoader.SolaceEnv#SOLACE_SERVICES_SIDECAR SOLACE_SERVICES_SIDECAR} JVM property or OS
+ *      environment. Addresses are described in {@link SolaceServicesSidecarProtocol}.</p>
+ *
+ * <p>The socket file of a Unix domain socket is only accessible to the sidecar's user, where supported. Since any process
+ *      on the host can connect to a TCP address, a TCP address is only served to clients proving they hold the shared
+ *      secret described in {@link SolaceServicesSidecarProtocol}, and cannot be bound unless that secret is set. Its
+ *      responses are signed with that secret in turn, and it can only be bound to the loopback interface.</p>
+ *
+ * <p>Can be run on its own, until the JVM is terminated:</p>
+ * <pre>java -cp solace-services-info.jar com.solace.services.core.loader.SolaceServicesSidecar &lt;address&gt; [poll interval in ms]</pre>
+ */
+public class SolaceServicesSidecar implements Closeable {
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000;
+    // Bounds the threads and memory held by clients which connect without completing their exchange
+    static final int MAX_HANDLERS = 8;
+    static final int MAX_PENDING_CONNECTIONS = 256;
+    static final long EXCHANGE_TIMEOUT_MILLIS = SolaceServicesSidecarClient.TIMEOUT_MILLIS;
+
+    private static final Logger logger = LoggerFactory.getLogger(SolaceServicesSidecar.class);
+
+    private final SolaceCredentialsLoader credentialsLoader;
+    private final ServerSocketChannel serverChannel;
+    private final String address;
+    // Null for a Unix domain socket
+    private final byte[] secret;
+    private final ScheduledExecutorService poller;
+    private final ThreadPoolExecutor handlers;
+    private final Thread acceptor;
+    private volatile Response response;
+
+    private SolaceServicesSidecar(SolaceCredentialsLoader credentialsLoader, ServerSocketChannel serverChannel,
+                                  String address, byte[] secret) {
+        this.credentialsLoader = credentialsLoader;
+        this.serverChannel = serverChannel;
+        this.address = address;
+        this.secret = secret;
+        this.poller = Executors.newSingleThreadScheduledExecutor(createThreadFactory("solace-services-sidecar-poll"));
+        this.handlers = new ThreadPoolExecutor(MAX_HANDLERS, MAX_HANDLERS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_PENDING_CONNECTIONS),
+                createThreadFactory("solace-services-sidecar-handler"));
+        this.handlers.allowCoreThreadTimeOut(true);
+        this.acceptor = createThreadFactory("solace-services-sidecar").newThread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    /**
+     * Starts a sidecar serving the manifest of this JVM's environment, checked for changes every
+     * {@value #DEFAULT_POLL_INTERVAL_MILLIS} ms.
+     * @param address The address to bind to.
+     * @return The started sidecar.
+     * @throws IOException If the address could not be bound, or if the shared secret could not be read.
+     * @throws IllegalArgumentException If the address is a TCP address and no shared secret is set.
+     */
+    public static SolaceServicesSidecar start(String address) throws IOException {
+        return start(address, DEFAULT_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a sidecar serving the manifest of this JVM's environment.
+     * @param address The address to bind to.
+     * @param pollInterval The interval at which the manifest is checked for changes.
+     * @param unit The unit of the poll interval.
+     * @return The started sidecar.
+     * @throws IOException If the address could not be bound, or if the shared secret could not be read.
+     * @throws IllegalArgumentException If the address is a TCP address and no shared secret is set.
+     */
+    public static SolaceServicesSidecar start(String address, long pollInterval, TimeUnit unit) throws IOException {
+        return start(new SolaceCredentialsLoader(), address, unit.toMillis(pollInterval));
+    }
+
+    static SolaceServicesSidecar start(SolaceCredentialsLoader credentialsLoader, String address,
+                                       long pollIntervalMillis) throws IOException {
+        // The sidecar must load the manifest itself, even within an environment pointing at a sidecar
+        credentialsLoader.setSidecarEnabled(false);
+
+        byte[] secret = null;
+        if (SolaceServicesSidecarProtocol.isTcp(address)) {
+            secret = SolaceServicesSidecarProtocol.readSharedSecret();
+            if (secret == null) {
+                throw new IllegalArgumentException(String.format("Serving %s requires a shared secret file, set in %s",
+                        address, SolaceManifestLoader.SolaceEnv.SOLACE_SERVICES_SIDECAR_SECRET));
+            }
+        }
+
+        ServerSocketChannel serverChannel = SolaceServicesSidecarProtocol.bind(address);
+        if (secret != null) {
+            // Resolves an ephemeral port
+            InetSocketAddress localAddress = (InetSocketAddress) serverChannel.getLocalAddress();
+            address = String.format("%s%s:%d", SolaceServicesSidecarProtocol.TCP_SCHEME,
+                    localAddress.getHostString(), localAddress.getPort());
+        }
+
+        final SolaceServicesSidecar sidecar = new SolaceServicesSidecar(credentialsLoader, serverChannel, address,
+                secret);
+        sidecar.poll();
+        sidecar.poller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sidecar.poll();
+            }
+        }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        sidecar.acceptor.start();
+        logger.info("Serving Solace services at {}", address);
+        return sidecar;
+    }
+
+    /**
+     * @return The address the sidecar is bound to, with its actual port if it was bound to an ephemeral TCP port.
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Stops serving and removes the socket file of a Unix domain socket.
+     */
+    @Override
+    public void close() throws IOException {
+        poller.shutdownNow();
+        handlers.shutdownNow();
+        serverChannel.close();
+        // A channel closed while accepting may only be released once the acceptor returns, and queue connections until
+        // then which are never served
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!SolaceServicesSidecarProtocol.isTcp(address)) Files.deleteIfExists(Paths.get(address));
+    }
+
+    /**
+     * Runs a sidecar until the JVM is terminated.
+     * @param args The address to bind to, optionally followed by the poll interval in milliseconds.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println(String.format("Usage: %s <address> [poll interval in ms]",
+                    SolaceServicesSidecar.class.getName()));
+            System.exit(2);
+        }
+
+        long pollIntervalMillis = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_POLL_INTERVAL_MILLIS;
+        final SolaceServicesSidecar sidecar = start(args[0], pollIntervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sidecar.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close the Solace services sidecar", e);
+                }
+            }
+        }));
+        sidecar.acceptor.join();
+    }
+
+    /**
+     * Reloads the manifest, and encodes its services anew if they changed.
+     */
+    void poll() {
+        Response current = response;
+        try {
+            Map<String, SolaceServiceCredentials> svcsCreds = credentialsLoader.getServicesCredentials();
+            if (current != null && current.svcsCreds == svcsCreds) return;
+
+            // Starts at random so that clients of a restarted sidecar don't mistake its services for theirs
+            long generation = current != null && current.svcsCreds != null ?
+                    current.generation + 1 : new SecureRandom().nextLong() >>> 1;
+            byte[] payload = SolaceServicesSidecarProtocol.encode(svcsCreds.values());
+            response = new Response(svcsCreds, generation, SolaceServicesSidecarProtocol.createResponse(
+                    SolaceServicesSidecarProtocol.STATUS_OK, generation, payload));
+            logger.debug("Serving {} Solace services at generation {}", svcsCreds.size(), generation);
+        } catch (RuntimeException e) {
+            // Keeps serving the last good services, if any, until the manifest is fixed
+            logger.warn("Failed to load the Solace services manifest: {}", e.getMessage());
+            if (current == null || current.svcsCreds == null) {
+                response = new Response(null, SolaceServicesSidecarProtocol.NO_GENERATION,
+                        SolaceServicesSidecarProtocol.createResponse(SolaceServicesSidecarProtocol.STATUS_FAILED,
+                                SolaceServicesSidecarProtocol.NO_GENERATION,
+                                String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    private void accept() {
+        while (serverChannel.isOpen()) {
+            final SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                logger.warn("Failed to accept a Solace services sidecar connection", e);
+                continue;
+            }
+
+            try {
+                handlers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(channel);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.debug("Dropped a Solace services sidecar connection, {} are already pending",
+                        MAX_PENDING_CONNECTIONS);
+                try {
+                    channel.close();
+                } catch (IOException closeException) {
+                    // Never served anyway
+                }
+            }
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        // A client which stalls is dropped rather than holding a handler
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(EXCHANGE_TIMEOUT_MILLIS);
+        try (SocketChannel clientChannel = channel;
+             Selector selector = Selector.open()) {
+            clientChannel.configureBlocking(false);
+            SelectionKey key = clientChannel.register(selector, SelectionKey.OP_READ);
+            ByteBuffer challenge = null;
+            if (secret != null) {
+                challenge = SolaceServicesSidecarProtocol.createChallenge();
+                SolaceServicesSidecarProtocol.writeFully(key, challenge.duplicate(), deadlineNanos);
+            }
+
+            ByteBuffer request = SolaceServicesSidecarProtocol.readFully(key, ByteBuffer.allocate(challenge != null ?
+                    SolaceServicesSidecarProtocol.SIGNED_REQUEST_LENGTH : SolaceServicesSidecarProtocol.REQUEST_LENGTH),
+                    deadlineNanos);
+            SolaceServicesSidecarProtocol.checkHeader(request);
+            long clientGeneration = request.getLong();
+            Response current = response;
+            ByteBuffer reply;
+            if (!SolaceServicesSidecarProtocol.isAuthorized(request, challenge, secret)) {
+                logger.warn("Rejected a Solace services sidecar client which does not hold the shared secret");
+                reply = SolaceServicesSidecarProtocol.createResponse(SolaceServicesSidecarProtocol.STATUS_UNAUTHORIZED,
+                        SolaceServicesSidecarProtocol.NO_GENERATION, new byte[0]);
+            } else if (current.svcsCreds != null && current.generation == clientGeneration) {
+                reply = SolaceServicesSidecarProtocol.createResponse(SolaceServicesSidecarProtocol.STATUS_NOT_MODIFIED,
+                        current.generation, new byte[0]);
+            } else {
+                reply = current.buffer.duplicate();
+            }
+            if (challenge != null) {
+                // Proves the response genuine, since anyone could be listening on the address while the sidecar is down
+                byte[] mac = SolaceServicesSidecarProtocol.signResponse(reply, challenge, request, secret);
+                SolaceServicesSidecarProtocol.writeFully(key, reply, deadlineNanos);
+                SolaceServicesSidecarProtocol.writeFully(key, ByteBuffer.wrap(mac), deadlineNanos);
+            } else {
+                SolaceServicesSidecarProtocol.writeFully(key, reply, deadlineNanos);
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to serve a Solace services sidecar connection", e);
+        }
+    }
+
+    private static ThreadFactory createThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static class Response {
+        // Null if no manifest could be loaded yet
+        final Map<String, SolaceServiceCredentials> svcsCreds;
+        final long generation;
+        final ByteBuffer buffer;
+
+        Response(Map<String, SolaceServiceCredentials> svcsCreds, long generation, ByteBuffer buffer) {
+            this.svcsCreds = svcsCreds;
+            this.generation = generation;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Fetches pre-parsed services from a {@link SolaceServicesSidecar}.</p>
+ *
+ * <p>Each fetch is a single round-trip to the sidecar. The fetched services are kept along with their generation, so
+ *      that they are only sent again once they have changed. Until then, every lookup returns the same map instance.</p>
+ *
+ * <p>Lookups are served the last fetched services without any round-trip, until they are older than the revalidation
+ *      interval. The next lookup then revalidates them with the sidecar, while concurrent lookups keep being served the
+ *      last fetched services rather than waiting for it.</p>
+ *
+ * <p>A fetch fails if the sidecar does not reply within {@value #TIMEOUT_MILLIS} ms, so that a stuck sidecar cannot
+ *      stall the loader.</p>
+ */
+class SolaceServicesSidecarClient {
+    static final long TIMEOUT_MILLIS = 2000;
+    // Services are not polled more often than this by the sidecar itself
+    static final long DEFAULT_REVALIDATE_INTERVAL_MILLIS = SolaceServicesSidecar.DEFAULT_POLL_INTERVAL_MILLIS;
+
+    private final String address;
+    private final long revalidateIntervalNanos;
+    private final boolean offHeapSecrets = Boolean.getBoolean(SolaceCredentialsLoader.OFF_HEAP_SECRETS_PROPERTY);
+    private final ReentrantLock fetchLock = new ReentrantLock();
+
+    // Null until the first fetch
+    private volatile Fetched fetched;
+
+    /**
+     * @param address The sidecar's address, as described in {@link SolaceServicesSidecarProtocol}.
+     */
+    SolaceServicesSidecarClient(String address) {
+        this(address, DEFAULT_REVALIDATE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param address The sidecar's address, as described in {@link SolaceServicesSidecarProtocol}.
+     * @param revalidateIntervalMillis The age from which fetched services are revalidated with the sidecar.
+     */
+    SolaceServicesSidecarClient(String address, long revalidateIntervalMillis) {
+        this.address = address;
+        this.revalidateIntervalNanos = TimeUnit.MILLISECONDS.toNanos(revalidateIntervalMillis);
+    }
+
+    String getAddress() {
+        return address;
+    }
+
+    /**
+     * @return A map of {@link SolaceServiceCredentials#getId() service IDs} to {@link SolaceServiceCredentials}.
+     *      Unchanged services return the same map instance, which must not be modified.
+     * @throws IOException If the services had to be fetched and the sidecar could not be reached, did not reply in
+     *      time, failed to load its manifest, rejected the shared secret of a TCP address or no such secret is set,
+     *      sent a response which is not signed with that secret, or sent a malformed response.
+     */
+    Map<String, SolaceServiceCredentials> getServicesCredentials() throws IOException {
+        Fetched current = fetched;
+        if (current != null && !current.isStale()) return current.svcsCreds;
+
+        if (current == null) {
+            fetchLock.lock();
+        } else if (!fetchLock.tryLock()) {
+            return current.svcsCreds; // Being revalidated by another lookup
+        }
+        try {
+            current = fetched;
+            if (current != null && !current.isStale()) return current.svcsCreds;
+            fetched = current = fetch(current);
+            return current.svcsCreds;
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the fetched services, so that they are fetched anew, and wipes their off-heap secrets.
+     */
+    void clear() {
+        fetchLock.lock();
+        try {
+            Fetched current = fetched;
+            fetched = null;
+            if (offHeapSecrets && current != null) {
+                for (SolaceServiceCredentials svcCreds : current.svcsCreds.values())
+                    ((SolaceServiceCredentialsImpl) svcCreds).wipeSecrets();
+            }
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private Fetched fetch(Fetched current) throws IOException {
+        byte[] secret = null;
+        if (SolaceServicesSidecarProtocol.isTcp(address)) {
+            secret = SolaceServicesSidecarProtocol.readSharedSecret();
+            if (secret == null) throw new IOException(String.format("No shared secret is set for the sidecar at %s",
+                    address));
+        }
+
+        ByteBuffer payload;
+        byte status;
+        long newGeneration;
+        long generation = current != null ? current.generation : SolaceServicesSidecarProtocol.NO_GENERATION;
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        try (SocketChannel channel = SolaceServicesSidecarProtocol.connect(address);
+             Selector selector = Selector.open()) {
+            channel.configureBlocking(false);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            ByteBuffer challenge = null;
+            if (secret != null) {
+                challenge = SolaceServicesSidecarProtocol.readFully(key,
+                        ByteBuffer.allocate(SolaceServicesSidecarProtocol.CHALLENGE_LENGTH), deadlineNanos);
+                SolaceServicesSidecarProtocol.checkHeader(challenge);
+            }
+            ByteBuffer request = SolaceServicesSidecarProtocol.createRequest(generation, challenge, secret);
+            SolaceServicesSidecarProtocol.writeFully(key, request.duplicate(), deadlineNanos);
+
+            ByteBuffer header = SolaceServicesSidecarProtocol.readFully(key,
+                    ByteBuffer.allocate(SolaceServicesSidecarProtocol.RESPONSE_HEADER_LENGTH), deadlineNanos);
+            SolaceServicesSidecarProtocol.checkHeader(header);
+            status = header.get();
+            newGeneration = header.getLong();
+            int payloadLength = header.getInt();
+            if (payloadLength < 0 || payloadLength > SolaceServicesSidecarProtocol.MAX_PAYLOAD_LENGTH)
+                throw new IOException(String.format("Invalid sidecar payload length %d", payloadLength));
+            payload = SolaceServicesSidecarProtocol.readFully(key, ByteBuffer.allocate(payloadLength), deadlineNanos);
+
+            // Anyone could be listening on the address while the sidecar is down. A rejection is not trusted either,
+            // but only fails the fetch, as a missing sidecar would.
+            if (challenge != null && status != SolaceServicesSidecarProtocol.STATUS_UNAUTHORIZED) {
+                ByteBuffer mac = SolaceServicesSidecarProtocol.readFully(key,
+                        ByteBuffer.allocate(SolaceServicesSidecarProtocol.MAC_LENGTH), deadlineNanos);
+                if (!SolaceServicesSidecarProtocol.isSignedResponse(header, payload, mac, challenge, request, secret)) {
+                    throw new IOException(String.format(
+                            "The response of the Solace services sidecar at %s is not signed with the shared secret",
+                            address));
+                }
+            }
+        }
+
+        switch (status) {
+            case SolaceServicesSidecarProtocol.STATUS_NOT_MODIFIED:
+                if (current == null) throw new IOException("Unexpected sidecar response status for a first fetch");
+                return new Fetched(current.svcsCreds, current.generation, System.nanoTime());
+            case SolaceServicesSidecarProtocol.STATUS_OK:
+                // The replaced services are left as they are, since lookups may still be holding them
+                List<SolaceServiceCredentials> svcsCreds = SolaceServicesSidecarProtocol.decode(payload, offHeapSecrets);
+                return new Fetched(SolaceServicesIndex.mapOf(svcsCreds), newGeneration, System.nanoTime());
+            case SolaceServicesSidecarProtocol.STATUS_UNAUTHORIZED:
+                throw new IOException(String.format("The Solace services sidecar at %s rejected the shared secret",
+                        address));
+            case SolaceServicesSidecarProtocol.STATUS_FAILED:
+                throw new IOException(String.format("The Solace services sidecar at %s failed to load its manifest: %s",
+                        address, new String(payload.array(), StandardCharsets.UTF_8)));
+            default:
+                throw new IOException(String.format("Unknown sidecar response status %d", status));
+        }
+    }
+
+    private class Fetched {
+        final Map<String, SolaceServiceCredentials> svcsCreds;
+        final long generation;
+        final long fetchedNanos;
+
+        Fetched(Map<String, SolaceServiceCredentials> svcsCreds, long generation, long fetchedNanos) {
+            this.svcsCreds = svcsCreds;
+            this.generation = generation;
+            this.fetchedNanos = fetchedNanos;
+        }
+
+        boolean isStale() {
+            return System.nanoTime() - fetchedNanos >= revalidateIntervalNanos;
+        }
+    }
+}
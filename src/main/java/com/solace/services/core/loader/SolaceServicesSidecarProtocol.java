@@ -0,0 +1,666 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
+import com.solace.services.core.model.SolaceSecret;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The wire protocol between a {@link SolaceServicesSidecar} and its clients.</p>
+ *
+ * <p>A sidecar address is either the path of a Unix domain socket, which requires Java 16 or later, or a
+ *      {@value #TCP_SCHEME}{@code host:port} address on the loopback interface. Unix domain sockets are opened
+ *      reflectively, so that this library still runs on older JVMs.</p>
+ *
+ * <p>TCP addresses must be on the loopback interface, since services are sent in the clear. Since any process on the
+ *      host can connect to a TCP address, or listen on it while the sidecar is down, TCP is only served and used along
+ *      with a shared secret, read from the file whose path is set in the
+ *      {@link SolaceManifestLoader.SolaceEnv#SOLACE_SERVICES_SIDECAR_SECRET SOLACE_SERVICES_SIDECAR_SECRET} JVM property
+ *      or OS environment. The secret itself is never sent: the client proves it knows it by answering a random
+ *      challenge of the sidecar with their HMAC-SHA256 under the secret, and the sidecar proves it in turn by
+ *      appending to its response the HMAC-SHA256 of both sides' random bytes and of the response. Clients only connect
+ *      to the socket file of a Unix domain socket if it is owned by their user and inaccessible to anyone else, as
+ *      the sidecar creates it.</p>
+ *
+ * <p>Each connection carries a single exchange. The client sends the generation of the services it already holds,
+ *      and the sidecar replies with either its services, or only their generation if the client's are current.
+ *      Services are sent in a compact binary form rather than as JSON, so that clients do not parse anything:</p>
+ * <ul>
+ *     <li>Challenge, over TCP only: the {@link #MAGIC magic number}, the {@link #VERSION protocol version}, and
+ *          {@value #NONCE_LENGTH} random bytes sent by the sidecar as soon as it accepts the connection.</li>
+ *     <li>Request: the magic number, the protocol version, and the client's generation, {@value #NO_GENERATION} if
+ *          none. Over TCP, it is followed by {@value #NONCE_LENGTH} random bytes of the client, then by the HMAC-SHA256
+ *          under the shared secret of a {@link #REQUEST_MAC_LABEL label}, of the challenge's random bytes and of the
+ *          request.</li>
+ *     <li>Response: the magic number, the protocol version, a status, the sidecar's generation, and the length of the
+ *          payload followed by the payload. The payload holds the services if the status is {@link #STATUS_OK}, a
+ *          UTF-8 error message if it is {@link #STATUS_FAILED}, and is empty if it is {@link #STATUS_NOT_MODIFIED} or
+ *          {@link #STATUS_UNAUTHORIZED}. Over TCP, it is followed by the HMAC-SHA256 under the shared secret of a
+ *          {@link #RESPONSE_MAC_LABEL label}, of the challenge's and the request's random bytes, and of the
+ *          response.</li>
+ *     <li>Services: their count, then the fields of each service as a field tag followed by its value, ending with a
+ *          0 tag. Null fields are omitted. Strings are written as their UTF-8 length, -1 if null, followed by their
+ *          UTF-8 bytes, and lists of strings as their size followed by their strings.</li>
+ * </ul>
+ *
+ * <p>All integers are big-endian.</p>
+ */
+final class SolaceServicesSidecarProtocol {
+    static final String TCP_SCHEME = "tcp://";
+    static final int MAGIC = 0x534F4C53; // "SOLS"
+    static final byte VERSION = 2;
+    static final long NO_GENERATION = -1;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_NOT_MODIFIED = 1;
+    static final byte STATUS_FAILED = 2;
+    static final byte STATUS_UNAUTHORIZED = 3;
+
+    static final int NONCE_LENGTH = 32;
+    static final int MAC_LENGTH = 32;
+    static final int CHALLENGE_LENGTH = 4 + 1 + NONCE_LENGTH;
+    static final int REQUEST_LENGTH = 4 + 1 + 8;
+    static final int SIGNED_REQUEST_LENGTH = REQUEST_LENGTH + NONCE_LENGTH + MAC_LENGTH;
+    static final int RESPONSE_HEADER_LENGTH = 4 + 1 + 1 + 8 + 4;
+    // Guards clients against allocating whatever length a corrupt response claims
+    static final int MAX_PAYLOAD_LENGTH = 256 * 1024 * 1024;
+    // Tell the HMACs of requests and responses apart, so that neither can be passed off as the other
+    static final byte REQUEST_MAC_LABEL = 'Q';
+    static final byte RESPONSE_MAC_LABEL = 'R';
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ProtocolFamily UNIX_PROTOCOL_FAMILY = getUnixProtocolFamily();
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final Set<PosixFilePermission> OWNER_PERMISSIONS = EnumSet.of(PosixFilePermission.OWNER_READ,
+            PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+    // Looked up once, as OS environments cannot change
+    private static final String ENV_SECRET_FILE = System.getenv(SolaceEnv.SOLACE_SERVICES_SIDECAR_SECRET.name());
+
+    private SolaceServicesSidecarProtocol() {}
+
+    /**
+     * The fields of {@link SolaceServiceCredentialsImpl}, tagged on the wire by their ordinal plus one.
+     * New fields must only ever be appended.
+     */
+    private enum Field {
+        ID, CLIENT_USERNAME, CLIENT_PASSWORD, MSG_VPN_NAME, SMF_HOSTS, SMF_TLS_HOSTS, SMF_ZIP_HOSTS, JMS_JNDI_URIS,
+        JMS_JNDI_TLS_URIS, REST_URIS, REST_TLS_URIS, AMQP_URIS, AMQP_TLS_URIS, MQTT_URIS, MQTT_TLS_URIS, MQTT_WS_URIS,
+        MQTT_WSS_URIS, MANAGEMENT_HOSTNAMES, MANAGEMENT_PASSWORD, MANAGEMENT_USERNAME, ACTIVE_MANAGEMENT_HOSTNAME,
+        DMR_CLUSTER_NAME, DMR_CLUSTER_PASSWORD;
+
+        private static final Field[] values = values();
+
+        static Field fromTag(int tag) throws IOException {
+            if (tag < 1 || tag > values.length) throw new IOException(String.format("Unknown field tag %d", tag));
+            return values[tag - 1];
+        }
+
+        int getTag() {
+            return ordinal() + 1;
+        }
+    }
+
+    /**
+     * @return True if this JVM supports Unix domain socket channels.
+     */
+    static boolean isUnixDomainSocketSupported() {
+        return UNIX_PROTOCOL_FAMILY != null;
+    }
+
+    /**
+     * @param address A sidecar address.
+     * @return True if the address is a TCP address, which requires a shared secret.
+     */
+    static boolean isTcp(String address) {
+        return address.startsWith(TCP_SCHEME);
+    }
+
+    /**
+     * @return The shared secret of TCP addresses, read anew on every call so that it can be rotated, null if none is
+     *      set.
+     * @throws IOException If the secret's file could not be read or is empty.
+     */
+    static byte[] readSharedSecret() throws IOException {
+        String secretFile = System.getProperty(SolaceEnv.SOLACE_SERVICES_SIDECAR_SECRET.name());
+        if (secretFile == null || secretFile.isEmpty()) secretFile = ENV_SECRET_FILE;
+        if (secretFile == null || secretFile.isEmpty()) return null;
+
+        byte[] secret = Files.readAllBytes(Paths.get(secretFile));
+        if (secret.length == 0) throw new IOException(String.format("The sidecar secret file %s is empty", secretFile));
+        return secret;
+    }
+
+    /**
+     * @param address A sidecar address.
+     * @return A server channel bound to the given address. The socket file of a Unix domain socket is replaced if it
+     *      already exists, and is only accessible to this JVM's user where the file system supports POSIX permissions.
+     * @throws IOException If the channel could not be bound, or if the address is that of a Unix domain socket and this
+     *      JVM does not support them.
+     */
+    static ServerSocketChannel bind(String address) throws IOException {
+        if (isTcp(address)) return ServerSocketChannel.open().bind(toTcpAddress(address));
+
+        Path socketFile = Paths.get(address).toAbsolutePath();
+        // Left behind by a sidecar which was not closed
+        Files.deleteIfExists(socketFile);
+
+        // The socket file is created with the process' umask, and could be connected to before its permissions are
+        // restricted. It is hence bound within a directory only accessible to its owner, then moved into place.
+        Path bindDir;
+        try {
+            bindDir = Files.createTempDirectory(socketFile.getParent(), ".solace-sidecar-",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            bindDir = null;
+        }
+
+        Path bindFile = bindDir != null ? bindDir.resolve("sidecar.sock") : socketFile;
+        ServerSocketChannel channel = openUnixChannel(ServerSocketChannel.class);
+        try {
+            channel.bind(toUnixAddress(bindFile.toString()));
+            if (bindDir != null) {
+                Files.setPosixFilePermissions(bindFile, PosixFilePermissions.fromString("rw-------"));
+                Files.move(bindFile, socketFile, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        } finally {
+            if (bindDir != null) {
+                Files.deleteIfExists(bindFile);
+                Files.deleteIfExists(bindDir);
+            }
+        }
+    }
+
+    /**
+     * @param address A sidecar address.
+     * @return A channel connected to the sidecar at the given address.
+     * @throws IOException If the channel could not be connected, if the address is that of a Unix domain socket and
+     *      this JVM does not support them, or if its socket file is not owned by this JVM's user or is accessible to
+     *      anyone else.
+     */
+    static SocketChannel connect(String address) throws IOException {
+        if (isTcp(address)) return SocketChannel.open(toTcpAddress(address));
+
+        SocketAddress unixAddress = toUnixAddress(address);
+        checkSocketFile(Paths.get(address));
+        SocketChannel channel = openUnixChannel(SocketChannel.class);
+        try {
+            channel.connect(unixAddress);
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return A challenge holding fresh random bytes.
+     */
+    static ByteBuffer createChallenge() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        ByteBuffer challenge = ByteBuffer.allocate(CHALLENGE_LENGTH);
+        challenge.putInt(MAGIC).put(VERSION).put(nonce).flip();
+        return challenge;
+    }
+
+    /**
+     * @param generation The generation of the services held by the client.
+     * @param challenge The challenge sent by a TCP sidecar, null over a Unix domain socket.
+     * @param secret The shared secret, null over a Unix domain socket.
+     * @return The request, followed by the client's random bytes and its HMAC over TCP.
+     */
+    static ByteBuffer createRequest(long generation, ByteBuffer challenge, byte[] secret) {
+        ByteBuffer request = ByteBuffer.allocate(challenge != null ? SIGNED_REQUEST_LENGTH : REQUEST_LENGTH);
+        request.putInt(MAGIC).put(VERSION).putLong(generation);
+        if (challenge != null) {
+            byte[] nonce = new byte[NONCE_LENGTH];
+            RANDOM.nextBytes(nonce);
+            request.put(nonce);
+            request.put(sign(secret, REQUEST_MAC_LABEL, getNonce(challenge), (ByteBuffer) request.duplicate().flip()));
+        }
+        request.flip();
+        return request;
+    }
+
+    /**
+     * @param request A request read in full, along with the client's random bytes and its HMAC if it was sent over TCP.
+     * @param challenge The challenge sent to the client, null over a Unix domain socket.
+     * @param secret The shared secret, null over a Unix domain socket.
+     * @return True if the request was not sent over TCP, or if its HMAC proves the client knows the shared secret.
+     */
+    static boolean isAuthorized(ByteBuffer request, ByteBuffer challenge, byte[] secret) {
+        if (challenge == null) return true;
+        ByteBuffer body = (ByteBuffer) request.duplicate().position(0).limit(REQUEST_LENGTH + NONCE_LENGTH);
+        return isSigned(sign(secret, REQUEST_MAC_LABEL, getNonce(challenge), body),
+                (ByteBuffer) request.duplicate().position(REQUEST_LENGTH + NONCE_LENGTH));
+    }
+
+    /**
+     * @param response A response, header and payload.
+     * @param challenge The challenge sent to the client.
+     * @param request The client's request, along with its random bytes.
+     * @param secret The shared secret.
+     * @return The HMAC to append to the response over TCP.
+     */
+    static byte[] signResponse(ByteBuffer response, ByteBuffer challenge, ByteBuffer request, byte[] secret) {
+        ByteBuffer requestNonce = (ByteBuffer) request.duplicate().position(REQUEST_LENGTH)
+                .limit(REQUEST_LENGTH + NONCE_LENGTH);
+        return sign(secret, RESPONSE_MAC_LABEL, getNonce(challenge), requestNonce, response.duplicate());
+    }
+
+    /**
+     * @param header The response's header, read in full.
+     * @param payload The response's payload, read in full.
+     * @param mac The HMAC which followed the response.
+     * @param challenge The challenge sent by the sidecar.
+     * @param request The request sent to the sidecar, along with its random bytes.
+     * @param secret The shared secret.
+     * @return True if the HMAC proves that the response was sent by a sidecar holding the shared secret, in answer to
+     *      the given request.
+     */
+    static boolean isSignedResponse(ByteBuffer header, ByteBuffer payload, ByteBuffer mac, ByteBuffer challenge,
+                                    ByteBuffer request, byte[] secret) {
+        ByteBuffer requestNonce = (ByteBuffer) request.duplicate().position(REQUEST_LENGTH)
+                .limit(REQUEST_LENGTH + NONCE_LENGTH);
+        return isSigned(sign(secret, RESPONSE_MAC_LABEL, getNonce(challenge), requestNonce,
+                (ByteBuffer) header.duplicate().position(0), (ByteBuffer) payload.duplicate().position(0)), mac);
+    }
+
+    private static ByteBuffer getNonce(ByteBuffer challenge) {
+        return (ByteBuffer) challenge.duplicate().position(CHALLENGE_LENGTH - NONCE_LENGTH).limit(CHALLENGE_LENGTH);
+    }
+
+    private static boolean isSigned(byte[] expectedMac, ByteBuffer mac) {
+        byte[] actualMac = new byte[MAC_LENGTH];
+        mac.duplicate().get(actualMac);
+        // Constant-time, so that the HMAC cannot be guessed byte by byte
+        return MessageDigest.isEqual(expectedMac, actualMac);
+    }
+
+    private static byte[] sign(byte[] secret, byte label, ByteBuffer... parts) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+            mac.update(label);
+            for (ByteBuffer part : parts) mac.update(part);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e); // HmacSHA256 is supported by every JVM
+        }
+    }
+
+    static ByteBuffer createResponse(byte status, long generation, byte[] payload) {
+        ByteBuffer response = ByteBuffer.allocate(RESPONSE_HEADER_LENGTH + payload.length);
+        response.putInt(MAGIC).put(VERSION).put(status).putLong(generation).putInt(payload.length).put(payload).flip();
+        return response;
+    }
+
+    static void checkHeader(ByteBuffer buffer) throws IOException {
+        int magic = buffer.getInt();
+        byte version = buffer.get();
+        if (magic != MAGIC) throw new IOException("Not a Solace services sidecar message");
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported Solace services sidecar protocol version %d", version));
+    }
+
+    /**
+     * Fills a buffer from a non-blocking channel.
+     * @param key The key of the channel, registered with a selector of its own.
+     * @param deadlineNanos The {@link System#nanoTime()} by which the buffer must be full.
+     * @throws SocketTimeoutException If the deadline passed.
+     */
+    static ByteBuffer readFully(SelectionKey key, ByteBuffer buffer, long deadlineNanos) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer);
+            if (read < 0) throw new EOFException("The Solace services sidecar connection was closed");
+            if (read == 0) await(key, SelectionKey.OP_READ, deadlineNanos);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes a buffer to a non-blocking channel.
+     * @param key The key of the channel, registered with a selector of its own.
+     * @param deadlineNanos The {@link System#nanoTime()} by which the buffer must be written.
+     * @throws SocketTimeoutException If the deadline passed.
+     */
+    static void writeFully(SelectionKey key, ByteBuffer buffer, long deadlineNanos) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) await(key, SelectionKey.OP_WRITE, deadlineNanos);
+        }
+    }
+
+    private static void await(SelectionKey key, int ops, long deadlineNanos) throws IOException {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        if (remainingMillis <= 0) throw new SocketTimeoutException("Timed out waiting for the Solace services sidecar");
+        key.interestOps(ops);
+        key.selector().select(remainingMillis);
+        key.selector().selectedKeys().clear();
+    }
+
+    /**
+     * @param svcsCreds The credentials of several services, with their IDs resolved.
+     * @return The services payload.
+     */
+    static byte[] encode(Collection<? extends SolaceServiceCredentials> svcsCreds) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * svcsCreds.size() + 4);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(svcsCreds.size());
+            for (SolaceServiceCredentials svcCreds : svcsCreds) {
+                if (!(svcCreds instanceof SolaceServiceCredentialsImpl))
+                    throw new IllegalArgumentException(String.format("Cannot encode %s", svcCreds.getClass()));
+
+                SolaceServiceCredentialsImpl svcCredsImpl = (SolaceServiceCredentialsImpl) svcCreds;
+                for (Field field : Field.values) {
+                    Object value = getField(svcCredsImpl, field);
+                    if (value == null) continue;
+                    out.writeByte(field.getTag());
+                    if (value instanceof List) writeStrings(out, (List<?>) value);
+                    else writeString(out, (String) value);
+                }
+                out.writeByte(0);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Never thrown by in-memory streams
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param payload A heap buffer holding a services payload.
+     * @param offHeapSecrets True to decode passwords straight into off-heap {@link SolaceSecret secrets}.
+     * @return The decoded services, in the order they were encoded.
+     * @throws IOException If the payload is malformed.
+     */
+    static List<SolaceServiceCredentials> decode(ByteBuffer payload, boolean offHeapSecrets) throws IOException {
+        try {
+            int serviceCount = payload.getInt();
+            if (serviceCount < 0 || serviceCount > payload.remaining())
+                throw new IOException(String.format("Invalid service count %d", serviceCount));
+
+            List<SolaceServiceCredentials> svcsCreds = new ArrayList<>(serviceCount);
+            for (int i = 0; i < serviceCount; i++) {
+                SolaceServiceCredentialsImpl svcCreds = new SolaceServiceCredentialsImpl();
+                for (int tag = payload.get(); tag != 0; tag = payload.get()) {
+                    Field field = Field.fromTag(tag);
+                    switch (field) {
+                        case CLIENT_PASSWORD:
+                            if (offHeapSecrets) svcCreds.setClientPasswordSecret(readSecret(payload));
+                            else svcCreds.setClientPassword(readString(payload));
+                            break;
+                        case MANAGEMENT_PASSWORD:
+                            if (offHeapSecrets) svcCreds.setManagementPasswordSecret(readSecret(payload));
+                            else svcCreds.setManagementPassword(readString(payload));
+                            break;
+                        case DMR_CLUSTER_PASSWORD:
+                            if (offHeapSecrets) svcCreds.setDmrClusterPasswordSecret(readSecret(payload));
+                            else svcCreds.setDmrClusterPassword(readString(payload));
+                            break;
+                        default:
+                            setField(svcCreds, field, payload);
+                    }
+                }
+                svcsCreds.add(svcCreds);
+            }
+            return svcsCreds;
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated Solace services sidecar payload");
+        }
+    }
+
+    private static Object getField(SolaceServiceCredentialsImpl svcCreds, Field field) {
+        switch (field) {
+            case ID: return svcCreds.getId();
+            case CLIENT_USERNAME: return svcCreds.getClientUsername();
+            case CLIENT_PASSWORD: return svcCreds.getClientPassword();
+            case MSG_VPN_NAME: return svcCreds.getMsgVpnName();
+            case SMF_HOSTS: return svcCreds.getSmfHosts();
+            case SMF_TLS_HOSTS: return svcCreds.getSmfTlsHosts();
+            case SMF_ZIP_HOSTS: return svcCreds.getSmfZipHosts();
+            case JMS_JNDI_URIS: return svcCreds.getJmsJndiUris();
+            case JMS_JNDI_TLS_URIS: return svcCreds.getJmsJndiTlsUris();
+            case REST_URIS: return svcCreds.getRestUris();
+            case REST_TLS_URIS: return svcCreds.getRestTlsUris();
+            case AMQP_URIS: return svcCreds.getAmqpUris();
+            case AMQP_TLS_URIS: return svcCreds.getAmqpTlsUris();
+            case MQTT_URIS: return svcCreds.getMqttUris();
+            case MQTT_TLS_URIS: return svcCreds.getMqttTlsUris();
+            case MQTT_WS_URIS: return svcCreds.getMqttWsUris();
+            case MQTT_WSS_URIS: return svcCreds.getMqttWssUris();
+            case MANAGEMENT_HOSTNAMES: return svcCreds.getManagementHostnames();
+            case MANAGEMENT_PASSWORD: return svcCreds.getManagementPassword();
+            case MANAGEMENT_USERNAME: return svcCreds.getManagementUsername();
+            case ACTIVE_MANAGEMENT_HOSTNAME: return svcCreds.getActiveManagementHostname();
+            case DMR_CLUSTER_NAME: return svcCreds.getDmrClusterName();
+            case DMR_CLUSTER_PASSWORD: return svcCreds.getDmrClusterPassword();
+            default: throw new IllegalArgumentException(field.name());
+        }
+    }
+
+    private static void setField(SolaceServiceCredentialsImpl svcCreds, Field field, ByteBuffer payload)
+            throws IOException {
+        switch (field) {
+            case ID: svcCreds.setId(readString(payload)); break;
+            case CLIENT_USERNAME: svcCreds.setClientUsername(readString(payload)); break;
+            case CLIENT_PASSWORD: svcCreds.setClientPassword(readString(payload)); break;
+            case MSG_VPN_NAME: svcCreds.setMsgVpnName(readString(payload)); break;
+            case SMF_HOSTS: svcCreds.setSmfHosts(readStrings(payload)); break;
+            case SMF_TLS_HOSTS: svcCreds.setSmfTlsHosts(readStrings(payload)); break;
+            case SMF_ZIP_HOSTS: svcCreds.setSmfZipHosts(readStrings(payload)); break;
+            case JMS_JNDI_URIS: svcCreds.setJmsJndiUris(readStrings(payload)); break;
+            case JMS_JNDI_TLS_URIS: svcCreds.setJmsJndiTlsUris(readStrings(payload)); break;
+            case REST_URIS: svcCreds.setRestUris(readStrings(payload)); break;
+            case REST_TLS_URIS: svcCreds.setRestTlsUris(readStrings(payload)); break;
+            case AMQP_URIS: svcCreds.setAmqpUris(readStrings(payload)); break;
+            case AMQP_TLS_URIS: svcCreds.setAmqpTlsUris(readStrings(payload)); break;
+            case MQTT_URIS: svcCreds.setMqttUris(readStrings(payload)); break;
+            case MQTT_TLS_URIS: svcCreds.setMqttTlsUris(readStrings(payload)); break;
+            case MQTT_WS_URIS: svcCreds.setMqttWsUris(readStrings(payload)); break;
+            case MQTT_WSS_URIS: svcCreds.setMqttWssUris(readStrings(payload)); break;
+            case MANAGEMENT_HOSTNAMES: svcCreds.setManagementHostnames(readStrings(payload)); break;
+            case MANAGEMENT_PASSWORD: svcCreds.setManagementPassword(readString(payload)); break;
+            case MANAGEMENT_USERNAME: svcCreds.setManagementUsername(readString(payload)); break;
+            case ACTIVE_MANAGEMENT_HOSTNAME: svcCreds.setActiveManagementHostname(readString(payload)); break;
+            case DMR_CLUSTER_NAME: svcCreds.setDmrClusterName(readString(payload)); break;
+            case DMR_CLUSTER_PASSWORD: svcCreds.setDmrClusterPassword(readString(payload)); break;
+            default: throw new IllegalArgumentException(field.name());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<?> values) throws IOException {
+        out.writeInt(values.size());
+        for (Object value : values) writeString(out, (String) value);
+    }
+
+    private static String readString(ByteBuffer payload) throws IOException {
+        int length = readLength(payload);
+        if (length < 0) return null;
+        String value = new String(payload.array(), payload.arrayOffset() + payload.position(), length,
+                StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    private static List<String> readStrings(ByteBuffer payload) throws IOException {
+        int size = payload.getInt();
+        if (size < 0 || size > payload.remaining()) throw new IOException(String.format("Invalid list size %d", size));
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) values.add(readString(payload));
+        return values;
+    }
+
+    private static SolaceSecret readSecret(ByteBuffer payload) throws IOException {
+        int length = readLength(payload);
+        if (length < 0) return null;
+
+        ByteBuffer bytes = payload.slice();
+        bytes.limit(length);
+        payload.position(payload.position() + length);
+        CharBuffer chars;
+        try {
+            chars = StandardCharsets.UTF_8.newDecoder().decode(bytes);
+        } catch (CharacterCodingException e) {
+            throw new IOException("Invalid UTF-8 secret", e);
+        }
+        // Decoded straight into a secret without ever being held as a heap string
+        SolaceSecret secret = SolaceSecret.of(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+        Arrays.fill(chars.array(), '\0');
+        return secret;
+    }
+
+    private static int readLength(ByteBuffer payload) throws IOException {
+        int length = payload.getInt();
+        if (length < -1 || length > payload.remaining())
+            throw new IOException(String.format("Invalid string length %d", length));
+        return length;
+    }
+
+    /**
+     * @throws IOException If the address is invalid, or is not on the loopback interface.
+     */
+    private static InetSocketAddress toTcpAddress(String address) throws IOException {
+        String hostAndPort = address.substring(TCP_SCHEME.length());
+        int separator = hostAndPort.lastIndexOf(':');
+        if (separator < 0) throw new IOException(String.format("No port in sidecar address %s", address));
+        InetSocketAddress tcpAddress;
+        try {
+            tcpAddress = new InetSocketAddress(hostAndPort.substring(0, separator),
+                    Integer.parseInt(hostAndPort.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Invalid sidecar address %s", address), e);
+        }
+
+        // Services are sent in the clear, and must not leave the host
+        if (tcpAddress.isUnresolved() || !tcpAddress.getAddress().isLoopbackAddress())
+            throw new IOException(String.format("The sidecar address %s is not on the loopback interface", address));
+        return tcpAddress;
+    }
+
+    /**
+     * Checks that the socket file of a Unix domain socket was created by this JVM's user, as a sidecar does, rather
+     * than by another user who could then serve forged services. Not checked where the file system does not support
+     * POSIX permissions.
+     * @throws IOException If the socket file is not owned by this JVM's user, or is accessible to anyone else.
+     */
+    private static void checkSocketFile(Path socketFile) throws IOException {
+        PosixFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(socketFile, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException e) {
+            return;
+        }
+
+        UserPrincipal user = socketFile.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!attributes.owner().equals(user)) {
+            throw new IOException(String.format("The sidecar socket file %s is owned by %s rather than by %s",
+                    socketFile, attributes.owner().getName(), user.getName()));
+        }
+        if (!OWNER_PERMISSIONS.containsAll(attributes.permissions())) {
+            throw new IOException(String.format("The sidecar socket file %s is accessible to other users than %s",
+                    socketFile, user.getName()));
+        }
+    }
+
+    private static SocketAddress toUnixAddress(String path) throws IOException {
+        if (UNIX_PROTOCOL_FAMILY == null) throw unixUnsupported();
+        try {
+            return (SocketAddress) invoke(Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class),
+                    path);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static <T> T openUnixChannel(Class<T> channelClass) throws IOException {
+        if (UNIX_PROTOCOL_FAMILY == null) throw unixUnsupported();
+        try {
+            return channelClass.cast(invoke(channelClass.getMethod("open", ProtocolFamily.class), UNIX_PROTOCOL_FAMILY));
+        } catch (NoSuchMethodException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Object invoke(Method factory, Object arg) throws IOException {
+        try {
+            return factory.invoke(null, arg);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static IOException unixUnsupported() {
+        return new IOException(String.format(
+                "Unix domain sockets require Java 16 or later, use a %shost:port sidecar address instead", TCP_SCHEME));
+    }
+
+    private static ProtocolFamily getUnixProtocolFamily() {
+        try {
+            return StandardProtocolFamily.valueOf("UNIX");
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
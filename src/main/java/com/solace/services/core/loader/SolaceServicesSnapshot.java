@@ -0,0 +1,183 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The marshalled services of a manifest, along with a digest of each service's raw JSON.</p>
+ *
+ * <p>When a new snapshot is taken of a changed manifest, only the services whose raw JSON differs from those of the
+ *      previous snapshot are marshalled. The others reuse the previous snapshot's {@link SolaceServiceCredentials},
+ *      so the cost of a reload scales with the size of the change rather than the size of the manifest.</p>
+ */
+class SolaceServicesSnapshot {
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final Logger logger = LoggerFactory.getLogger(SolaceServicesSnapshot.class);
+
+    final String raw;
+    final Map<String, SolaceServiceCredentials> svcsCreds;
+    private final Map<ByteBuffer, SolaceServiceCredentials> digestedCreds;
+
+    private SolaceServicesSnapshot(String raw, Map<String, SolaceServiceCredentials> svcsCreds,
+                                   Map<ByteBuffer, SolaceServiceCredentials> digestedCreds) {
+        this.raw = raw;
+        this.svcsCreds = svcsCreds;
+        this.digestedCreds = digestedCreds;
+    }
+
+    /**
+     * Takes a snapshot of the given manifest.
+     * @param servicesParser The parser used to marshal the changed services.
+     * @param raw A JSON string representing a service manifest.
+     * @param previous The previous snapshot, null if none.
+     * @return The snapshot of the manifest.
+     * @throws IOException If the manifest does not have one of the expected formats.
+     */
+    static SolaceServicesSnapshot take(SolaceServicesParser servicesParser, String raw, SolaceServicesSnapshot previous)
+            throws IOException {
+        Map<ByteBuffer, SolaceServiceCredentials> previousCreds = previous != null ?
+                previous.digestedCreds : Collections.<ByteBuffer, SolaceServiceCredentials>emptyMap();
+        Binder binder = new Binder(servicesParser, raw, previousCreds);
+        List<SolaceServiceCredentials> svcsCredsList = new ArrayList<>();
+
+        try (JsonParser parser = servicesParser.createParser(raw)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) binder.bindTo(svcsCredsList, parser, false);
+            } else if (token == JsonToken.START_OBJECT) {
+                List<SolaceServiceCredentials> pubSubServices = null;
+                List<SolaceServiceCredentials> messagingServices = null;
+                boolean isVCAP = false;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.getCurrentName();
+                    parser.nextToken();
+                    if (fieldName.equals(SolaceServicesParser.SOLACE_PUBSUB_SVC_NAME)) {
+                        pubSubServices = binder.bindAll(parser);
+                        isVCAP = true;
+                    } else if (fieldName.equals(SolaceServicesParser.SOLACE_MESSAGING_SVC_NAME)) {
+                        messagingServices = binder.bindAll(parser);
+                        isVCAP = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+
+                if (pubSubServices != null) svcsCredsList.addAll(pubSubServices);
+                else if (messagingServices != null) svcsCredsList.addAll(messagingServices);
+                else if (!isVCAP) binder.bindSingleTo(svcsCredsList);
+            } else {
+                throw new JsonParseException(parser, String.format("Unexpected manifest root token %s", token));
+            }
+        }
+
+        logger.debug("Marshalled {} of {} services", binder.boundCount, svcsCredsList.size());
+        return new SolaceServicesSnapshot(raw, SolaceServicesIndex.mapOf(svcsCredsList), binder.digestedCreds);
+    }
+
+    private static class Binder {
+        private final SolaceServicesParser servicesParser;
+        private final String raw;
+        private final Map<ByteBuffer, SolaceServiceCredentials> previousCreds;
+        private final Map<ByteBuffer, SolaceServiceCredentials> digestedCreds = new HashMap<>();
+        private final MessageDigest digest;
+        private final byte[] digestBuffer = new byte[2048];
+        private int boundCount = 0;
+
+        Binder(SolaceServicesParser servicesParser, String raw, Map<ByteBuffer, SolaceServiceCredentials> previousCreds) {
+            this.servicesParser = servicesParser;
+            this.raw = raw;
+            this.previousCreds = previousCreds;
+            try {
+                digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // Every Java platform is required to support SHA-256
+            }
+        }
+
+        List<SolaceServiceCredentials> bindAll(JsonParser parser) throws IOException {
+            if (parser.getCurrentToken() == JsonToken.VALUE_NULL) return null;
+            if (parser.getCurrentToken() != JsonToken.START_ARRAY)
+                throw new JsonParseException(parser, "Expected an array of services");
+
+            List<SolaceServiceCredentials> services = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) bindTo(services, parser, true);
+            return services;
+        }
+
+        /**
+         * Binds the service at the parser's position, and adds it to the given list unless dropped by the parser's
+         * filter. Dropped services are bound anew whenever their manifest changes.
+         */
+        void bindTo(List<SolaceServiceCredentials> services, JsonParser parser, boolean vcapService) throws IOException {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+                throw new JsonParseException(parser, "Expected a service object");
+
+            int start = (int) parser.getTokenLocation().getCharOffset();
+            SolaceServiceCredentials creds;
+            ByteBuffer serviceDigest;
+
+            if (previousCreds.isEmpty()) {
+                // Nothing to reuse, bind in place rather than skipping ahead then binding
+                creds = servicesParser.bindService(parser, vcapService);
+                serviceDigest = digest(start, (int) parser.getCurrentLocation().getCharOffset());
+                boundCount++;
+            } else {
+                parser.skipChildren();
+                int end = (int) parser.getCurrentLocation().getCharOffset();
+                serviceDigest = digest(start, end);
+                creds = previousCreds.get(serviceDigest);
+                if (creds == null) {
+                    try (JsonParser serviceParser = servicesParser.createParser(raw.substring(start, end))) {
+                        serviceParser.nextToken();
+                        creds = servicesParser.bindService(serviceParser, vcapService);
+                    }
+                    boundCount++;
+                }
+            }
+
+            if (creds == null) return;
+            digestedCreds.put(serviceDigest, creds);
+            services.add(creds);
+        }
+
+        void bindSingleTo(List<SolaceServiceCredentials> services) throws IOException {
+            ByteBuffer serviceDigest = digest(0, raw.length());
+            SolaceServiceCredentials creds = previousCreds.get(serviceDigest);
+            if (creds == null) {
+                List<SolaceServiceCredentials> parsed = servicesParser.parse(raw);
+                creds = parsed.isEmpty() ? null : parsed.get(0);
+                boundCount++;
+            }
+            if (creds == null) return;
+            digestedCreds.put(serviceDigest, creds);
+            services.add(creds);
+        }
+
+        private ByteBuffer digest(int start, int end) {
+            for (int i = start; i < end;) {
+                int length = 0;
+                for (; i < end && length < digestBuffer.length; i++) {
+                    char c = raw.charAt(i);
+                    digestBuffer[length++] = (byte) (c >> 8);
+                    digestBuffer[length++] = (byte) c;
+                }
+                digest.update(digestBuffer, 0, length);
+            }
+            return ByteBuffer.wrap(digest.digest());
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.loader.SolaceManifestLoader.PostProcessor;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnvSource;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Caches the marshalled services of many tenants, each with manifest sources of its own.</p>
+ *
+ * <p>A tenant's sources are given as a map of environment names to values, as they would otherwise be found in the
+ *      JVM properties or OS environment. Supported environments, in order of precedence, are:</p>
+ * <ol>
+ *     <li>{@value #SOLCAP_SERVICES}: The manifest itself.</li>
+ *     <li>{@value #SOLACE_SERVICES_HOME}: The directory containing the tenant's
+ *          {@value SolaceManifestLoader#MANIFEST_FILE_NAME} file.</li>
+ * </ol>
+ *
+ * <p>The cache is bounded by the total number of services held, which is all a tenant holds since its manifest is not
+ *      kept once marshalled. Once exceeded, the least recently used tenants are evicted. Tenants also expire once
+ *      their time-to-live since being loaded has elapsed, after which their manifest is loaded anew on the next
+ *      lookup.</p>
+ */
+public class SolaceTenantCredentialsCache {
+    public static final String SOLCAP_SERVICES = "SOLCAP_SERVICES";
+    public static final String SOLACE_SERVICES_HOME = "SOLACE_SERVICES_HOME";
+
+    private static final Logger logger = LoggerFactory.getLogger(SolaceTenantCredentialsCache.class);
+    private static final List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> tenantSearchQueries;
+    // Shared by every tenant, since it is only used to marshal manifests rather than to keep snapshots of them
+    private static final SolaceServicesParser servicesParser = SolaceCredentialsLoader.createDefaultServicesParser();
+
+    static {
+        List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries = new ArrayList<>();
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLCAP_SERVICES, SolaceEnvSource.PROVIDED, PostProcessor.NONE));
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLACE_SERVICES_HOME, SolaceEnvSource.PROVIDED, PostProcessor.FILE));
+        tenantSearchQueries = Collections.unmodifiableList(searchQueries);
+    }
+
+    private final long maximumWeight;
+    private final long ttlNanos;
+    // Access-ordered, so that iteration starts from the least recently used tenant
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong totalLoadTime = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong expirationCount = new AtomicLong();
+
+    /**
+     * @param maximumWeight The maximum total number of services held, where a tenant weighs at least 1.
+     *      A single tenant exceeding it on its own is still held until another tenant is loaded.
+     * @param ttl The time-to-live of a tenant since it was loaded. Tenants never expire if not positive.
+     * @param ttlUnit The unit of the time-to-live.
+     */
+    public SolaceTenantCredentialsCache(long maximumWeight, long ttl, TimeUnit ttlUnit) {
+        if (maximumWeight <= 0) throw new IllegalArgumentException("The maximum weight must be positive");
+        this.maximumWeight = maximumWeight;
+        this.ttlNanos = ttlUnit.toNanos(ttl);
+    }
+
+    /**
+     * Fetches all the Solace services of the given tenant. The tenant's manifest is only loaded and marshalled if the
+     * tenant is not cached, has expired or its sources have changed.
+     * @param tenantId The ID of the tenant.
+     * @param tenantEnv The tenant's manifest sources, see {@link SolaceTenantCredentialsCache}.
+     * @return A map of {@link SolaceServiceCredentials#getId() service IDs} to {@link SolaceServiceCredentials}.
+     * @throws IllegalArgumentException If a source is not supported or if the manifest does not have the expected
+     *      format.
+     */
+    public Map<String, SolaceServiceCredentials> getAllSolaceServiceInfo(String tenantId, Map<String, String> tenantEnv) {
+        Entry entry = getEntry(tenantId, tenantEnv);
+        return new HashMap<>(load(entry));
+    }
+
+    /**
+     * Gets the specified Solace service of the given tenant.
+     * @param tenantId The ID of the tenant.
+     * @param tenantEnv The tenant's manifest sources, see {@link SolaceTenantCredentialsCache}.
+     * @param serviceId The ID of a Solace service.
+     * @return The {@link SolaceServiceCredentials} associated to the given ID, null if none found.
+     * @see #getAllSolaceServiceInfo(String, Map)
+     */
+    public SolaceServiceCredentials getSolaceServiceInfo(String tenantId, Map<String, String> tenantEnv,
+                                                         String serviceId) {
+        return load(getEntry(tenantId, tenantEnv)).get(serviceId);
+    }
+
+    /**
+     * Discards the given tenant, so that its manifest is loaded anew on its next lookup.
+     * @param tenantId The ID of the tenant.
+     */
+    public void invalidate(String tenantId) {
+        synchronized (entries) {
+            Entry entry = entries.remove(tenantId);
+            if (entry != null) weight -= entry.weight;
+        }
+    }
+
+    /**
+     * Discards every tenant.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Discards every expired tenant. Expired tenants are otherwise only discarded when looked up or evicted.
+     */
+    public void cleanUp() {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext();) {
+                Entry entry = iterator.next();
+                if (entry.isExpired(now)) {
+                    iterator.remove();
+                    weight -= entry.weight;
+                    expirationCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of cached tenants.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return The total weight of the cached tenants.
+     */
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    /**
+     * @return A snapshot of the cache's statistics since its creation.
+     */
+    public Stats getStats() {
+        return new Stats(hitCount.get(), missCount.get(), loadCount.get(), loadFailureCount.get(),
+                totalLoadTime.get(), evictionCount.get(), expirationCount.get());
+    }
+
+    private Entry getEntry(String tenantId, Map<String, String> tenantEnv) {
+        Map<SolaceEnv, String> providedEnv = toProvidedEnv(tenantEnv);
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(tenantId);
+            if (entry != null && entry.isExpired(now)) expirationCount.incrementAndGet();
+
+            if (entry != null && !entry.isExpired(now) && entry.providedEnv.equals(providedEnv)) {
+                hitCount.incrementAndGet();
+                return entry;
+            }
+
+            if (entry != null) weight -= entry.weight;
+            entry = new Entry(tenantId, providedEnv);
+            entries.put(tenantId, entry);
+            missCount.incrementAndGet();
+            return entry;
+        }
+    }
+
+    private Map<String, SolaceServiceCredentials> load(Entry entry) {
+        // Tenants are loaded outside of the cache's lock so that a slow tenant does not hold up the others
+        synchronized (entry) {
+            if (entry.svcsCreds != null) return entry.svcsCreds;
+
+            long startTime = System.nanoTime();
+            try {
+                String raw = new SolaceManifestLoader(tenantSearchQueries, entry.providedEnv).getManifest();
+                entry.svcsCreds = parse(raw);
+            } catch (RuntimeException e) {
+                loadFailureCount.incrementAndGet();
+                synchronized (entries) {
+                    if (entries.get(entry.tenantId) == entry) entries.remove(entry.tenantId);
+                }
+                throw e;
+            }
+            entry.loadTime = System.nanoTime();
+            loadCount.incrementAndGet();
+            totalLoadTime.addAndGet(entry.loadTime - startTime);
+        }
+
+        synchronized (entries) {
+            if (entries.get(entry.tenantId) == entry) {
+                int entryWeight = Math.max(1, entry.svcsCreds.size());
+                weight += entryWeight - entry.weight;
+                entry.weight = entryWeight;
+                evict();
+            }
+        }
+        return entry.svcsCreds;
+    }
+
+    /**
+     * @return An unmodifiable map of the given manifest's services by ID, empty if there is no manifest.
+     * @throws SolaceManifestParseException If the manifest does not have the expected format.
+     */
+    private static Map<String, SolaceServiceCredentials> parse(String raw) {
+        if (raw == null || raw.isEmpty()) return Collections.emptyMap();
+        try {
+            return SolaceServicesIndex.mapOf(servicesParser.parse(raw));
+        } catch (IOException e) {
+            SolaceManifestParseException parseException = new SolaceManifestParseException(e, raw);
+            // Only the bounded and redacted message, since the manifest holds credentials
+            logger.error(parseException.getMessage());
+            throw parseException;
+        }
+    }
+
+    private void evict() {
+        // The most recently used tenant is never evicted
+        for (Iterator<Entry> iterator = entries.values().iterator(); weight > maximumWeight && entries.size() > 1;) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            weight -= entry.weight;
+            evictionCount.incrementAndGet();
+            logger.debug("Evicted the Solace services of tenant {}", entry.tenantId);
+        }
+    }
+
+    private static Map<SolaceEnv, String> toProvidedEnv(Map<String, String> tenantEnv) {
+        Map<SolaceEnv, String> providedEnv = new EnumMap<>(SolaceEnv.class);
+        for (Map.Entry<String, String> env : tenantEnv.entrySet()) {
+            if (!SOLCAP_SERVICES.equals(env.getKey()) && !SOLACE_SERVICES_HOME.equals(env.getKey())) {
+                throw new IllegalArgumentException(String.format("Unsupported tenant manifest source %s", env.getKey()));
+            }
+            if (env.getValue() != null) providedEnv.put(SolaceEnv.valueOf(env.getKey()), env.getValue());
+        }
+        return providedEnv;
+    }
+
+    private class Entry {
+        final String tenantId;
+        final Map<SolaceEnv, String> providedEnv;
+        // Guarded by the entry, then published under the cache's lock
+        volatile Map<String, SolaceServiceCredentials> svcsCreds;
+        volatile long loadTime;
+        // Guarded by the cache's lock
+        int weight = 0;
+
+        Entry(String tenantId, Map<SolaceEnv, String> providedEnv) {
+            this.tenantId = tenantId;
+            this.providedEnv = providedEnv;
+        }
+
+        boolean isExpired(long now) {
+            return ttlNanos > 0 && svcsCreds != null && now - loadTime >= ttlNanos;
+        }
+    }
+
+    /**
+     * Statistics of a {@link SolaceTenantCredentialsCache}.
+     */
+    public static class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long loadCount;
+        private final long loadFailureCount;
+        private final long totalLoadTime;
+        private final long evictionCount;
+        private final long expirationCount;
+
+        Stats(long hitCount, long missCount, long loadCount, long loadFailureCount, long totalLoadTime,
+              long evictionCount, long expirationCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadCount = loadCount;
+            this.loadFailureCount = loadFailureCount;
+            this.totalLoadTime = totalLoadTime;
+            this.evictionCount = evictionCount;
+            this.expirationCount = expirationCount;
+        }
+
+        /**
+         * @return The number of lookups served by an already cached tenant.
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * @return The number of lookups for which the tenant was not cached, had expired or had changed sources.
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * @return The ratio of lookups which were hits, 1 if there were no lookups.
+         */
+        public double getHitRate() {
+            long requestCount = hitCount + missCount;
+            return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+        }
+
+        /**
+         * @return The number of successfully loaded tenant manifests.
+         */
+        public long getLoadCount() {
+            return loadCount;
+        }
+
+        /**
+         * @return The number of tenant manifests which failed to load.
+         */
+        public long getLoadFailureCount() {
+            return loadFailureCount;
+        }
+
+        /**
+         * @return The total time spent successfully loading tenant manifests, in nanoseconds.
+         */
+        public long getTotalLoadTime() {
+            return totalLoadTime;
+        }
+
+        /**
+         * @return The number of tenants evicted to bound the cache's weight.
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * @return The number of tenants discarded after their time-to-live elapsed.
+         */
+        public long getExpirationCount() {
+            return expirationCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{hitCount=%d, missCount=%d, loadCount=%d, loadFailureCount=%d, " +
+                            "totalLoadTime=%d, evictionCount=%d, expirationCount=%d}",
+                    hitCount, missCount, loadCount, loadFailureCount, totalLoadTime, evictionCount, expirationCount);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.solace.services.core.model;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>Holds a secret, such as a password, outside of the Java heap.</p>
+ *
+ * <p>The secret's characters are kept in a direct buffer, so that they are neither traced by the garbage collector
+ *      nor captured in heap dumps. Once {@link #wipe() wiped}, the buffer is zeroed and the secret can no longer be
+ *      read. The secret is always masked in {@link #toString()}.</p>
+ */
+public final class SolaceSecret {
+    static final String MASK = "******";
+
+    private final CharBuffer chars;
+    private boolean wiped = false;
+
+    private SolaceSecret(char[] value, int offset, int length) {
+        chars = ByteBuffer.allocateDirect(length * 2).asCharBuffer();
+        chars.put(value, offset, length);
+    }
+
+    /**
+     * @param value The secret. The string itself remains on the heap until it is garbage collected.
+     * @return A new secret holding the given value, null if the value is null.
+     */
+    public static SolaceSecret of(String value) {
+        if (value == null) return null;
+        char[] valueChars = value.toCharArray();
+        try {
+            return new SolaceSecret(valueChars, 0, valueChars.length);
+        } finally {
+            Arrays.fill(valueChars, '\0');
+        }
+    }
+
+    /**
+     * @param value A buffer containing the secret. It is copied, and may be cleared by the caller afterwards.
+     * @param offset The offset of the secret within the buffer.
+     * @param length The length of the secret.
+     * @return A new secret holding the given value.
+     */
+    public static SolaceSecret of(char[] value, int offset, int length) {
+        return new SolaceSecret(value, offset, length);
+    }
+
+    /**
+     * @return A copy of the secret's characters, which the caller should clear once done with it.
+     * @throws IllegalStateException If the secret was wiped.
+     */
+    public char[] getChars() {
+        char[] value = copyChars();
+        if (value == null) throw new IllegalStateException("The secret was wiped");
+        return value;
+    }
+
+    /**
+     * @return The secret as a heap string, null if it was wiped.
+     */
+    public String reveal() {
+        char[] value = copyChars();
+        if (value == null) return null;
+        try {
+            return new String(value);
+        } finally {
+            Arrays.fill(value, '\0');
+        }
+    }
+
+    /**
+     * @return The length of the secret, 0 if it was wiped.
+     */
+    public synchronized int length() {
+        return wiped ? 0 : chars.capacity();
+    }
+
+    /**
+     * Zeroes the secret's storage. The secret can no longer be read afterwards.
+     */
+    public synchronized void wipe() {
+        if (wiped) return;
+        CharBuffer buffer = (CharBuffer) chars.duplicate().clear();
+        while (buffer.hasRemaining()) buffer.put('\0');
+        wiped = true;
+    }
+
+    public synchronized boolean isWiped() {
+        return wiped;
+    }
+
+    @Override
+    public String toString() {
+        return MASK;
+    }
+
+    /**
+     * @return The same hash as the secret's string, 0 if it was wiped. Computed over the secret's storage, so that the
+     *      secret is never copied onto the heap.
+     */
+    @Override
+    public synchronized int hashCode() {
+        if (wiped) return 0;
+        int hash = 0;
+        for (int i = 0; i < chars.capacity(); i++) hash = 31 * hash + chars.get(i);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        return !isWiped() && contentEquals((SolaceSecret) obj);
+    }
+
+    /**
+     * Compares the secret's storage to a string, without copying the secret onto the heap.
+     * @return True if the secret holds the given value, or if it was wiped and the value is null.
+     */
+    synchronized boolean contentEquals(CharSequence value) {
+        if (wiped) return value == null;
+        if (value == null || value.length() != chars.capacity()) return false;
+        for (int i = 0; i < chars.capacity(); i++) {
+            if (chars.get(i) != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compares the storage of two secrets, without copying either onto the heap.
+     * @return True if both secrets hold the same value, or if both were wiped.
+     */
+    boolean contentEquals(SolaceSecret other) {
+        if (this == other) return true;
+        // Only one lock is held at a time, so that two secrets compared to each other concurrently cannot deadlock. The
+        // other secret being wiped meanwhile only makes the comparison fail.
+        CharBuffer otherChars = other.isWiped() ? null : other.chars;
+        synchronized (this) {
+            if (wiped) return otherChars == null;
+            if (otherChars == null || otherChars.capacity() != chars.capacity()) return false;
+            for (int i = 0; i < chars.capacity(); i++) {
+                if (chars.get(i) != otherChars.get(i)) return false;
+            }
+            return true;
+        }
+    }
+
+    private synchronized char[] copyChars() {
+        if (wiped) return null;
+        char[] value = new char[chars.capacity()];
+        ((CharBuffer) chars.duplicate().clear()).get(value);
+        return value;
+    }
+}
@@ -1,16 +1,17 @@
 package com.solace.services.core.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.apache.commons.lang3.builder.ToStringStyle;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
+    private static final SolaceServiceCredentialsWriter toStringWriter = new SolaceServiceCredentialsWriter(true);
 
     private String id;
     private String clientUsername;
@@ -36,6 +37,11 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
     private String dmrClusterName;
     private String dmrClusterPassword;
 
+    // Set in place of their heap counterparts once the secrets are moved off-heap
+    private SolaceSecret clientPasswordSecret;
+    private SolaceSecret managementPasswordSecret;
+    private SolaceSecret dmrClusterPasswordSecret;
+
     @Override
     public String getId() {
         return id;
@@ -56,11 +62,27 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
 
     @Override
     public String getClientPassword() {
-        return clientPassword;
+        return clientPasswordSecret != null ? clientPasswordSecret.reveal() : clientPassword;
     }
 
     public void setClientPassword(String clientPassword) {
         this.clientPassword = clientPassword;
+        this.clientPasswordSecret = null;
+    }
+
+    /**
+     * @return The client password as an off-heap secret,
+     *      null if unset or not {@link #moveSecretsOffHeap() moved off-heap}.
+     */
+    @JsonIgnore
+    public SolaceSecret getClientPasswordSecret() {
+        return clientPasswordSecret;
+    }
+
+    @JsonIgnore
+    public void setClientPasswordSecret(SolaceSecret clientPasswordSecret) {
+        this.clientPasswordSecret = clientPasswordSecret;
+        this.clientPassword = null;
     }
 
     @Override
@@ -74,7 +96,7 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
 
     @Override
     public String getSmfHost() {
-        return StringUtils.join(smfHosts, ',');
+        return joinHosts(smfHosts);
     }
 
     public List<String> getSmfHosts() {
@@ -87,7 +109,7 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
 
     @Override
     public String getSmfTlsHost() {
-        return StringUtils.join(smfTlsHosts, ',');
+        return joinHosts(smfTlsHosts);
     }
 
     public List<String> getSmfTlsHosts() {
@@ -100,7 +122,7 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
 
     @Override
     public String getSmfZipHost() {
-        return StringUtils.join(smfZipHosts, ',');
+        return joinHosts(smfZipHosts);
     }
 
     public List<String> getSmfZipHosts() {
@@ -113,7 +135,7 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
 
     @Override
     public String getJmsJndiUri() {
-        return StringUtils.join(jmsJndiUris, ',');
+        return joinHosts(jmsJndiUris);
     }
 
     public List<String> getJmsJndiUris() {
@@ -126,7 +148,7 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
 
     @Override
     public String getJmsJndiTlsUri() {
-        return StringUtils.join(jmsJndiTlsUris, ',');
+        return joinHosts(jmsJndiTlsUris);
     }
 
     public List<String> getJmsJndiTlsUris() {
@@ -220,11 +242,27 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
 
     @Override
     public String getManagementPassword() {
-        return managementPassword;
+        return managementPasswordSecret != null ? managementPasswordSecret.reveal() : managementPassword;
     }
 
     public void setManagementPassword(String managementPassword) {
         this.managementPassword = managementPassword;
+        this.managementPasswordSecret = null;
+    }
+
+    /**
+     * @return The management password as an off-heap secret,
+     *      null if unset or not {@link #moveSecretsOffHeap() moved off-heap}.
+     */
+    @JsonIgnore
+    public SolaceSecret getManagementPasswordSecret() {
+        return managementPasswordSecret;
+    }
+
+    @JsonIgnore
+    public void setManagementPasswordSecret(SolaceSecret managementPasswordSecret) {
+        this.managementPasswordSecret = managementPasswordSecret;
+        this.managementPassword = null;
     }
 
     @Override
@@ -256,49 +294,60 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
 
     @Override
     public String getDmrClusterPassword() {
-        return dmrClusterPassword;
+        return dmrClusterPasswordSecret != null ? dmrClusterPasswordSecret.reveal() : dmrClusterPassword;
     }
 
     public void setDmrClusterPassword(String dmrClusterPassword) {
         this.dmrClusterPassword = dmrClusterPassword;
+        this.dmrClusterPasswordSecret = null;
+    }
+
+    /**
+     * @return The DMR cluster password as an off-heap secret,
+     *      null if unset or not {@link #moveSecretsOffHeap() moved off-heap}.
+     */
+    @JsonIgnore
+    public SolaceSecret getDmrClusterPasswordSecret() {
+        return dmrClusterPasswordSecret;
+    }
+
+    @JsonIgnore
+    public void setDmrClusterPasswordSecret(SolaceSecret dmrClusterPasswordSecret) {
+        this.dmrClusterPasswordSecret = dmrClusterPasswordSecret;
+        this.dmrClusterPassword = null;
+    }
+
+    /**
+     * Moves the client, management and DMR cluster passwords into off-heap {@link SolaceSecret secrets}.
+     * They are still readable through their getters, but are no longer held as heap strings.
+     */
+    public void moveSecretsOffHeap() {
+        if (clientPassword != null) setClientPasswordSecret(SolaceSecret.of(clientPassword));
+        if (managementPassword != null) setManagementPasswordSecret(SolaceSecret.of(managementPassword));
+        if (dmrClusterPassword != null) setDmrClusterPasswordSecret(SolaceSecret.of(dmrClusterPassword));
+    }
+
+    /**
+     * {@link SolaceSecret#wipe() Wipes} the off-heap secrets, whose passwords then read as null.
+     * Passwords which were not moved off-heap are unaffected.
+     */
+    public void wipeSecrets() {
+        if (clientPasswordSecret != null) clientPasswordSecret.wipe();
+        if (managementPasswordSecret != null) managementPasswordSecret.wipe();
+        if (dmrClusterPasswordSecret != null) dmrClusterPasswordSecret.wipe();
     }
 
     public boolean isHA(){
         return getSmfHost() != null && getSmfHost().contains(",");
     }
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.lang.Object#toString()
+    /**
+     * @return The service as a compact JSON object in the single-service credentials format, with every password
+     *      masked as {@code ******} and null properties omitted. Off-heap secrets are not revealed.
      */
     @Override
     public String toString() {
-        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
-                .append("id", id)
-                .append("clientUsername", clientUsername)
-                .append("clientPassword", clientPassword)
-                .append("msgVpnName", msgVpnName)
-                .append("smfHosts", smfHosts)
-                .append("smfTlsHosts", smfTlsHosts)
-                .append("smfZipHosts", smfZipHosts)
-                .append("jmsJndiUris", jmsJndiUris)
-                .append("jmsJndiTlsUris", jmsJndiTlsUris)
-                .append("restUris", restUris)
-                .append("restTlsUris", restTlsUris)
-                .append("amqpUris", amqpUris)
-                .append("amqpTlsUris", amqpTlsUris)
-                .append("mqttUris", mqttUris)
-                .append("mqttTlsUris", mqttTlsUris)
-                .append("mqttWsUris", mqttWsUris)
-                .append("mqttWssUris", mqttWssUris)
-                .append("managementHostnames", managementHostnames)
-                .append("managementPassword", managementPassword)
-                .append("managementUsername", managementUsername)
-                .append("activeManagementHostname", activeManagementHostname)
-                .append("dmrClusterName", dmrClusterName)
-                .append("dmrClusterPassword", dmrClusterPassword)
-                .toString();
+        return toStringWriter.write(this);
     }
 
     /*
@@ -308,31 +357,75 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
      */
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(1, 31)
-                .append(id)
-                .append(clientUsername)
-                .append(clientPassword)
-                .append(msgVpnName)
-                .append(smfHosts)
-                .append(smfTlsHosts)
-                .append(smfZipHosts)
-                .append(jmsJndiUris)
-                .append(jmsJndiTlsUris)
-                .append(restUris)
-                .append(restTlsUris)
-                .append(amqpUris)
-                .append(amqpTlsUris)
-                .append(mqttUris)
-                .append(mqttTlsUris)
-                .append(mqttWsUris)
-                .append(mqttWssUris)
-                .append(managementHostnames)
-                .append(managementPassword)
-                .append(managementUsername)
-                .append(activeManagementHostname)
-                .append(dmrClusterName)
-                .append(dmrClusterPassword)
-                .toHashCode();
+        // Same hash as HashCodeBuilder(1, 31), without allocating a builder
+        int result = 1;
+        result = 31 * result + Objects.hashCode(id);
+        result = 31 * result + Objects.hashCode(clientUsername);
+        result = 31 * result + hashCode(clientPassword, clientPasswordSecret);
+        result = 31 * result + Objects.hashCode(msgVpnName);
+        result = 31 * result + hashCode(smfHosts);
+        result = 31 * result + hashCode(smfTlsHosts);
+        result = 31 * result + hashCode(smfZipHosts);
+        result = 31 * result + hashCode(jmsJndiUris);
+        result = 31 * result + hashCode(jmsJndiTlsUris);
+        result = 31 * result + hashCode(restUris);
+        result = 31 * result + hashCode(restTlsUris);
+        result = 31 * result + hashCode(amqpUris);
+        result = 31 * result + hashCode(amqpTlsUris);
+        result = 31 * result + hashCode(mqttUris);
+        result = 31 * result + hashCode(mqttTlsUris);
+        result = 31 * result + hashCode(mqttWsUris);
+        result = 31 * result + hashCode(mqttWssUris);
+        result = 31 * result + hashCode(managementHostnames);
+        result = 31 * result + hashCode(managementPassword, managementPasswordSecret);
+        result = 31 * result + Objects.hashCode(managementUsername);
+        result = 31 * result + Objects.hashCode(activeManagementHostname);
+        result = 31 * result + Objects.hashCode(dmrClusterName);
+        result = 31 * result + hashCode(dmrClusterPassword, dmrClusterPasswordSecret);
+        return result;
+    }
+
+    // Same as StringUtils.join(hosts, ','), but sized up front and without allocating an iterator
+    private static String joinHosts(List<String> hosts) {
+        if (!(hosts instanceof RandomAccess)) return StringUtils.join(hosts, ',');
+        int size = hosts.size();
+        if (size == 0) return "";
+        if (size == 1) return StringUtils.defaultString(hosts.get(0));
+
+        int length = size - 1;
+        for (int i = 0; i < size; i++) {
+            String host = hosts.get(i);
+            if (host != null) length += host.length();
+        }
+        StringBuilder joined = new StringBuilder(length);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) joined.append(',');
+            String host = hosts.get(i);
+            if (host != null) joined.append(host);
+        }
+        return joined.toString();
+    }
+
+    // Same as the hash of the password's string, without revealing an off-heap secret onto the heap
+    private static int hashCode(String password, SolaceSecret secret) {
+        return secret != null ? secret.hashCode() : Objects.hashCode(password);
+    }
+
+    // Same as comparing the passwords' strings, which read as null once their off-heap secret is wiped
+    private static boolean passwordEquals(String password, SolaceSecret secret,
+                                          String otherPassword, SolaceSecret otherSecret) {
+        if (secret != null && otherSecret != null) return secret.contentEquals(otherSecret);
+        if (secret != null) return secret.contentEquals(otherPassword);
+        if (otherSecret != null) return otherSecret.contentEquals(password);
+        return Objects.equals(password, otherPassword);
+    }
+
+    // Same as List.hashCode(), without allocating an iterator
+    private static int hashCode(List<String> values) {
+        if (!(values instanceof RandomAccess)) return Objects.hashCode(values);
+        int hash = 1;
+        for (int i = 0; i < values.size(); i++) hash = 31 * hash + Objects.hashCode(values.get(i));
+        return hash;
     }
 
     /*
@@ -349,10 +442,15 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
         if (getClass() != obj.getClass())
             return false;
         SolaceServiceCredentialsImpl other = (SolaceServiceCredentialsImpl) obj;
-        return new EqualsBuilder()
+        // Passwords are compared first, and off-heap secrets without revealing them onto the heap
+        return passwordEquals(clientPassword, clientPasswordSecret, other.clientPassword, other.clientPasswordSecret) &&
+                passwordEquals(managementPassword, managementPasswordSecret,
+                        other.managementPassword, other.managementPasswordSecret) &&
+                passwordEquals(dmrClusterPassword, dmrClusterPasswordSecret,
+                        other.dmrClusterPassword, other.dmrClusterPasswordSecret) &&
+                new EqualsBuilder()
                 .append(id, other.id)
                 .append(clientUsername, other.clientUsername)
-                .append(clientPassword, other.clientPassword)
                 .append(msgVpnName, other.msgVpnName)
                 .append(smfHosts, other.smfHosts)
                 .append(smfTlsHosts, other.smfTlsHosts)
@@ -368,11 +466,9 @@ public class SolaceServiceCredentialsImpl implements SolaceServiceCredentials {
                 .append(mqttWsUris, other.mqttWsUris)
                 .append(mqttWssUris, other.mqttWssUris)
                 .append(managementHostnames, other.managementHostnames)
-                .append(managementPassword, other.managementPassword)
                 .append(managementUsername, other.managementUsername)
                 .append(activeManagementHostname, other.activeManagementHostname)
                 .append(dmrClusterName, other.dmrClusterName)
-                .append(dmrClusterPassword, other.dmrClusterPassword)
                 .isEquals();
     }
 }
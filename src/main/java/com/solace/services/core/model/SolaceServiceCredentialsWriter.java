@@ -0,0 +1,251 @@
+package com.solace.services.core.model;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Serializes {@link SolaceServiceCredentials} into service manifests, which can be read back by the
+ *      {@code SolaceCredentialsLoader}.</p>
+ *
+ * <p>A single service is written in the single-service credentials format, and several services in the list of
+ *      service credentials format. Every service is written with its ID so that it is preserved. Null properties are
+ *      omitted.</p>
+ *
+ * <p>Manifests are written through a streaming JSON generator into a per-thread buffer which is reused across calls.
+ *      Writers are thread-safe.</p>
+ */
+public class SolaceServiceCredentialsWriter {
+    // Buffers grown past this are dropped after use rather than kept for reuse
+    private static final int MAX_REUSED_BUFFER_CAPACITY = 64 * 1024;
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final ThreadLocal<StringBuilderWriter> buffers = new ThreadLocal<StringBuilderWriter>() {
+        @Override
+        protected StringBuilderWriter initialValue() {
+            return new StringBuilderWriter();
+        }
+    };
+
+    private final boolean redacted;
+
+    /**
+     * @param redacted True to {@link SolaceSecret#toString() mask} passwords, in which case the written manifests
+     *      are only fit for display.
+     */
+    public SolaceServiceCredentialsWriter(boolean redacted) {
+        this.redacted = redacted;
+    }
+
+    /**
+     * @param svcCreds The credentials of a service.
+     * @return A single-service credentials manifest.
+     */
+    public String write(SolaceServiceCredentials svcCreds) {
+        StringBuilderWriter buffer = getBuffer();
+        try (JsonGenerator generator = jsonFactory.createGenerator(buffer)) {
+            writeCredentials(generator, svcCreds);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write the service credentials", e);
+        }
+        return buffer.drain();
+    }
+
+    /**
+     * @param svcsCreds The credentials of several services.
+     * @return A list of service credentials manifest.
+     */
+    public String write(Collection<? extends SolaceServiceCredentials> svcsCreds) {
+        StringBuilderWriter buffer = getBuffer();
+        try {
+            write(svcsCreds, buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write the service credentials", e);
+        }
+        return buffer.drain();
+    }
+
+    /**
+     * @param svcsCreds A map of {@link SolaceServiceCredentials#getId() service IDs} to {@link SolaceServiceCredentials},
+     *      such as the one loaded by the {@code SolaceCredentialsLoader}.
+     * @return A list of service credentials manifest.
+     */
+    public String write(Map<String, ? extends SolaceServiceCredentials> svcsCreds) {
+        return write(svcsCreds.values());
+    }
+
+    /**
+     * Writes a list of service credentials manifest. The writer is not closed.
+     * @param svcsCreds The credentials of several services.
+     * @param out The writer to write the manifest to.
+     * @throws IOException If the manifest could not be written.
+     */
+    public void write(Collection<? extends SolaceServiceCredentials> svcsCreds, Writer out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeCredentialsList(generator, svcsCreds);
+        }
+    }
+
+    /**
+     * Writes a UTF-8 encoded list of service credentials manifest. The stream is not closed.
+     * @param svcsCreds The credentials of several services.
+     * @param out The stream to write the manifest to.
+     * @throws IOException If the manifest could not be written.
+     */
+    public void write(Collection<? extends SolaceServiceCredentials> svcsCreds, OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeCredentialsList(generator, svcsCreds);
+        }
+    }
+
+    private static StringBuilderWriter getBuffer() {
+        StringBuilderWriter buffer = buffers.get();
+        // Discard anything left over by a failed write
+        buffer.builder.setLength(0);
+        return buffer;
+    }
+
+    private void writeCredentialsList(JsonGenerator generator, Collection<? extends SolaceServiceCredentials> svcsCreds)
+            throws IOException {
+        generator.writeStartArray();
+        for (SolaceServiceCredentials svcCreds : svcsCreds) writeCredentials(generator, svcCreds);
+        generator.writeEndArray();
+    }
+
+    private void writeCredentials(JsonGenerator generator, SolaceServiceCredentials svcCreds) throws IOException {
+        SolaceServiceCredentialsImpl svcCredsImpl = svcCreds instanceof SolaceServiceCredentialsImpl ?
+                (SolaceServiceCredentialsImpl) svcCreds : null;
+
+        generator.writeStartObject();
+        writeString(generator, "id", svcCreds.getId());
+        writeString(generator, "clientUsername", svcCreds.getClientUsername());
+        if (svcCredsImpl != null && svcCredsImpl.getClientPasswordSecret() != null) {
+            writeSecret(generator, "clientPassword", svcCredsImpl.getClientPasswordSecret());
+        } else {
+            writeSecret(generator, "clientPassword", svcCreds.getClientPassword());
+        }
+        writeString(generator, "msgVpnName", svcCreds.getMsgVpnName());
+        writeList(generator, "smfHosts",
+                svcCredsImpl != null ? svcCredsImpl.getSmfHosts() : split(svcCreds.getSmfHost()));
+        writeList(generator, "smfTlsHosts",
+                svcCredsImpl != null ? svcCredsImpl.getSmfTlsHosts() : split(svcCreds.getSmfTlsHost()));
+        writeList(generator, "smfZipHosts",
+                svcCredsImpl != null ? svcCredsImpl.getSmfZipHosts() : split(svcCreds.getSmfZipHost()));
+        writeList(generator, "jmsJndiUris",
+                svcCredsImpl != null ? svcCredsImpl.getJmsJndiUris() : split(svcCreds.getJmsJndiUri()));
+        writeList(generator, "jmsJndiTlsUris",
+                svcCredsImpl != null ? svcCredsImpl.getJmsJndiTlsUris() : split(svcCreds.getJmsJndiTlsUri()));
+        writeList(generator, "restUris", svcCreds.getRestUris());
+        writeList(generator, "restTlsUris", svcCreds.getRestTlsUris());
+        writeList(generator, "amqpUris", svcCreds.getAmqpUris());
+        writeList(generator, "amqpTlsUris", svcCreds.getAmqpTlsUris());
+        writeList(generator, "mqttUris", svcCreds.getMqttUris());
+        writeList(generator, "mqttTlsUris", svcCreds.getMqttTlsUris());
+        writeList(generator, "mqttWsUris", svcCreds.getMqttWsUris());
+        writeList(generator, "mqttWssUris", svcCreds.getMqttWssUris());
+        writeList(generator, "managementHostnames", svcCreds.getManagementHostnames());
+        if (svcCredsImpl != null && svcCredsImpl.getManagementPasswordSecret() != null) {
+            writeSecret(generator, "managementPassword", svcCredsImpl.getManagementPasswordSecret());
+        } else {
+            writeSecret(generator, "managementPassword", svcCreds.getManagementPassword());
+        }
+        writeString(generator, "managementUsername", svcCreds.getManagementUsername());
+        writeString(generator, "activeManagementHostname", svcCreds.getActiveManagementHostname());
+        writeString(generator, "dmrClusterName", svcCreds.getDmrClusterName());
+        if (svcCredsImpl != null && svcCredsImpl.getDmrClusterPasswordSecret() != null) {
+            writeSecret(generator, "dmrClusterPassword", svcCredsImpl.getDmrClusterPasswordSecret());
+        } else {
+            writeSecret(generator, "dmrClusterPassword", svcCreds.getDmrClusterPassword());
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeSecret(JsonGenerator generator, String fieldName, String value) throws IOException {
+        writeString(generator, fieldName, redacted && value != null ? SolaceSecret.MASK : value);
+    }
+
+    private void writeSecret(JsonGenerator generator, String fieldName, SolaceSecret value) throws IOException {
+        if (redacted) {
+            if (!value.isWiped()) generator.writeStringField(fieldName, SolaceSecret.MASK);
+            return;
+        }
+
+        // Written straight from the secret's characters so that it is never held as a heap string
+        char[] chars = getChars(value);
+        if (chars == null) return;
+        try {
+            generator.writeFieldName(fieldName);
+            generator.writeString(chars, 0, chars.length);
+        } finally {
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    private static char[] getChars(SolaceSecret secret) {
+        try {
+            return secret.getChars();
+        } catch (IllegalStateException e) {
+            // Wiped, in which case it reads as null
+            return null;
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, String fieldName, String value) throws IOException {
+        if (value != null) generator.writeStringField(fieldName, value);
+    }
+
+    private static void writeList(JsonGenerator generator, String fieldName, List<String> values) throws IOException {
+        if (values == null) return;
+        generator.writeArrayFieldStart(fieldName);
+        for (String value : values) generator.writeString(value);
+        generator.writeEndArray();
+    }
+
+    private static List<String> split(String joinedValues) {
+        return joinedValues != null ? Arrays.asList(joinedValues.split(",")) : null;
+    }
+
+    private static class StringBuilderWriter extends Writer {
+        private StringBuilder builder = new StringBuilder();
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            builder.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            builder.append(str, off, off + len);
+        }
+
+        @Override
+        public void write(int c) {
+            builder.append((char) c);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+
+        /**
+         * @return The buffered contents, after which the buffer is emptied for reuse.
+         */
+        String drain() {
+            String contents = builder.toString();
+            if (builder.capacity() > MAX_REUSED_BUFFER_CAPACITY) builder = new StringBuilder();
+            else builder.setLength(0);
+            return contents;
+        }
+    }
+}
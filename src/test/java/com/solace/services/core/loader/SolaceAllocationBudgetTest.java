@@ -0,0 +1,259 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+import com.solace.services.core.model.SolaceServiceCredentialsWriter;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static com.solace.services.core.loader.SolaceManifestLoader.PostProcessor;
+import static com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
+import static com.solace.services.core.loader.SolaceManifestLoader.SolaceEnvSource;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fails when the lookup hot paths allocate or retain more than the budgets configured in
+ * {@value #BUDGETS_RESOURCE}, which can be overridden by JVM properties of the same names.
+ * <p>The retained heap depends on when the GC runs, so it is only measured with the {@value #RETAINED_HEAP_PROPERTY}
+ *      JVM property set, as by the {@code retainedheap} Maven profile.</p>
+ */
+public class SolaceAllocationBudgetTest {
+    private static final Logger logger = LoggerFactory.getLogger(SolaceAllocationBudgetTest.class);
+    private static final String BUDGETS_RESOURCE = "/allocation-budgets.properties";
+    private static final String RETAINED_HEAP_PROPERTY = "solace.services.test.retainedHeap";
+    private static final int SERVICE_COUNT = 100;
+    private static final int WARMUP_ITERATIONS = 50000;
+    private static final int MEASURED_ITERATIONS = 10000;
+    private static final int RETAINED_HEAP_SAMPLES = 5;
+    private static final int MIN_GC_COUNT = 4;
+    private static final int MAX_GC_COUNT = 20;
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+    private static Properties budgets;
+
+    // Consumes the results of the measured operations so that they are not optimized away
+    private static volatile Object sink;
+    private static volatile int hashSink;
+
+    @Rule public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
+    @BeforeClass
+    public static void setupClass() throws IOException {
+        ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("Thread allocation measurement is not supported by this JVM",
+                mxBean instanceof com.sun.management.ThreadMXBean &&
+                ((com.sun.management.ThreadMXBean) mxBean).isThreadAllocatedMemorySupported());
+        threadMXBean = (com.sun.management.ThreadMXBean) mxBean;
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        budgets = new Properties();
+        try (InputStream budgetsStream = SolaceAllocationBudgetTest.class.getResourceAsStream(BUDGETS_RESOURCE)) {
+            budgets.load(budgetsStream);
+        }
+    }
+
+    @Test
+    public void testCachedLookup() {
+        final SolaceCredentialsLoader loader = createLoader(createManifest(SERVICE_COUNT, "password"));
+        final String[] serviceIds = getServiceIds(SERVICE_COUNT);
+        assertNotNull(loader.getSolaceServiceInfo(serviceIds[0]));
+
+        assertWithinBudget("lookup.cached", new Operation() {
+            private int i = 0;
+
+            @Override
+            public Object run() {
+                return loader.getSolaceServiceInfo(serviceIds[i++ % serviceIds.length]);
+            }
+        });
+    }
+
+    @Test
+    public void testGetters() {
+        final SolaceServiceCredentials svcCreds = createLoader(createManifest(1, "password")).getSolaceServiceInfo();
+        assertWithinBudget("getter", new Operation() {
+            @Override
+            public Object run() {
+                // Combined so that none of the results can be dropped
+                return svcCreds.getId().length() + svcCreds.getClientUsername().length() +
+                        svcCreds.getClientPassword().length() + svcCreds.getMsgVpnName().length() +
+                        svcCreds.getManagementHostnames().size() + svcCreds.getActiveManagementHostname().length();
+            }
+        });
+    }
+
+    @Test
+    public void testJoinedHostGetters() {
+        final SolaceServiceCredentials svcCreds = createLoader(createManifest(1, "password")).getSolaceServiceInfo();
+        assertWithinBudget("getter.joinedHosts", new Operation() {
+            @Override
+            public Object run() {
+                return svcCreds.getSmfHost();
+            }
+        });
+    }
+
+    @Test
+    public void testHashCode() {
+        final SolaceServiceCredentials svcCreds = createLoader(createManifest(1, "password")).getSolaceServiceInfo();
+        assertWithinBudget("hashCode", new Operation() {
+            @Override
+            public Object run() {
+                hashSink = svcCreds.hashCode();
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testOffHeapHashCode() {
+        System.setProperty(SolaceCredentialsLoader.OFF_HEAP_SECRETS_PROPERTY, "true");
+        final SolaceServiceCredentials svcCreds = createLoader(createManifest(1, "password")).getSolaceServiceInfo();
+        assertNotNull(((SolaceServiceCredentialsImpl) svcCreds).getClientPasswordSecret());
+        // Hashed over the secrets' off-heap storage rather than revealed
+        assertWithinBudget("hashCode.offHeap", new Operation() {
+            @Override
+            public Object run() {
+                hashSink = svcCreds.hashCode();
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testReload() {
+        final String[] manifests = {createManifest(SERVICE_COUNT, "password"), createManifest(SERVICE_COUNT, "rotated")};
+        final SolaceCredentialsLoader loader = createLoader(manifests[0]);
+        final String serviceId = getServiceIds(1)[0];
+
+        // Every reload changes every service, so that every one of them is re-bound
+        long bytesPerReload = measureAllocatedBytes(new Operation() {
+            private int i = 0;
+
+            @Override
+            public Object run() {
+                System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), manifests[++i % 2]);
+                return loader.getSolaceServiceInfo(serviceId);
+            }
+        }, WARMUP_ITERATIONS / SERVICE_COUNT, MEASURED_ITERATIONS / SERVICE_COUNT);
+        assertBudget("reload.perService", bytesPerReload / SERVICE_COUNT);
+    }
+
+    @Test
+    public void testRetainedHeap() throws IOException {
+        Assume.assumeTrue("Only measured with the retainedheap profile", Boolean.getBoolean(RETAINED_HEAP_PROPERTY));
+        String manifest = createManifest(SERVICE_COUNT * 10, "password");
+        SolaceServicesParser servicesParser = new SolaceServicesParser(ObjectMapperSingleton.getInstance());
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+        // Warms up the parser, so that none of its lazily initialized state is counted
+        sink = servicesParser.parse(manifest);
+        sink = null;
+
+        // Measured as the heap freed by dropping the services, several times over since other threads add noise
+        long[] retainedBytes = new long[RETAINED_HEAP_SAMPLES];
+        for (int i = 0; i < retainedBytes.length; i++) {
+            List<SolaceServiceCredentials> svcsCreds = servicesParser.parse(manifest);
+            int serviceCount = svcsCreds.size();
+            sink = svcsCreds;
+            svcsCreds = null;
+            long usedHolding = getUsedHeapAfterGC(memoryMXBean);
+            sink = null;
+            long usedReleased = getUsedHeapAfterGC(memoryMXBean);
+            retainedBytes[i] = (usedHolding - usedReleased) / serviceCount;
+        }
+
+        Arrays.sort(retainedBytes);
+        assertBudget("retained.perService", retainedBytes[retainedBytes.length / 2]);
+    }
+
+    private interface Operation {
+        Object run();
+    }
+
+    private void assertWithinBudget(String budgetName, Operation operation) {
+        assertBudget(budgetName, measureAllocatedBytes(operation, WARMUP_ITERATIONS, MEASURED_ITERATIONS));
+    }
+
+    private void assertBudget(String budgetName, long bytes) {
+        long budget = Long.parseLong(System.getProperty(budgetName, budgets.getProperty(budgetName)));
+        logger.info("{}: {} bytes, within a budget of {} bytes", budgetName, bytes, budget);
+        assertTrue(String.format("%s exceeded its budget of %d bytes with %d bytes", budgetName, budget, bytes),
+                bytes <= budget);
+    }
+
+    /**
+     * @return The average bytes allocated by the current thread for a single run of the operation.
+     */
+    private static long measureAllocatedBytes(Operation operation, int warmupIterations, int measuredIterations) {
+        for (int i = 0; i < warmupIterations; i++) sink = operation.run();
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < measuredIterations; i++) sink = operation.run();
+        long allocatedAfter = threadMXBean.getThreadAllocatedBytes(threadId);
+        return (allocatedAfter - allocatedBefore) / measuredIterations;
+    }
+
+    private static long getUsedHeapAfterGC(MemoryMXBean memoryMXBean) {
+        long used = Long.MAX_VALUE;
+        // Collects a few times over until the heap stops shrinking, since a single GC may not free everything
+        for (int i = 0; i < MAX_GC_COUNT; i++) {
+            System.gc();
+            long newUsed = memoryMXBean.getHeapMemoryUsage().getUsed();
+            if (newUsed >= used && i >= MIN_GC_COUNT) break;
+            used = newUsed;
+        }
+        return used;
+    }
+
+    private static SolaceCredentialsLoader createLoader(String manifest) {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), manifest);
+        List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries = new ArrayList<>();
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLCAP_SERVICES, SolaceEnvSource.JVM, PostProcessor.NONE));
+        return SolaceCredentialsLoader.createIsolated(new SolaceManifestLoader(searchQueries));
+    }
+
+    private static String createManifest(int serviceCount, String password) {
+        String[] serviceIds = getServiceIds(serviceCount);
+        List<SolaceServiceCredentials> svcsCreds = new ArrayList<>();
+        for (int i = 0; i < serviceCount; i++) {
+            SolaceServiceCredentialsImpl svcCreds = new SolaceServiceCredentialsImpl();
+            svcCreds.setId(serviceIds[i]);
+            svcCreds.setClientUsername("user-" + i);
+            svcCreds.setClientPassword(password + "-" + i);
+            svcCreds.setMsgVpnName("vpn-" + i);
+            svcCreds.setSmfHosts(Arrays.asList("tcp://host-" + i + ":55555", "tcp://backup-" + i + ":55555"));
+            svcCreds.setSmfTlsHosts(Collections.singletonList("tcps://host-" + i + ":55443"));
+            svcCreds.setManagementHostnames(Collections.singletonList("mgmt-" + i));
+            svcCreds.setActiveManagementHostname("mgmt-" + i);
+            svcsCreds.add(svcCreds);
+        }
+        return new SolaceServiceCredentialsWriter(false).write(svcsCreds);
+    }
+
+    private static String[] getServiceIds(int serviceCount) {
+        String[] serviceIds = new String[serviceCount];
+        for (int i = 0; i < serviceCount; i++) serviceIds[i] = "svc-" + i;
+        return serviceIds;
+    }
+}
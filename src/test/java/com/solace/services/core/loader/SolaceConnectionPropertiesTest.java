@@ -0,0 +1,138 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.loader.SolaceConnectionProperties.Protocol;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+import org.junit.Test;
+
+import javax.naming.Context;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SolaceConnectionPropertiesTest {
+    private static final BiFunction<Object, Object, Object> REMAPPING_FUNCTION =
+            new BiFunction<Object, Object, Object>() {
+                @Override
+                public Object apply(Object key, Object value) {
+                    return "other";
+                }
+            };
+
+    @Test
+    public void testJcsmpProperties() {
+        SolaceConnectionProperties connectionProperties = SolaceConnectionProperties.compile(
+                Collections.singletonList(createCreds("svc-1")));
+
+        Properties properties = connectionProperties.getProperties("svc-1", Protocol.JCSMP);
+        assertEquals("tcp://192.168.1.50:7000,tcp://192.168.1.51:7000",
+                properties.getProperty(SolaceConnectionProperties.JCSMP_HOST));
+        assertEquals("sample-msg-vpn", properties.getProperty(SolaceConnectionProperties.JCSMP_VPN_NAME));
+        assertEquals("sample-client-username", properties.getProperty(SolaceConnectionProperties.JCSMP_USERNAME));
+        assertEquals("sample-client-password", properties.getProperty(SolaceConnectionProperties.JCSMP_PASSWORD));
+        assertEquals("tcps://192.168.1.50:7003", connectionProperties.getProperties("svc-1", Protocol.JCSMP_TLS)
+                .getProperty(SolaceConnectionProperties.JCSMP_HOST));
+    }
+
+    @Test
+    public void testJmsProperties() {
+        SolaceConnectionProperties connectionProperties = SolaceConnectionProperties.compile(
+                Collections.singletonMap("svc-1", createCreds("svc-1")));
+
+        Map<String, String> properties = connectionProperties.getPropertiesMap("svc-1", Protocol.JMS);
+        assertEquals(4, properties.size());
+        assertEquals("smf://192.168.1.50:7000", properties.get(Context.PROVIDER_URL));
+        assertEquals("sample-msg-vpn", properties.get(SolaceConnectionProperties.JMS_VPN));
+        assertEquals("sample-client-username", properties.get(Context.SECURITY_PRINCIPAL));
+        assertEquals("sample-client-password", properties.get(Context.SECURITY_CREDENTIALS));
+    }
+
+    @Test
+    public void testMissingProtocolHosts() {
+        SolaceConnectionProperties connectionProperties = SolaceConnectionProperties.compile(
+                Collections.singletonList(createCreds("svc-1")));
+        assertNull(connectionProperties.getProperties("svc-1", Protocol.JCSMP_COMPRESSED));
+        assertNull(connectionProperties.getProperties("svc-1", Protocol.JMS_TLS));
+        assertNull(connectionProperties.getPropertiesMap("svc-2", Protocol.JCSMP));
+        assertEquals(Collections.singleton("svc-1"), connectionProperties.getServiceIds());
+    }
+
+    @Test
+    public void testReusedProperties() {
+        SolaceConnectionProperties connectionProperties = SolaceConnectionProperties.compile(
+                Collections.singletonList(createCreds("svc-1")));
+        assertSame(connectionProperties.getProperties("svc-1", Protocol.JCSMP),
+                connectionProperties.getProperties("svc-1", Protocol.JCSMP));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiableProperties() {
+        SolaceConnectionProperties.compile(Collections.singletonList(createCreds("svc-1")))
+                .getProperties("svc-1", Protocol.JCSMP).setProperty(SolaceConnectionProperties.JCSMP_HOST, "other");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiablePropertiesEntries() {
+        SolaceConnectionProperties.compile(Collections.singletonList(createCreds("svc-1")))
+                .getProperties("svc-1", Protocol.JCSMP).entrySet().clear();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiablePropertiesMap() {
+        SolaceConnectionProperties.compile(Collections.singletonList(createCreds("svc-1")))
+                .getPropertiesMap("svc-1", Protocol.JMS).remove(Context.PROVIDER_URL);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiablePropertiesCompute() {
+        createProperties().compute(SolaceConnectionProperties.JCSMP_PASSWORD, REMAPPING_FUNCTION);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiablePropertiesComputeIfAbsent() {
+        createProperties().computeIfAbsent("other", new Function<Object, Object>() {
+            @Override
+            public Object apply(Object key) {
+                return "other";
+            }
+        });
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiablePropertiesComputeIfPresent() {
+        createProperties().computeIfPresent(SolaceConnectionProperties.JCSMP_PASSWORD, REMAPPING_FUNCTION);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiablePropertiesMerge() {
+        createProperties().merge(SolaceConnectionProperties.JCSMP_PASSWORD, "other", REMAPPING_FUNCTION);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiablePropertiesReplaceAll() {
+        createProperties().replaceAll(REMAPPING_FUNCTION);
+    }
+
+    private Properties createProperties() {
+        return SolaceConnectionProperties.compile(Collections.singletonList(createCreds("svc-1")))
+                .getProperties("svc-1", Protocol.JCSMP);
+    }
+
+    private SolaceServiceCredentialsImpl createCreds(String id) {
+        SolaceServiceCredentialsImpl svcCreds = new SolaceServiceCredentialsImpl();
+        svcCreds.setId(id);
+        svcCreds.setClientUsername("sample-client-username");
+        svcCreds.setClientPassword("sample-client-password");
+        svcCreds.setMsgVpnName("sample-msg-vpn");
+        svcCreds.setSmfHosts(Arrays.asList("tcp://192.168.1.50:7000", "tcp://192.168.1.51:7000"));
+        svcCreds.setSmfTlsHosts(Collections.singletonList("tcps://192.168.1.50:7003"));
+        svcCreds.setJmsJndiUris(Collections.singletonList("smf://192.168.1.50:7000"));
+        return svcCreds;
+    }
+}
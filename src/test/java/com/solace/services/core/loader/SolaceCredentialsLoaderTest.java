@@ -1,10 +1,15 @@
 package com.solace.services.core.loader;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solace.services.core.model.SolaceSecret;
 import com.solace.services.core.model.SolaceServiceCredentials;
 import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+import com.solace.services.core.model.SolaceServiceCredentialsWriter;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.mockito.InjectMocks;
@@ -14,22 +19,33 @@ import org.mockito.MockitoAnnotations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.junit.runners.Parameterized.Parameter;
 import static org.junit.runners.Parameterized.Parameters;
 
@@ -45,6 +61,7 @@ public class SolaceCredentialsLoaderTest {
     @Parameter(0) public String testManifestFormatAlias;
     @Parameter(1) public String testManifest;
     @Parameter(2) public List<SolaceServiceCredentials> testSSCs;
+    @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
     @Mock private SolaceManifestLoader manifestLoader;
     @InjectMocks private SolaceCredentialsLoader sscLoader;
 
@@ -130,6 +147,197 @@ public class SolaceCredentialsLoaderTest {
         assertEquals(ssc, sscLoader.getSolaceServiceInfo(ssc.getId()));
     }
 
+    @Test
+    public void testGetSolaceServiceInfoByIds() {
+        SolaceServiceCredentials ssc = testSSCs.get(0);
+        String missingId = "non-existent-id";
+        Map<String, SolaceServiceCredentials> sscs = sscLoader.getSolaceServiceInfo(Arrays.asList(ssc.getId(), missingId));
+
+        assertEquals(2, sscs.size());
+        assertEquals(ssc, sscs.get(ssc.getId()));
+        assertTrue(sscs.containsKey(missingId));
+        assertNull(sscs.get(missingId));
+        Mockito.verify(manifestLoader, Mockito.times(1)).getManifest();
+    }
+
+    @Test
+    public void testDuplicateIdsLookups() {
+        String service = "{\"id\": \"x\", \"msgVpnName\": \"%s\"}";
+        String listManifest = String.format("[%s, %s]", String.format(service, "first"), String.format(service, "second"));
+        String vcapManifest = String.format("{\"solace-pubsub\": [{\"credentials\": %s}, {\"credentials\": %s}]}",
+                String.format(service, "first"), String.format(service, "second"));
+
+        for (String manifest : Arrays.asList(listManifest, vcapManifest)) {
+            Mockito.when(manifestLoader.getManifest()).thenReturn(manifest);
+            // Drops the shared snapshot, so that the first bulk lookup is cold
+            sscLoader.beforeCheckpoint();
+            assertEquals(manifest, "second",
+                    sscLoader.getSolaceServiceInfo(Collections.singleton("x")).get("x").getMsgVpnName());
+            assertEquals(manifest, "second", sscLoader.getSolaceServiceInfo("x").getMsgVpnName());
+            assertEquals(manifest, "second",
+                    sscLoader.getSolaceServiceInfo(Collections.singleton("x")).get("x").getMsgVpnName());
+        }
+    }
+
+    @Test
+    public void testGetSolaceServiceInfoByIdsNoManifest() {
+        Mockito.when(manifestLoader.getManifest()).thenReturn(null);
+        String id = testSSCs.get(0).getId();
+        Map<String, SolaceServiceCredentials> sscs = sscLoader.getSolaceServiceInfo(Collections.singleton(id));
+        assertTrue(sscs.containsKey(id));
+        assertNull(sscs.get(id));
+    }
+
+    @Test
+    public void testLayeredManifests() {
+        SolaceServiceCredentials ssc = testSSCs.get(0);
+        String overrideManifest = String.format(
+                "[{\"id\": \"%s\", \"clientPassword\": \"override\"}, {\"id\": \"extra\"}]", ssc.getId());
+        Mockito.when(manifestLoader.getManifests()).thenReturn(Arrays.asList(overrideManifest, testManifest));
+        sscLoader.setLayeredManifests(true);
+
+        Map<String, SolaceServiceCredentials> sscs = sscLoader.getAllSolaceServiceInfo();
+        assertEquals(2, sscs.size());
+        assertEquals("override", sscs.get(ssc.getId()).getClientPassword());
+        assertNull(sscs.get(ssc.getId()).getMsgVpnName());
+        assertNotNull(sscs.get("extra"));
+        assertSame("Unchanged layers should not be re-parsed",
+                sscs.get(ssc.getId()), sscLoader.getSolaceServiceInfo(ssc.getId()));
+        assertTrue(sscLoader.manifestExists());
+
+        Mockito.when(manifestLoader.getManifests()).thenReturn(Collections.singletonList(testManifest));
+        assertEquals(new HashSet<>(testSSCs), new HashSet<>(sscLoader.getAllSolaceServiceInfo().values()));
+    }
+
+    @Test
+    public void testManifestDirectory() throws IOException {
+        File manifestDir = tmpFolder.newFolder(SolaceManifestLoader.MANIFEST_DIR_NAME);
+        Files.write(new File(manifestDir, "service.json").toPath(), testManifest.getBytes());
+        Mockito.when(manifestLoader.getManifestDirectory()).thenReturn(manifestDir.toPath());
+        Mockito.when(manifestLoader.getManifest()).thenReturn(null);
+
+        assertTrue(sscLoader.getAllSolaceServiceInfo().isEmpty());
+        sscLoader.setManifestDirectoryEnabled(true);
+        assertEquals(new HashSet<>(testSSCs), new HashSet<>(sscLoader.getAllSolaceServiceInfo().values()));
+        assertTrue(sscLoader.manifestExists());
+    }
+
+    @Test
+    public void testCustomObjectMapper() {
+        ObjectMapper customObjectMapper = Mockito.spy(new ObjectMapper());
+        sscLoader.setObjectMapper(customObjectMapper);
+        assertEquals(new HashSet<>(testSSCs), new HashSet<>(sscLoader.getAllSolaceServiceInfo().values()));
+        Mockito.verify(customObjectMapper).readerFor(SolaceServiceCredentialsImpl.class);
+    }
+
+    @Test
+    public void testPreload() {
+        sscLoader.setObjectMapper(new ObjectMapper());
+        assertEquals(testSSCs.size(), sscLoader.preload());
+        Mockito.verify(manifestLoader).getManifest();
+
+        SolaceServiceCredentials ssc = testSSCs.get(0);
+        SolaceServiceCredentials preloadedSsc = sscLoader.getSolaceServiceInfo(ssc.getId());
+        assertEquals(ssc, preloadedSsc);
+        assertSame("Lookups should be served from the preloaded snapshot",
+                preloadedSsc, sscLoader.getSolaceServiceInfo(Collections.singleton(ssc.getId())).get(ssc.getId()));
+
+        Mockito.when(manifestLoader.getManifest()).thenReturn(null);
+        assertNull(sscLoader.getSolaceServiceInfo(ssc.getId()));
+    }
+
+    @Test
+    public void testReflectionFreeDecoding() throws IOException {
+        SolaceServicesParser servicesParser = new SolaceServicesParser(new JsonFactory());
+        assertEquals(new HashSet<>(testSSCs), new HashSet<>(servicesParser.parse(testManifest)));
+
+        SolaceServiceCredentials ssc = testSSCs.get(0);
+        Map<String, SolaceServiceCredentials> sscs = new HashMap<>();
+        servicesParser.find(testManifest, new HashSet<>(Collections.singleton(ssc.getId())), sscs);
+        assertEquals(ssc, sscs.get(ssc.getId()));
+    }
+
+    @Test
+    public void testCheckpointHooks() {
+        sscLoader.setObjectMapper(new ObjectMapper());
+        sscLoader.preload();
+        SolaceServiceCredentials ssc = sscLoader.getSolaceServiceInfo();
+
+        sscLoader.beforeCheckpoint();
+        sscLoader.afterRestore();
+        Mockito.verify(manifestLoader, Mockito.times(3)).getManifest();
+
+        SolaceServiceCredentials restoredSsc = sscLoader.getSolaceServiceInfo();
+        assertEquals(ssc, restoredSsc);
+        assertNotSame("The snapshot should have been reloaded", ssc, restoredSsc);
+        assertFalse("org.crac is not on the test classpath", sscLoader.registerCheckpointHooks());
+    }
+
+    @Test
+    public void testParseEncodedManifest() throws IOException {
+        Set<SolaceServiceCredentials> expectedSSCs = new HashSet<>(testSSCs);
+        byte[] manifest = testManifest.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expectedSSCs, new HashSet<>(sscLoader.parse(new ByteArrayInputStream(manifest)).values()));
+
+        byte[] paddedManifest = new byte[manifest.length + 4];
+        System.arraycopy(manifest, 0, paddedManifest, 2, manifest.length);
+        assertEquals(expectedSSCs, new HashSet<>(sscLoader.parse(paddedManifest, 2, manifest.length).values()));
+
+        ByteBuffer heapBuffer = ByteBuffer.wrap(paddedManifest, 2, manifest.length);
+        assertEquals(expectedSSCs, new HashSet<>(sscLoader.parse(heapBuffer).values()));
+        assertEquals(2, heapBuffer.position());
+
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(manifest.length);
+        directBuffer.put(manifest).flip();
+        assertEquals(expectedSSCs, new HashSet<>(sscLoader.parse(directBuffer).values()));
+        assertEquals(0, directBuffer.position());
+        Mockito.verify(manifestLoader, Mockito.never()).getManifest();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMalformedEncodedManifest() {
+        byte[] manifest = testManifest.substring(0, testManifest.length() / 2).getBytes(StandardCharsets.UTF_8);
+        sscLoader.parse(ByteBuffer.wrap(manifest));
+    }
+
+    @Test
+    public void testMalformedManifestError() {
+        String malformedManifest = testManifest.replaceFirst("([}\\]])\\s*$", "x$1");
+        Mockito.when(manifestLoader.getManifest()).thenReturn(malformedManifest);
+        try {
+            sscLoader.getAllSolaceServiceInfo();
+            fail("Expected the manifest to be malformed");
+        } catch (SolaceManifestParseException e) {
+            assertNotNull(e.getCause());
+            assertEquals(malformedManifest.split("\n", -1).length, e.getLineNr());
+            assertTrue(e.getMessage().length() < 300);
+            for (SolaceServiceCredentials ssc : testSSCs) {
+                if (ssc.getClientPassword() != null) assertFalse(e.getMessage().contains(ssc.getClientPassword()));
+            }
+        }
+    }
+
+    @Test
+    public void testWrittenManifestRoundTrip() throws IOException {
+        Map<String, SolaceServiceCredentials> svcsCreds = sscLoader.getAllSolaceServiceInfo();
+        String manifest = new SolaceServiceCredentialsWriter(false).write(svcsCreds);
+        assertEquals(svcsCreds, sscLoader.parse(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8))));
+
+        Mockito.when(manifestLoader.getManifest()).thenReturn(manifest);
+        assertEquals(svcsCreds, sscLoader.getAllSolaceServiceInfo());
+    }
+
+    @Test
+    public void testConnectionProperties() {
+        SolaceConnectionProperties connectionProperties = sscLoader.getConnectionProperties();
+        for (SolaceServiceCredentials ssc : testSSCs) {
+            assertEquals(ssc.getSmfHost(), connectionProperties.getProperties(ssc.getId(),
+                    SolaceConnectionProperties.Protocol.JCSMP).getProperty(SolaceConnectionProperties.JCSMP_HOST));
+        }
+        assertSame("Unchanged services should not be recompiled",
+                connectionProperties, sscLoader.getConnectionProperties());
+    }
+
     @Test
     public void testManifestExists() {
         assertTrue(sscLoader.manifestExists());
@@ -147,6 +355,8 @@ public class SolaceCredentialsLoaderTest {
                     method.getParameterTypes().length > 0) {
                 continue;
             }
+            // Only set once moved off-heap
+            if (method.getReturnType() == SolaceSecret.class) continue;
             final Object value = method.invoke(ssc);
             if (expectOneNull && value == null) {
                 logger.info(String.format("Method %s got expected null value", method.getName()));
@@ -0,0 +1,159 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SolaceManifestCompressionTest {
+    @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private static final String MANIFEST = "[{\"id\": \"svc-a\", \"clientUsername\": \"user-a\"}, " +
+            "{\"id\": \"svc-b\", \"clientUsername\": \"user-b\"}]";
+
+    @Test
+    public void testUncompressed() throws IOException {
+        byte[] content = MANIFEST.getBytes();
+        assertFalse(SolaceManifestCompression.isCompressed(content, 0, content.length));
+        assertEquals(MANIFEST, decode(content));
+        assertArrayEquals(content, readAll(SolaceManifestCompression.decompress(new ByteArrayInputStream(content))));
+        assertEquals("", decode(new byte[0]));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        byte[] content = gzip(MANIFEST.getBytes());
+        assertTrue(SolaceManifestCompression.isCompressed(content, 0, content.length));
+        assertEquals(MANIFEST, decode(content));
+        assertArrayEquals(MANIFEST.getBytes(),
+                readAll(SolaceManifestCompression.decompress(new ByteArrayInputStream(content))));
+    }
+
+    @Test
+    public void testZstd() throws Exception {
+        Assume.assumeTrue(SolaceManifestCompression.isZstdSupported());
+        byte[] content = zstd(MANIFEST.getBytes());
+        assertTrue(SolaceManifestCompression.isCompressed(content, 0, content.length));
+        assertEquals(MANIFEST, decode(content));
+    }
+
+    @Test
+    public void testUtf8() throws IOException {
+        String manifest = "{\"id\": \"svc-\u00E9\u4E2D\", \"clientPassword\": \"p\u00E4ss\"}";
+        byte[] content = manifest.getBytes(StandardCharsets.UTF_8);
+        // Decoded as UTF-8 whatever the platform's default charset
+        assertEquals(manifest, decode(content));
+        assertEquals(manifest, decode(gzip(content)));
+    }
+
+    @Test
+    public void testCorruptGzip() {
+        try {
+            decode(new byte[]{(byte) 0x1F, (byte) 0x8B, 8, 0, 1, 2});
+            fail("Expected a corrupt manifest to be rejected");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testSourceLeftOpen() throws IOException {
+        final boolean[] closed = {false};
+        InputStream source = new FilterInputStream(new ByteArrayInputStream(gzip(MANIFEST.getBytes()))) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        SolaceManifestCompression.decompress(source).close();
+        assertFalse(closed[0]);
+    }
+
+    @Test
+    public void testParseStream() throws IOException {
+        SolaceServicesParser servicesParser = new SolaceServicesParser(ObjectMapperSingleton.getInstance());
+        List<SolaceServiceCredentials> svcsCreds =
+                servicesParser.parse(new ByteArrayInputStream(gzip(MANIFEST.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(2, svcsCreds.size());
+        assertEquals("user-b", svcsCreds.get(1).getClientUsername());
+
+        byte[] content = gzip(MANIFEST.getBytes(StandardCharsets.UTF_8));
+        Map<String, SolaceServiceCredentials> parsedCreds = new SolaceCredentialsLoader().parse(content, 0, content.length);
+        assertEquals("user-a", parsedCreds.get("svc-a").getClientUsername());
+    }
+
+    @Test
+    public void testReadFile() throws IOException {
+        Path file = tmpFolder.newFile(".solaceservices.gz").toPath();
+        Files.write(file, gzip(MANIFEST.getBytes()));
+        assertEquals(MANIFEST, SolaceManifestCompression.read(file));
+    }
+
+    @Test
+    public void testForgedGzipTrailer() throws IOException {
+        // Announces a manifest of nearly 4 GiB, which must not be presized
+        byte[] content = gzip(MANIFEST.getBytes());
+        Arrays.fill(content, content.length - 4, content.length, (byte) 0xFF);
+        try {
+            decode(content);
+            fail("Expected a corrupt trailer to be rejected");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static String decode(byte[] content) throws IOException {
+        return SolaceManifestCompression.decode(new ByteArrayInputStream(content), content.length);
+    }
+
+    private static byte[] gzip(byte[] contents) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(contents);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] zstd(byte[] contents) throws Exception {
+        // Reflective, like the decompressor, since zstd-jni is optional
+        Constructor<? extends OutputStream> constructor = Class.forName("com.github.luben.zstd.ZstdOutputStream")
+                .asSubclass(OutputStream.class).getConstructor(OutputStream.class);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = constructor.newInstance(compressed)) {
+            out.write(contents);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SolaceManifestDirectoryTest {
+    @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private SolaceManifestDirectory manifestDirectory;
+    private Path dir;
+
+    @Before
+    public void setup() throws IOException {
+        manifestDirectory = new SolaceManifestDirectory(new SolaceServicesParser(ObjectMapperSingleton.getInstance()));
+        dir = tmpFolder.newFolder(SolaceManifestLoader.MANIFEST_DIR_NAME).toPath();
+    }
+
+    @Test
+    public void testEmptyDirectory() {
+        assertTrue(manifestDirectory.getServicesCredentials(dir).isEmpty());
+    }
+
+    @Test
+    public void testMergeInFileNameOrder() throws IOException {
+        writeFile("a.json", "[{\"id\": \"svc-1\", \"clientUsername\": \"a\"}, {\"id\": \"svc-2\", \"clientUsername\": \"a\"}]");
+        writeFile("b.json", "{\"id\": \"svc-2\", \"clientUsername\": \"b\"}");
+        writeFile("c.txt", "{\"id\": \"svc-3\", \"clientUsername\": \"c\"}");
+
+        Map<String, SolaceServiceCredentials> svcsCreds = manifestDirectory.getServicesCredentials(dir);
+        assertEquals(2, svcsCreds.size());
+        assertEquals("a", svcsCreds.get("svc-1").getClientUsername());
+        assertEquals("b", svcsCreds.get("svc-2").getClientUsername());
+        assertNull(svcsCreds.get("svc-3"));
+    }
+
+    @Test
+    public void testMalformedFileIsolation() throws IOException {
+        writeFile("a.json", "{\"id\": \"svc-1\"}");
+        writeFile("b.json", "{\"id\": \"svc-2\"");
+
+        Map<String, SolaceServiceCredentials> svcsCreds = manifestDirectory.getServicesCredentials(dir);
+        assertEquals(1, svcsCreds.size());
+        assertTrue(svcsCreds.containsKey("svc-1"));
+    }
+
+    @Test
+    public void testReparseOnlyModifiedFiles() throws IOException {
+        writeFile("a.json", "{\"id\": \"svc-1\", \"clientUsername\": \"a\"}");
+        Path fileB = writeFile("b.json", "{\"id\": \"svc-2\", \"clientUsername\": \"b\"}");
+        Map<String, SolaceServiceCredentials> svcsCreds = manifestDirectory.getServicesCredentials(dir);
+
+        Map<String, SolaceServiceCredentials> reloadedCreds = manifestDirectory.getServicesCredentials(dir);
+        assertSame(svcsCreds, reloadedCreds);
+
+        FileTime lastModifiedTime = Files.getLastModifiedTime(fileB);
+        writeFile("b.json", "{\"id\": \"svc-2\", \"clientUsername\": \"B\"}");
+        Files.setLastModifiedTime(fileB, FileTime.fromMillis(lastModifiedTime.toMillis() + 1000));
+
+        reloadedCreds = manifestDirectory.getServicesCredentials(dir);
+        assertSame(svcsCreds.get("svc-1"), reloadedCreds.get("svc-1"));
+        assertNotSame(svcsCreds.get("svc-2"), reloadedCreds.get("svc-2"));
+        assertEquals("B", reloadedCreds.get("svc-2").getClientUsername());
+
+        Files.delete(fileB);
+        assertEquals(1, manifestDirectory.getServicesCredentials(dir).size());
+
+        // A new file changes the merged services even if none of the others changed
+        writeFile("c.json", "{\"id\": \"svc-3\"}");
+        assertEquals(2, manifestDirectory.getServicesCredentials(dir).size());
+    }
+
+    private Path writeFile(String name, String contents) throws IOException {
+        return Files.write(dir.resolve(name), contents.getBytes());
+    }
+}
@@ -0,0 +1,65 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SolaceManifestFormatTest {
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    public void testDetectList() {
+        assertDetected(SolaceManifestFormat.LIST, " \n\t[{\"id\": \"svc-1\"}]");
+        assertDetected(SolaceManifestFormat.LIST, "[");
+    }
+
+    @Test
+    public void testDetectVCAP() {
+        assertDetected(SolaceManifestFormat.VCAP, "{\"solace-pubsub\": [{\"name\": \"svc-1\"}]}");
+        assertDetected(SolaceManifestFormat.VCAP, "{\"other\": {\"solace-pubsub\": []}, \"solace-messaging\": []}");
+    }
+
+    @Test
+    public void testDetectSingle() {
+        assertDetected(SolaceManifestFormat.SINGLE, "{\"id\": \"svc-1\", \"smfHosts\": [\"tcp://localhost\"]}");
+        // Nested service keys are not at the top-level
+        assertDetected(SolaceManifestFormat.SINGLE, "{\"credentials\": {\"solace-pubsub\": []}}");
+        assertDetected(SolaceManifestFormat.SINGLE, "{}");
+    }
+
+    @Test
+    public void testDetectByteOrderMark() {
+        assertDetected(SolaceManifestFormat.LIST, "\uFEFF[]");
+    }
+
+    @Test
+    public void testUndetected() {
+        assertDetected(null, "");
+        assertDetected(null, "   ");
+        assertDetected(null, "\"solace-pubsub\"");
+        assertDetected(null, "{\"id\": \"svc-1\"");
+        assertDetected(null, "{\"id\": ");
+    }
+
+    @Test
+    public void testUndetectedEncoding() {
+        byte[] raw = "[]".getBytes(StandardCharsets.UTF_16BE);
+        assertNull(SolaceManifestFormat.detect(raw, 0, raw.length, jsonFactory));
+    }
+
+    @Test
+    public void testDetectWithinBuffer() {
+        byte[] raw = "xx{\"id\": \"svc-1\"}xx".getBytes(StandardCharsets.UTF_8);
+        assertEquals(SolaceManifestFormat.SINGLE, SolaceManifestFormat.detect(raw, 2, raw.length - 4, jsonFactory));
+    }
+
+    private void assertDetected(SolaceManifestFormat expected, String raw) {
+        assertEquals(expected, SolaceManifestFormat.detect(raw, jsonFactory));
+        byte[] encoded = raw.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected, SolaceManifestFormat.detect(encoded, 0, encoded.length, jsonFactory));
+    }
+}
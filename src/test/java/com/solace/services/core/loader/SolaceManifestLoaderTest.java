@@ -14,9 +14,11 @@ import org.junit.runners.Parameterized;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Arrays;
@@ -27,7 +29,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
+import static com.solace.services.core.loader.SolaceManifestLoader.MANIFEST_DIR_NAME;
 import static com.solace.services.core.loader.SolaceManifestLoader.MANIFEST_FILE_NAME;
 import static com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
 import static com.solace.services.core.loader.SolaceManifestLoader.SolaceEnvSource;
@@ -109,6 +113,44 @@ public class SolaceManifestLoaderTest {
         assertNull(manifestLoader.getManifest());
     }
 
+    @Test
+    public void testBlankSourcesManifests() {
+        assertTrue(manifestLoader.getManifests().isEmpty());
+    }
+
+    @Test
+    public void testManifestsPrecedence() {
+        Entry<SolaceEnvSource, PostProcessor> jvmProps = new SimpleEntry<>(SolaceEnvSource.JVM, PostProcessor.NONE);
+        Entry<SolaceEnvSource, PostProcessor> envProps = new SimpleEntry<>(SolaceEnvSource.ENV, PostProcessor.NONE);
+        assumeTrue("Not a JVM and ENV query", srcProperties.containsAll(Arrays.asList(jvmProps, envProps)));
+
+        String envManifest = testManifest.concat("abc");
+        System.setProperty(sourceName, testManifest);
+        environmentVariables.set(sourceName, envManifest);
+        assertEquals(Arrays.asList(testManifest, envManifest), manifestLoader.getManifests());
+    }
+
+    @Test
+    public void testParallelProbing() throws IOException {
+        Entry<SolaceEnvSource, PostProcessor> jvmProps = new SimpleEntry<>(SolaceEnvSource.JVM, PostProcessor.NONE);
+        Entry<SolaceEnvSource, PostProcessor> envProps = new SimpleEntry<>(SolaceEnvSource.ENV, PostProcessor.NONE);
+        assumeTrue("Not a JVM and ENV query", srcProperties.containsAll(Arrays.asList(jvmProps, envProps)));
+
+        manifestLoader.setParallelProbing(true);
+        System.setProperty("user.home", tmpFolder.getRoot().getAbsolutePath());
+        String fallbackManifest = testManifest.concat("xyz");
+        generateTestFile(MANIFEST_FILE_NAME, fallbackManifest);
+        assertEquals(fallbackManifest, manifestLoader.getManifest());
+
+        String envManifest = testManifest.concat("abc");
+        environmentVariables.set(sourceName, envManifest);
+        assertEquals(envManifest, manifestLoader.getManifest());
+
+        System.setProperty(sourceName, testManifest);
+        assertEquals(testManifest, manifestLoader.getManifest());
+        assertEquals(Arrays.asList(testManifest, envManifest, fallbackManifest), manifestLoader.getManifests());
+    }
+
     @Test
     public void testJvm() {
         Entry<SolaceEnvSource, PostProcessor> validTestProps = new SimpleEntry<>(SolaceEnvSource.JVM, PostProcessor.NONE);
@@ -132,6 +174,26 @@ public class SolaceManifestLoaderTest {
         assertEquals(manifestLoader.getManifest(), testManifest);
     }
 
+    @Test
+    public void testEnvSnapshot() {
+        Entry<SolaceEnvSource, PostProcessor> validTestProps = new SimpleEntry<>(SolaceEnvSource.JVM, PostProcessor.NONE);
+        assumeTrue("Not a JVM query", srcProperties.contains(validTestProps));
+
+        manifestLoader.setEnvSnapshotEnabled(true);
+        System.setProperty(sourceName, testManifest);
+        assertNull("The snapshot should not have been refreshed", manifestLoader.getManifest());
+
+        manifestLoader.refreshEnvSnapshot();
+        assertEquals(testManifest, manifestLoader.getManifest());
+
+        String newTestManifest = testManifest.concat("abc");
+        System.setProperty(sourceName, newTestManifest);
+        assertEquals(testManifest, manifestLoader.getManifest());
+
+        manifestLoader.setEnvSnapshotEnabled(false);
+        assertEquals(newTestManifest, manifestLoader.getManifest());
+    }
+
     @Test
     public void testUserHomeFallback() throws IOException {
         assumeTrue("Not a FILE query", srcProperties.containsAll(Arrays.asList(
@@ -199,6 +261,66 @@ public class SolaceManifestLoaderTest {
         assertEquals(manifestLoader.getManifest(), newTestManifest);
     }
 
+    @Test
+    public void testJvmCompressedFile() throws IOException {
+        Entry<SolaceEnvSource, PostProcessor> validTestProps = new SimpleEntry<>(SolaceEnvSource.JVM, PostProcessor.FILE);
+        assumeTrue("Not a JVM-FILE query", srcProperties.contains(validTestProps));
+
+        String dirPath = tmpFolder.getRoot().getAbsolutePath();
+        Path gzipFile = Paths.get(dirPath, MANIFEST_FILE_NAME + SolaceManifestCompression.GZIP_EXTENSION);
+        Files.write(gzipFile, gzip(testManifest.getBytes()));
+        System.setProperty(sourceName, dirPath);
+        assertEquals(testManifest, manifestLoader.getManifest());
+
+        // Compression is detected by content rather than by extension, and the uncompressed file takes precedence
+        String newTestManifest = testManifest.concat("abc");
+        Files.write(Paths.get(dirPath, MANIFEST_FILE_NAME), gzip(newTestManifest.getBytes()));
+        assertEquals(newTestManifest, manifestLoader.getManifest());
+
+        Files.write(gzipFile, new byte[]{(byte) 0x1F, (byte) 0x8B, 0, 0});
+        Files.delete(Paths.get(dirPath, MANIFEST_FILE_NAME));
+        assertNull("A corrupt manifest should be ignored", manifestLoader.getManifest());
+    }
+
+    @Test
+    public void testJvmManifestDirectory() throws IOException {
+        Entry<SolaceEnvSource, PostProcessor> validTestProps = new SimpleEntry<>(SolaceEnvSource.JVM, PostProcessor.FILE);
+        assumeTrue("Not a JVM-FILE query", srcProperties.contains(validTestProps));
+
+        System.setProperty(sourceName, tmpFolder.getRoot().getAbsolutePath());
+        assertNull(manifestLoader.getManifestDirectory());
+
+        File manifestDir = tmpFolder.newFolder(MANIFEST_DIR_NAME);
+        Files.write(manifestDir.toPath().resolve("services.txt"), testManifest.getBytes());
+        assertNull("A directory without manifest files should be skipped", manifestLoader.getManifestDirectory());
+
+        Files.write(manifestDir.toPath().resolve("services.json"), testManifest.getBytes());
+        assertEquals(manifestDir.toPath(), manifestLoader.getManifestDirectory());
+
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), testManifest);
+        assertNull("A higher-precedence source should take priority", manifestLoader.getManifestDirectory());
+    }
+
+    @Test
+    public void testManifestFileBeforeDirectory() throws IOException {
+        Entry<SolaceEnvSource, PostProcessor> validTestProps = new SimpleEntry<>(SolaceEnvSource.JVM, PostProcessor.FILE);
+        assumeTrue("Not a JVM-FILE query", srcProperties.contains(validTestProps));
+
+        File envDir = tmpFolder.newFolder("env");
+        File manifestDir = new File(envDir, MANIFEST_DIR_NAME);
+        assertTrue(manifestDir.mkdir());
+        Files.write(manifestDir.toPath().resolve("services.json"), testManifest.getBytes());
+        environmentVariables.set(sourceName, envDir.getAbsolutePath());
+        File jvmDir = tmpFolder.newFolder("jvm");
+        Path manifestFile = jvmDir.toPath().resolve(MANIFEST_FILE_NAME);
+        Files.write(manifestFile, testManifest.getBytes());
+        System.setProperty(sourceName, jvmDir.getAbsolutePath());
+
+        assertNull("A higher-precedence manifest file should take priority", manifestLoader.getManifestDirectory());
+        Files.write(manifestFile, new byte[0]);
+        assertEquals(manifestDir.toPath(), manifestLoader.getManifestDirectory());
+    }
+
     @Test
     public void testJvmFileNotExist() {
         Entry<SolaceEnvSource, PostProcessor> validTestProps = new SimpleEntry<>(SolaceEnvSource.JVM, PostProcessor.FILE);
@@ -278,6 +400,14 @@ public class SolaceManifestLoaderTest {
         return dirPath;
     }
 
+    private static byte[] gzip(byte[] contents) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(contents);
+        }
+        return compressed.toByteArray();
+    }
+
     private String setupFakeJVMPropsAndOSEnvs() {
         // No guarantee that any of the set props and env variables will have valid values
         // No guarantee that all of the set props and env variables will be valid queries
@@ -0,0 +1,134 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SolaceManifestParseExceptionTest {
+    private static final String SECRET = "s3cr3t";
+    private final JsonFactory jsonFactory = new JsonFactory().disable(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION);
+
+    @Test
+    public void testRedactedExcerpt() {
+        String raw = "{\"clientPassword\": \"" + SECRET + "\", \"a\": true, \"b\": null, \"c\": 5}";
+        assertEquals("{\"clientPassword\": \"***\", \"a\": true, \"b\": null, \"c\": ***}",
+                SolaceManifestParseException.excerpt(raw, raw.length() / 2));
+    }
+
+    @Test
+    public void testRedactedBareToken() {
+        String raw = "{\"clientPassword\": " + SECRET + "}";
+        assertEquals("{\"clientPassword\": ***}", SolaceManifestParseException.excerpt(raw, raw.length() - 1));
+    }
+
+    @Test
+    public void testRedactedValueBeforeColon() {
+        String raw = "{\"clientPassword\": \"" + SECRET + "\": 1}";
+        assertEquals("{\"clientPassword\": \"***\": ***}", SolaceManifestParseException.excerpt(raw, raw.length() - 4));
+
+        byte[] encoded = raw.getBytes(StandardCharsets.UTF_8);
+        assertEquals("{\"clientPassword\": \"***\": ***}",
+                SolaceManifestParseException.excerpt(encoded, 0, encoded.length, encoded.length - 4));
+    }
+
+    @Test
+    public void testBoundedExcerpt() {
+        StringBuilder raw = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) raw.append("{\"clientPassword\": \"").append(SECRET).append(i).append("\"},");
+        raw.append("]");
+
+        String excerpt = SolaceManifestParseException.excerpt(raw, raw.length() / 2);
+        assertTrue(excerpt.startsWith("...") && excerpt.endsWith("..."));
+        assertTrue(excerpt, excerpt.length() <= 2 * SolaceManifestParseException.EXCERPT_RADIUS + 6);
+        assertFalse(excerpt, excerpt.contains(SECRET));
+    }
+
+    @Test
+    public void testExcerptStartingWithinValue() {
+        String padding = "{\"clientPassword\": \"";
+        String value = SECRET + "\\\"" + repeat('x', SolaceManifestParseException.EXCERPT_RADIUS) + SECRET;
+        String raw = padding + value + "\", \"clientUsername\": \"user\"}";
+
+        for (int error = padding.length(); error < padding.length() + value.length(); error++) {
+            String excerpt = SolaceManifestParseException.excerpt(raw,
+                    error + SolaceManifestParseException.EXCERPT_RADIUS);
+            assertFalse(excerpt, excerpt.contains(SECRET) || excerpt.contains("x"));
+            assertFalse(excerpt, excerpt.contains("user\""));
+        }
+    }
+
+    @Test
+    public void testEncodedExcerpt() {
+        byte[] raw = ("xx{\"clientPassword\": \"" + SECRET + "\", \"name\": \"\u00E9\"}xx")
+                .getBytes(StandardCharsets.UTF_8);
+        assertEquals("{\"clientPassword\": \"***\", \"name\": \"***\"}",
+                SolaceManifestParseException.excerpt(raw, 2, raw.length - 4, 20));
+    }
+
+    @Test
+    public void testUndetectedEncodingExcerpt() {
+        byte[] raw = "{\"clientPassword\": 1}".getBytes(StandardCharsets.UTF_16BE);
+        assertNull(SolaceManifestParseException.excerpt(raw, 0, raw.length, 4));
+    }
+
+    @Test
+    public void testLocation() throws IOException {
+        String raw = "{\n  \"clientPassword\": \"" + SECRET + "\" x\n}";
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            while (parser.nextToken() != null) parser.skipChildren();
+            fail("Expected the manifest to be malformed");
+        } catch (JsonParseException e) {
+            SolaceManifestParseException parseException = new SolaceManifestParseException(e, raw);
+            assertSame(e, parseException.getCause());
+            assertEquals(2, parseException.getLineNr());
+            assertTrue(parseException.getColumnNr() > 0);
+            assertTrue(parseException.getCharOffset() > raw.indexOf(SECRET));
+            assertEquals(-1, parseException.getByteOffset());
+            assertNull(parseException.getLocation().contentReference().getRawContent());
+            assertNotNull(parseException.getExcerpt());
+            assertTrue(parseException.getMessage(), parseException.getMessage().contains("line 2"));
+            assertFalse(parseException.getMessage(), parseException.getMessage().contains(SECRET));
+        }
+    }
+
+    @Test
+    public void testEncodedLocation() throws IOException {
+        byte[] raw = ("  {\"clientPassword\": \"" + SECRET + "\" x}").getBytes(StandardCharsets.UTF_8);
+        try (JsonParser parser = jsonFactory.createParser(raw, 2, raw.length - 2)) {
+            while (parser.nextToken() != null) parser.skipChildren();
+            fail("Expected the manifest to be malformed");
+        } catch (JsonParseException e) {
+            SolaceManifestParseException parseException = new SolaceManifestParseException(e, raw, 2, raw.length - 2);
+            assertEquals(1, parseException.getLineNr());
+            assertTrue(parseException.getByteOffset() >= 0);
+            assertEquals("{\"clientPassword\": \"***\" ***}", parseException.getExcerpt());
+        }
+    }
+
+    @Test
+    public void testUnknownLocation() {
+        SolaceManifestParseException parseException = new SolaceManifestParseException(new IOException("Closed"), "{");
+        assertNull(parseException.getLocation());
+        assertEquals(-1, parseException.getLineNr());
+        assertNull(parseException.getExcerpt());
+        assertTrue(parseException.getMessage(), parseException.getMessage().endsWith(": Closed"));
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) builder.append(c);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,149 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.solace.services.core.loader.SolaceManifestLoader.PostProcessor;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnvSource;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SolaceServiceFilterTest {
+    @Rule public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
+    private static final String SERVICE_TEMPLATE = "{\"id\": \"%s\", \"msgVpnName\": \"%s\", " +
+            "\"smfHosts\": [\"tcp://%1$s\"], \"smfTlsHosts\": [\"tcps://%1$s\"], \"mqttUris\": [\"tcp://%1$s:1883\"], " +
+            "\"clientUsername\": \"user-%1$s\", \"clientPassword\": \"pass-%1$s\"}";
+    private static final String MANIFEST = String.format("[%s, %s, %s]",
+            String.format(SERVICE_TEMPLATE, "prod-a", "vpn-a"),
+            String.format(SERVICE_TEMPLATE, "prod-b", "vpn-b"),
+            String.format(SERVICE_TEMPLATE, "test-a", "vpn-a"));
+    private static final List<String> FIELD_NAMES = Arrays.asList("smfHosts", "clientUsername", "clientPassword");
+
+    private SolaceCredentialsLoader credentialsLoader;
+
+    @Before
+    public void setup() {
+        List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries = new ArrayList<>();
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLCAP_SERVICES, SolaceEnvSource.JVM, PostProcessor.NONE));
+        credentialsLoader = SolaceCredentialsLoader.createIsolated(new SolaceManifestLoader(searchQueries));
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), MANIFEST);
+    }
+
+    @Test
+    public void testProjection() {
+        credentialsLoader.setProjection(FIELD_NAMES, null);
+        Map<String, SolaceServiceCredentials> svcsCreds = credentialsLoader.getAllSolaceServiceInfo();
+        assertEquals(new HashSet<>(Arrays.asList("prod-a", "prod-b", "test-a")), svcsCreds.keySet());
+
+        SolaceServiceCredentials svcCreds = svcsCreds.get("prod-a");
+        assertEquals("tcp://prod-a", svcCreds.getSmfHost());
+        assertEquals("user-prod-a", svcCreds.getClientUsername());
+        assertEquals("pass-prod-a", svcCreds.getClientPassword());
+        // The ID fields are always decoded
+        assertEquals("vpn-a", svcCreds.getMsgVpnName());
+        assertNull(svcCreds.getSmfTlsHost());
+        assertNull(svcCreds.getMqttUris());
+
+        credentialsLoader.setProjection(null, null);
+        assertEquals("tcps://prod-a", credentialsLoader.getSolaceServiceInfo("prod-a").getSmfTlsHost());
+    }
+
+    @Test
+    public void testFilter() {
+        credentialsLoader.setProjection(FIELD_NAMES, SolaceServiceFilter.msgVpnName("vpn-a"));
+        assertEquals(new HashSet<>(Arrays.asList("prod-a", "test-a")), credentialsLoader.getAllSolaceServiceInfo().keySet());
+
+        credentialsLoader.setProjection(null, SolaceServiceFilter.idPrefix("prod-"));
+        // Parsed only until found, before any snapshot is taken
+        Map<String, SolaceServiceCredentials> found =
+                credentialsLoader.getSolaceServiceInfo(Arrays.asList("test-a", "prod-b"));
+        assertNull(found.get("test-a"));
+        assertEquals("prod-b", found.get("prod-b").getId());
+
+        assertEquals(new HashSet<>(Arrays.asList("prod-a", "prod-b")), credentialsLoader.getAllSolaceServiceInfo().keySet());
+        assertEquals("tcps://prod-b", credentialsLoader.getSolaceServiceInfo("prod-b").getSmfTlsHost());
+
+        List<String> iteratedIds = new ArrayList<>();
+        try (SolaceServicesIterator iterator = credentialsLoader.iterateSolaceServices()) {
+            while (iterator.hasNext()) iteratedIds.add(iterator.next().getId());
+        }
+        assertEquals(Arrays.asList("prod-a", "prod-b"), iteratedIds);
+    }
+
+    @Test
+    public void testFilterChangedManifest() {
+        credentialsLoader.setProjection(FIELD_NAMES, SolaceServiceFilter.msgVpnName("vpn-a"));
+        assertEquals(2, credentialsLoader.getAllSolaceServiceInfo().size());
+
+        // Only the changed services are bound anew into the next snapshot
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), MANIFEST.replace("pass-prod-b", "rotated-prod-b")
+                .replace("pass-test-a", "rotated-test-a"));
+        Map<String, SolaceServiceCredentials> svcsCreds = credentialsLoader.getAllSolaceServiceInfo();
+        assertEquals(new HashSet<>(Arrays.asList("prod-a", "test-a")), svcsCreds.keySet());
+        assertEquals("rotated-test-a", svcsCreds.get("test-a").getClientPassword());
+    }
+
+    @Test
+    public void testFilterFormats() throws IOException {
+        SolaceServicesParser servicesParser = new SolaceServicesParser(new JsonFactory(),
+                new HashSet<>(FIELD_NAMES), SolaceServiceFilter.idPrefix("svc-"));
+        List<SolaceServiceCredentials> vcapCreds = servicesParser.parse("{\"solace-pubsub\": [" +
+                "{\"name\": \"svc-a\", \"credentials\": {\"smfTlsHosts\": [\"tcps://a\"]}}, " +
+                "{\"name\": \"other\", \"credentials\": {}}]}");
+        assertEquals(1, vcapCreds.size());
+        assertEquals("svc-a", vcapCreds.get(0).getId());
+        assertNull(vcapCreds.get(0).getSmfTlsHost());
+
+        assertTrue(servicesParser.parse("{\"msgVpnName\": \"vpn\", \"activeManagementHostname\": \"host\"}").isEmpty());
+        assertFalse(servicesParser.parse("{\"id\": \"svc-a\"}").isEmpty());
+    }
+
+    @Test
+    public void testWipeDiscardedSecrets() throws IOException {
+        System.setProperty(SolaceCredentialsLoader.OFF_HEAP_SECRETS_PROPERTY, "true");
+        final List<SolaceServiceCredentialsImpl> seen = new ArrayList<>();
+        SolaceServicesParser servicesParser = new SolaceServicesParser(new JsonFactory(), null,
+                new SolaceServiceFilter() {
+                    @Override
+                    public boolean accept(SolaceServiceCredentials svcCreds) {
+                        seen.add((SolaceServiceCredentialsImpl) svcCreds);
+                        return !svcCreds.getId().startsWith("test-");
+                    }
+                });
+
+        Map<String, SolaceServiceCredentials> found = new HashMap<>();
+        servicesParser.find(MANIFEST, new HashSet<>(Arrays.asList("prod-b", "test-a")), found);
+        assertEquals(Collections.singleton("prod-b"), found.keySet());
+        assertEquals(3, seen.size());
+        // Both the unrequested and the filtered-out services are wiped
+        assertTrue(seen.get(0).getClientPasswordSecret().isWiped());
+        assertFalse(seen.get(1).getClientPasswordSecret().isWiped());
+        assertTrue(seen.get(2).getClientPasswordSecret().isWiped());
+        assertEquals("pass-prod-b", found.get("prod-b").getClientPassword());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() {
+        credentialsLoader.setProjection(Arrays.asList("smfHosts", "smfHost"), null);
+    }
+}
@@ -0,0 +1,117 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.loader.SolaceManifestLoader.PostProcessor;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnvSource;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolaceServicesCliTest {
+    @Rule public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+    @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private static final String MANIFEST = "[" +
+            "{\"id\": \"svc-a\", \"clientUsername\": \"user-a\", \"clientPassword\": \"secret-a\"}, " +
+            "{\"id\": \"svc-b\", \"clientUsername\": \"user-b\", \"clientPassword\": \"secret-b\"}, " +
+            "{\"id\": \"svc-a\", \"clientUsername\": \"user-c\", \"clientPassword\": \"secret-c\"}]";
+
+    private SolaceManifestLoader manifestLoader;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Before
+    public void setup() {
+        List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries = new ArrayList<>();
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLCAP_SERVICES, SolaceEnvSource.JVM, PostProcessor.NONE));
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLACE_SERVICES_HOME, SolaceEnvSource.JVM, PostProcessor.FILE));
+        manifestLoader = new SolaceManifestLoader(searchQueries);
+        System.setProperty("user.home", tmpFolder.getRoot().getAbsolutePath());
+    }
+
+    @Test
+    public void testInspect() {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), MANIFEST);
+        assertEquals(SolaceServicesCli.EXIT_OK, run("inspect"));
+
+        String report = getOutput(out);
+        assertTrue(report, report.contains("Source:         SOLCAP_SERVICES (JVM property)"));
+        assertTrue(report, report.contains(String.format("Manifest:       %d chars", MANIFEST.length())));
+        assertTrue(report, report.contains("Services:       3"));
+        assertTrue(report, report.contains("Duplicate IDs:  svc-a (x2)"));
+        for (String stage : new String[]{"read", "parse", "index", "load"}) {
+            assertTrue(report, report.contains(System.lineSeparator() + stage + " "));
+        }
+        assertFalse(report, report.contains("warm"));
+
+        // The last of the duplicates is resolved, and no password is printed
+        assertTrue(report, report.contains("user-c"));
+        assertFalse(report, report.contains("user-a"));
+        assertFalse(report, report.contains("secret"));
+    }
+
+    @Test
+    public void testInspectFile() throws IOException {
+        Path file = tmpFolder.getRoot().toPath().resolve(SolaceManifestLoader.MANIFEST_FILE_NAME);
+        Files.write(file, MANIFEST.getBytes());
+        System.setProperty(SolaceEnv.SOLACE_SERVICES_HOME.name(), tmpFolder.getRoot().getAbsolutePath());
+        assertEquals(SolaceServicesCli.EXIT_OK, run("inspect", "--iterations", "3"));
+
+        String report = getOutput(out);
+        assertTrue(report, report.contains("Source:         SOLACE_SERVICES_HOME (JVM property)"));
+        assertTrue(report, report.contains(String.format("File:           %s (%d bytes)", file, MANIFEST.length())));
+        assertTrue(report, report.contains("warm ms over 2 iterations"));
+    }
+
+    @Test
+    public void testInspectMalformedManifest() {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), "[{\"id\": \"svc-a\", \"clientPassword\": \"secret-a\"");
+        assertEquals(SolaceServicesCli.EXIT_FAILED, run("inspect"));
+
+        String report = getOutput(out);
+        assertTrue(report, report.contains("line 1"));
+        assertFalse(report, report.contains("secret"));
+    }
+
+    @Test
+    public void testInspectNoManifest() {
+        assertEquals(SolaceServicesCli.EXIT_FAILED, run("inspect"));
+        assertTrue(getOutput(out).contains("No manifest found"));
+    }
+
+    @Test
+    public void testUsage() {
+        assertEquals(SolaceServicesCli.EXIT_USAGE, run());
+        assertEquals(SolaceServicesCli.EXIT_USAGE, run("inspect", "--iterations", "0"));
+        assertEquals(SolaceServicesCli.EXIT_USAGE, run("inspect", "--verbose"));
+        assertTrue(getOutput(err).contains("Usage:"));
+    }
+
+    private int run(String... args) {
+        try (PrintStream outStream = new PrintStream(out, true);
+             PrintStream errStream = new PrintStream(err, true)) {
+            return SolaceServicesCli.run(args, manifestLoader, outStream, errStream);
+        }
+    }
+
+    private static String getOutput(ByteArrayOutputStream stream) {
+        return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
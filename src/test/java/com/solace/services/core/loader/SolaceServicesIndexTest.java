@@ -0,0 +1,149 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SolaceServicesIndexTest {
+    @Test
+    public void testLookup() {
+        List<SolaceServiceCredentials> svcsCreds = createServices(1000);
+        SolaceServicesIndex index = SolaceServicesIndex.of(svcsCreds);
+
+        assertEquals(svcsCreds.size(), index.size());
+        for (SolaceServiceCredentials creds : svcsCreds) {
+            // A copy of the ID, so that the lookup does not succeed on reference equality alone
+            String id = new String(creds.getId());
+            assertSame(creds, index.get(id));
+            assertTrue(index.containsKey(id));
+        }
+        assertNull(index.get("svc-1000"));
+        assertFalse(index.containsKey("svc-1000"));
+        assertNull(index.get(1));
+    }
+
+    @Test
+    public void testMapView() {
+        List<SolaceServiceCredentials> svcsCreds = createServices(100);
+        Map<String, SolaceServiceCredentials> expected = new HashMap<>();
+        for (SolaceServiceCredentials creds : svcsCreds) expected.put(creds.getId(), creds);
+        SolaceServicesIndex index = SolaceServicesIndex.of(svcsCreds);
+
+        assertEquals(expected, index);
+        assertEquals(index, expected);
+        assertEquals(expected.hashCode(), index.hashCode());
+        assertEquals(expected.keySet(), index.keySet());
+        assertEquals(expected.entrySet(), index.entrySet());
+        assertEquals(new HashSet<>(svcsCreds), new HashSet<>(index.values()));
+        assertTrue(index.entrySet().contains(new AbstractMap.SimpleEntry<>("svc-5", svcsCreds.get(5))));
+        assertFalse(index.entrySet().contains(new AbstractMap.SimpleEntry<>("svc-5", svcsCreds.get(6))));
+    }
+
+    @Test
+    public void testToString() {
+        List<SolaceServiceCredentials> svcsCreds = createServices(1);
+        SolaceServiceCredentials creds = svcsCreds.get(0);
+        assertEquals(Collections.singletonMap(creds.getId(), creds).toString(),
+                SolaceServicesIndex.of(svcsCreds).toString());
+        assertEquals("{}", SolaceServicesIndex.of(Collections.<SolaceServiceCredentials>emptyList()).toString());
+    }
+
+    @Test
+    public void testMapOf() {
+        List<SolaceServiceCredentials> svcsCreds = createServices(100);
+        svcsCreds.add(createService("svc-5"));
+        Map<String, SolaceServiceCredentials> svcsCredsMap = SolaceServicesIndex.mapOf(svcsCreds);
+        assertFalse(svcsCredsMap instanceof SolaceServicesIndex);
+        assertEquals(SolaceServicesIndex.of(svcsCreds), svcsCredsMap);
+        assertSame(svcsCreds.get(100), svcsCredsMap.get("svc-5"));
+        assertTrue(SolaceServicesIndex.mapOf(Collections.<SolaceServiceCredentials>emptyList()).isEmpty());
+
+        // Only enough services are indexed
+        assertTrue(SolaceServicesIndex.mapOf(createServices(SolaceServicesIndex.MIN_INDEXED_SERVICES))
+                instanceof SolaceServicesIndex);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMapOfReadOnly() {
+        SolaceServicesIndex.mapOf(createServices(1)).put("svc-a", createService("svc-a"));
+    }
+
+    @Test
+    public void testDuplicateIds() {
+        SolaceServiceCredentials first = createService("svc-a");
+        SolaceServiceCredentials other = createService("svc-b");
+        SolaceServiceCredentials last = createService("svc-a");
+        SolaceServicesIndex index = SolaceServicesIndex.of(Arrays.asList(first, other, last));
+
+        assertEquals(2, index.size());
+        assertSame(last, index.get("svc-a"));
+        assertEquals(new HashSet<>(Arrays.asList("svc-a", "svc-b")), index.keySet());
+    }
+
+    @Test
+    public void testNullId() {
+        SolaceServiceCredentials unnamed = createService(null);
+        SolaceServicesIndex index = SolaceServicesIndex.of(Arrays.asList(createService("svc-a"), unnamed));
+
+        assertSame(unnamed, index.get(null));
+        assertTrue(index.containsKey(null));
+    }
+
+    @Test
+    public void testCopyOf() {
+        Map<String, SolaceServiceCredentials> svcsCreds = new HashMap<>();
+        svcsCreds.put("alias", createService("svc-a"));
+        SolaceServicesIndex index = SolaceServicesIndex.copyOf(svcsCreds);
+
+        assertEquals(svcsCreds, index);
+        assertSame(index, SolaceServicesIndex.copyOf(index));
+    }
+
+    @Test
+    public void testEmpty() {
+        SolaceServicesIndex index = SolaceServicesIndex.of(Collections.<SolaceServiceCredentials>emptyList());
+        assertTrue(index.isEmpty());
+        assertNull(index.get("svc-a"));
+        assertFalse(index.entrySet().iterator().hasNext());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiable() {
+        SolaceServicesIndex.of(createServices(1)).put("svc-a", createService("svc-a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiableIterator() {
+        Iterator<SolaceServiceCredentials> iterator = SolaceServicesIndex.of(createServices(1)).values().iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+    private static List<SolaceServiceCredentials> createServices(int count) {
+        List<SolaceServiceCredentials> svcsCreds = new ArrayList<>();
+        for (int i = 0; i < count; i++) svcsCreds.add(createService("svc-" + i));
+        return svcsCreds;
+    }
+
+    private static SolaceServiceCredentials createService(String id) {
+        SolaceServiceCredentialsImpl creds = new SolaceServiceCredentialsImpl();
+        creds.setId(id);
+        return creds;
+    }
+}
@@ -0,0 +1,153 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.solace.services.core.loader.SolaceManifestLoader.PostProcessor;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnvSource;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.runners.Parameterized.Parameter;
+import static org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class SolaceServicesIteratorTest {
+    @Rule public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+    @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private static final String LIST_MANIFEST = "[" +
+            "{\"id\": \"svc-a\", \"clientUsername\": \"user-a\"}, " +
+            "{\"msgVpnName\": \"vpn-b\", \"activeManagementHostname\": \"host-b\"}, " +
+            "{\"id\": \"svc-a\", \"clientUsername\": \"user-c\"}]";
+    private static final String VCAP_MANIFEST = "{" +
+            "\"user-provided\": [{\"name\": \"other\", \"credentials\": {\"uri\": \"http://localhost\"}}], " +
+            "\"solace-messaging\": [{\"name\": \"svc-m\", \"credentials\": {}}], " +
+            "\"solace-pubsub\": [" +
+            "{\"name\": \"svc-a\", \"credentials\": {\"clientUsername\": \"user-a\"}}, " +
+            "{\"credentials\": {\"id\": \"svc-b\"}}, " +
+            "{\"credentials\": {\"msgVpnName\": \"vpn-c\", \"activeManagementHostname\": \"host-c\"}}]}";
+    private static final String SINGLE_MANIFEST = "{\"msgVpnName\": \"vpn-a\", \"activeManagementHostname\": \"host-a\"}";
+
+    @Parameter(0) public String testName;
+    @Parameter(1) public SolaceServicesParser servicesParser;
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> parameterData() {
+        return Arrays.asList(
+                new Object[]{"DataBinding", new SolaceServicesParser(ObjectMapperSingleton.getInstance())},
+                new Object[]{"Decoder", new SolaceServicesParser(new JsonFactory())});
+    }
+
+    @Test
+    public void testMatchesParse() throws IOException {
+        for (String manifest : new String[]{LIST_MANIFEST, VCAP_MANIFEST, SINGLE_MANIFEST}) {
+            assertEquals(manifest, servicesParser.parse(manifest), toList(servicesParser.iterate(manifest)));
+        }
+
+        assertEquals(Arrays.asList("svc-a", "vpn-b@host-b", "svc-a"), getIds(servicesParser.iterate(LIST_MANIFEST)));
+        assertEquals(Arrays.asList("svc-a", "svc-b", "vpn-c@host-c"), getIds(servicesParser.iterate(VCAP_MANIFEST)));
+        assertEquals(Arrays.asList("vpn-a@host-a"), getIds(servicesParser.iterate(SINGLE_MANIFEST)));
+    }
+
+    @Test
+    public void testVCAPServicesPrecedence() throws IOException {
+        assertEquals(Arrays.asList("svc-m"), getIds(servicesParser.iterate(
+                "{\"solace-pubsub\": null, \"solace-messaging\": [{\"name\": \"svc-m\", \"credentials\": {}}]}")));
+        assertEquals(Arrays.asList("svc-m"), getIds(servicesParser.iterate(
+                "{\"solace-messaging\": [{\"name\": \"svc-m\", \"credentials\": {}}], \"other\": {}}")));
+        assertFalse(servicesParser.iterate("{\"solace-pubsub\": null}").hasNext());
+        assertFalse(servicesParser.iterate("[]").hasNext());
+    }
+
+    @Test
+    public void testIterateFile() throws IOException {
+        Path file = tmpFolder.newFile().toPath();
+        Files.write(file, VCAP_MANIFEST.getBytes());
+        assertEquals(servicesParser.parse(VCAP_MANIFEST), toList(servicesParser.iterate(file)));
+
+        Path compressedFile = tmpFolder.newFile().toPath();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressedFile))) {
+            out.write(LIST_MANIFEST.getBytes());
+        }
+        assertEquals(servicesParser.parse(LIST_MANIFEST), toList(servicesParser.iterate(compressedFile)));
+    }
+
+    @Test
+    public void testMalformedService() throws IOException {
+        SolaceServicesIterator iterator = servicesParser.iterate(
+                "[{\"id\": \"svc-a\", \"clientPassword\": \"secret-a\"}, {\"id\": \"svc-b\", \"smfHosts\": {}}]");
+        assertEquals("svc-a", iterator.next().getId());
+
+        try {
+            iterator.next();
+            fail("Expected a " + SolaceManifestParseException.class.getSimpleName());
+        } catch (SolaceManifestParseException e) {
+            assertTrue(e.getMessage(), e.getExcerpt() != null && e.getExcerpt().contains("smfHosts"));
+            assertFalse(e.getMessage(), e.getMessage().contains("secret-a"));
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        SolaceServicesIterator iterator = servicesParser.iterate(LIST_MANIFEST);
+        assertTrue(iterator.hasNext());
+        iterator.close();
+        assertTrue("A service read ahead of closing is still returned", iterator.hasNext());
+        iterator.next();
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testIterateEnvironment() throws IOException {
+        List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries = new ArrayList<>();
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLCAP_SERVICES, SolaceEnvSource.JVM, PostProcessor.NONE));
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLACE_SERVICES_HOME, SolaceEnvSource.JVM, PostProcessor.FILE));
+        SolaceCredentialsLoader credentialsLoader =
+                SolaceCredentialsLoader.createIsolated(new SolaceManifestLoader(searchQueries));
+        System.setProperty("user.home", tmpFolder.getRoot().getAbsolutePath());
+        assertFalse(credentialsLoader.iterateSolaceServices().hasNext());
+
+        Files.write(tmpFolder.getRoot().toPath().resolve(SolaceManifestLoader.MANIFEST_FILE_NAME), VCAP_MANIFEST.getBytes());
+        System.setProperty(SolaceEnv.SOLACE_SERVICES_HOME.name(), tmpFolder.getRoot().getAbsolutePath());
+        assertEquals(Arrays.asList("svc-a", "svc-b", "vpn-c@host-c"), getIds(credentialsLoader.iterateSolaceServices()));
+
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), LIST_MANIFEST);
+        assertEquals(Arrays.asList("svc-a", "vpn-b@host-b", "svc-a"), getIds(credentialsLoader.iterateSolaceServices()));
+    }
+
+    private static List<SolaceServiceCredentials> toList(SolaceServicesIterator iterator) {
+        List<SolaceServiceCredentials> svcsCreds = new ArrayList<>();
+        try (SolaceServicesIterator closeable = iterator) {
+            while (closeable.hasNext()) svcsCreds.add(closeable.next());
+        }
+        return svcsCreds;
+    }
+
+    private static List<String> getIds(SolaceServicesIterator iterator) {
+        List<String> ids = new ArrayList<>();
+        for (SolaceServiceCredentials svcCreds : toList(iterator)) ids.add(svcCreds.getId());
+        return ids;
+    }
+}
@@ -0,0 +1,195 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.loader.SolaceManifestLoader.PostProcessor;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnvSource;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SolaceServicesRefresherTest {
+    @Rule public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
+    private SolaceCredentialsLoader credentialsLoader;
+
+    @Before
+    public void setup() {
+        List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries = new ArrayList<>();
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLCAP_SERVICES, SolaceEnvSource.JVM, PostProcessor.NONE));
+        credentialsLoader = SolaceCredentialsLoader.createIsolated(new SolaceManifestLoader(searchQueries));
+        setManifest("user-a");
+    }
+
+    @After
+    public void teardown() {
+        if (credentialsLoader != null) credentialsLoader.close();
+    }
+
+    @Test
+    public void testServeUntilRefreshed() {
+        credentialsLoader.setRefreshAhead(1, TimeUnit.HOURS);
+        Map<String, SolaceServiceCredentials> svcsCreds = credentialsLoader.getServicesCredentials();
+        assertEquals("user-a", svcsCreds.get("svc-a").getClientUsername());
+
+        setManifest("user-b");
+        assertSame(svcsCreds, credentialsLoader.getServicesCredentials());
+        assertEquals("user-a", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+        assertEquals("user-a", credentialsLoader.getSolaceServiceInfo(Collections.singletonList("svc-a"))
+                .get("svc-a").getClientUsername());
+
+        assertTrue(credentialsLoader.getRefresher().refresh());
+        assertEquals("user-b", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+    }
+
+    @Test
+    public void testFailedRefresh() {
+        credentialsLoader.setRefreshAhead(1, TimeUnit.HOURS);
+        SolaceServicesRefresher refresher = credentialsLoader.getRefresher();
+        Map<String, SolaceServiceCredentials> svcsCreds = credentialsLoader.getServicesCredentials();
+
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), "[{\"id\": \"svc-a\"");
+        assertFalse(refresher.refresh());
+        assertFalse(refresher.refresh());
+        assertEquals(2, refresher.getFailureCount());
+        assertSame(svcsCreds, credentialsLoader.getServicesCredentials());
+
+        setManifest("user-b");
+        assertTrue(refresher.refresh());
+        assertEquals(0, refresher.getFailureCount());
+        assertEquals("user-b", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws InterruptedException {
+        credentialsLoader.setRefreshAhead(20, TimeUnit.MILLISECONDS);
+        assertEquals("user-a", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+
+        setManifest("user-b");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!"user-b".equals(credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername())) {
+            assertTrue("The services were not refreshed in time", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testDisable() {
+        credentialsLoader.setRefreshAhead(1, TimeUnit.HOURS);
+        credentialsLoader.getServicesCredentials();
+        credentialsLoader.setRefreshAhead(0, TimeUnit.HOURS);
+        assertNull(credentialsLoader.getRefresher());
+
+        setManifest("user-b");
+        assertEquals("user-b", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+    }
+
+    @Test
+    public void testBeforeCheckpoint() {
+        credentialsLoader.setRefreshAhead(1, TimeUnit.HOURS);
+        credentialsLoader.getServicesCredentials();
+        credentialsLoader.beforeCheckpoint();
+
+        setManifest("user-b");
+        assertEquals("user-b", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+    }
+
+    @Test
+    public void testClose() {
+        credentialsLoader.setRefreshAhead(1, TimeUnit.HOURS);
+        credentialsLoader.getServicesCredentials();
+        credentialsLoader.close();
+        assertNull(credentialsLoader.getRefresher());
+
+        setManifest("user-b");
+        assertEquals("user-b", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+    }
+
+    @Test
+    public void testStopOnceCollected() throws InterruptedException {
+        credentialsLoader.setRefreshAhead(1, TimeUnit.HOURS);
+        SolaceServicesRefresher refresher = credentialsLoader.getRefresher();
+        credentialsLoader.getServicesCredentials();
+        credentialsLoader = null;
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (refresher.refresh()) {
+            assertTrue("The loader was not garbage collected in time", System.nanoTime() < deadline);
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testRefreshAfterError() throws InterruptedException {
+        List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries = new ArrayList<>();
+        searchQueries.add(new ImmutableTriple<>(SolaceEnv.SOLCAP_SERVICES, SolaceEnvSource.JVM, PostProcessor.NONE));
+        final AtomicBoolean failing = new AtomicBoolean();
+        credentialsLoader = SolaceCredentialsLoader.createIsolated(new SolaceManifestLoader(searchQueries) {
+            @Override
+            public String getManifest() {
+                if (failing.getAndSet(false)) throw new AssertionError("Not a RuntimeException");
+                return super.getManifest();
+            }
+        });
+        credentialsLoader.setRefreshAhead(20, TimeUnit.MILLISECONDS);
+        assertEquals("user-a", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+
+        failing.set(true);
+        setManifest("user-b");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!"user-b".equals(credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername())) {
+            assertTrue("The services were not refreshed in time", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        assertFalse(failing.get());
+    }
+
+    @Test
+    public void testDelay() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(10);
+        long maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(SolaceServicesRefresher.MAX_BACKOFF_MILLIS);
+        assertEquals(intervalNanos, SolaceServicesRefresher.getDelayNanos(intervalNanos, 0, 0));
+        assertEquals(intervalNanos * 9 / 10, SolaceServicesRefresher.getDelayNanos(intervalNanos, 0, 1), 1);
+
+        // Retries start sooner than the next refresh, then back off exponentially
+        long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(SolaceServicesRefresher.INITIAL_BACKOFF_MILLIS);
+        assertEquals(initialBackoffNanos, SolaceServicesRefresher.getDelayNanos(intervalNanos, 1, 0));
+        assertEquals(initialBackoffNanos * 9 / 10, SolaceServicesRefresher.getDelayNanos(intervalNanos, 1, 1), 1);
+        assertEquals(initialBackoffNanos * 4, SolaceServicesRefresher.getDelayNanos(intervalNanos, 3, 0));
+        assertEquals(maxBackoffNanos, SolaceServicesRefresher.getDelayNanos(intervalNanos, 1000, 0));
+
+        // Shorter intervals are retried no later than their next refresh
+        long shortIntervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(shortIntervalNanos, SolaceServicesRefresher.getDelayNanos(shortIntervalNanos, 1, 0));
+        assertEquals(shortIntervalNanos * 2, SolaceServicesRefresher.getDelayNanos(shortIntervalNanos, 2, 0));
+
+        // Longer intervals still back off, and are capped regardless of the interval
+        long longIntervalNanos = TimeUnit.HOURS.toNanos(1);
+        assertEquals(initialBackoffNanos, SolaceServicesRefresher.getDelayNanos(longIntervalNanos, 1, 0));
+        assertEquals(initialBackoffNanos * 16, SolaceServicesRefresher.getDelayNanos(longIntervalNanos, 5, 0));
+        assertEquals(maxBackoffNanos, SolaceServicesRefresher.getDelayNanos(longIntervalNanos, 1000, 0));
+    }
+
+    private static void setManifest(String clientUsername) {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(),
+                String.format("[{\"id\": \"svc-a\", \"clientUsername\": \"%s\"}]", clientUsername));
+    }
+}
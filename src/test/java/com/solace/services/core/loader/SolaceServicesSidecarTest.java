@@ -0,0 +1,384 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.loader.SolaceManifestLoader.PostProcessor;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnv;
+import com.solace.services.core.loader.SolaceManifestLoader.SolaceEnvSource;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+import com.solace.services.core.model.SolaceServiceCredentialsWriter;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SolaceServicesSidecarTest {
+    @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+    @Rule public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
+    private SolaceServicesSidecar sidecar;
+    private Path secretFile;
+
+    @Before
+    public void setup() throws IOException {
+        secretFile = tmpFolder.newFile("sidecar.secret").toPath();
+        Files.write(secretFile, "shared-secret".getBytes(StandardCharsets.UTF_8));
+        System.setProperty(SolaceEnv.SOLACE_SERVICES_SIDECAR_SECRET.name(), secretFile.toString());
+    }
+
+    @After
+    public void teardown() throws IOException {
+        if (sidecar != null) sidecar.close();
+    }
+
+    @Test
+    public void testEncodeDecode() throws IOException {
+        SolaceServiceCredentialsImpl svcCreds = createService("svc-a", "user-a");
+        svcCreds.setClientPassword("password-a");
+        svcCreds.setManagementUsername("admin");
+        svcCreds.setManagementPassword("\u00e9t\u00e9");
+        svcCreds.setDmrClusterName("cluster");
+        svcCreds.setDmrClusterPassword("cluster-password");
+        svcCreds.setSmfTlsHosts(Arrays.asList("tcps://host-a:55443", null));
+        svcCreds.setRestUris(Collections.<String>emptyList());
+        SolaceServiceCredentialsImpl emptySvcCreds = new SolaceServiceCredentialsImpl();
+        List<SolaceServiceCredentials> svcsCreds = Arrays.<SolaceServiceCredentials>asList(svcCreds, emptySvcCreds);
+
+        byte[] payload = SolaceServicesSidecarProtocol.encode(svcsCreds);
+        assertEquals(svcsCreds, SolaceServicesSidecarProtocol.decode(ByteBuffer.wrap(payload), false));
+
+        List<SolaceServiceCredentials> offHeapCreds = SolaceServicesSidecarProtocol.decode(ByteBuffer.wrap(payload), true);
+        assertEquals(svcsCreds, offHeapCreds);
+        ((SolaceServiceCredentialsImpl) offHeapCreds.get(0)).wipeSecrets();
+    }
+
+    @Test
+    public void testTruncatedPayload() {
+        byte[] payload = SolaceServicesSidecarProtocol.encode(
+                Collections.singletonList(createService("svc-a", "user-a")));
+        try {
+            SolaceServicesSidecarProtocol.decode(ByteBuffer.wrap(Arrays.copyOf(payload, payload.length - 3)), false);
+            fail("Expected a truncated payload to be rejected");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testFetch() throws IOException {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        sidecar = startSidecar("tcp://127.0.0.1:0");
+        SolaceServicesSidecarClient client = new SolaceServicesSidecarClient(sidecar.getAddress());
+
+        Map<String, SolaceServiceCredentials> svcsCreds = client.getServicesCredentials();
+        assertEquals(1, svcsCreds.size());
+        assertEquals("user-a", svcsCreds.get("svc-a").getClientUsername());
+        assertSame(svcsCreds, client.getServicesCredentials());
+
+        client.clear();
+        Map<String, SolaceServiceCredentials> refetchedCreds = client.getServicesCredentials();
+        assertNotSame(svcsCreds, refetchedCreds);
+        assertEquals(svcsCreds, refetchedCreds);
+    }
+
+    @Test
+    public void testManifestChange() throws IOException {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        sidecar = startSidecar("tcp://127.0.0.1:0");
+        // Revalidated on every lookup
+        SolaceServicesSidecarClient client = new SolaceServicesSidecarClient(sidecar.getAddress(), 0);
+        Map<String, SolaceServiceCredentials> svcsCreds = client.getServicesCredentials();
+
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-b"));
+        sidecar.poll();
+        Map<String, SolaceServiceCredentials> changedCreds = client.getServicesCredentials();
+        assertNotSame(svcsCreds, changedCreds);
+        assertEquals("user-b", changedCreds.get("svc-a").getClientUsername());
+        assertSame(changedCreds, client.getServicesCredentials());
+    }
+
+    @Test
+    public void testRevalidateInterval() throws IOException, InterruptedException {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        sidecar = startSidecar("tcp://127.0.0.1:0");
+        SolaceServicesSidecarClient client = new SolaceServicesSidecarClient(sidecar.getAddress(), 200);
+        Map<String, SolaceServiceCredentials> svcsCreds = client.getServicesCredentials();
+
+        // Served without any round-trip until revalidated, even once the sidecar is gone
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-b"));
+        sidecar.poll();
+        assertSame(svcsCreds, client.getServicesCredentials());
+
+        Thread.sleep(300);
+        assertEquals("user-b", client.getServicesCredentials().get("svc-a").getClientUsername());
+
+        sidecar.close();
+        sidecar = null;
+        assertEquals("user-b", client.getServicesCredentials().get("svc-a").getClientUsername());
+        Thread.sleep(300);
+        try {
+            client.getServicesCredentials();
+            fail("Expected the revalidation to fail once the sidecar is gone");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testMalformedManifest() throws IOException {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), "{\"solace-pubsub\": [");
+        sidecar = startSidecar("tcp://127.0.0.1:0");
+        SolaceServicesSidecarClient client = new SolaceServicesSidecarClient(sidecar.getAddress());
+        try {
+            client.getServicesCredentials();
+            fail("Expected the sidecar to report its failure to load the manifest");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Keeps serving the last good services once the manifest breaks again
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        sidecar.poll();
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), "{\"solace-pubsub\": [");
+        sidecar.poll();
+        assertEquals("user-a", client.getServicesCredentials().get("svc-a").getClientUsername());
+    }
+
+    @Test
+    public void testTcpRequiresSecret() throws IOException {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        System.clearProperty(SolaceEnv.SOLACE_SERVICES_SIDECAR_SECRET.name());
+        try {
+            sidecar = startSidecar("tcp://127.0.0.1:0");
+            fail("Expected a TCP address to be refused without a shared secret");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        System.setProperty(SolaceEnv.SOLACE_SERVICES_SIDECAR_SECRET.name(), secretFile.toString());
+        sidecar = startSidecar("tcp://127.0.0.1:0");
+        SolaceServicesSidecarClient client = new SolaceServicesSidecarClient(sidecar.getAddress());
+        System.clearProperty(SolaceEnv.SOLACE_SERVICES_SIDECAR_SECRET.name());
+        try {
+            client.getServicesCredentials();
+            fail("Expected the client to refuse a TCP address without a shared secret");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testWrongSecret() throws IOException {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        sidecar = startSidecar("tcp://127.0.0.1:0");
+        SolaceServicesSidecarClient client = new SolaceServicesSidecarClient(sidecar.getAddress());
+
+        Files.write(secretFile, "other-secret".getBytes(StandardCharsets.UTF_8));
+        try {
+            client.getServicesCredentials();
+            fail("Expected the sidecar to reject a client holding another secret");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("rejected the shared secret"));
+        }
+
+        Files.write(secretFile, "shared-secret".getBytes(StandardCharsets.UTF_8));
+        assertEquals("user-a", client.getServicesCredentials().get("svc-a").getClientUsername());
+    }
+
+    @Test
+    public void testForgedResponse() throws Exception {
+        // Listens on the address in place of the sidecar, without knowing the shared secret
+        try (final ServerSocketChannel serverChannel = ServerSocketChannel.open()
+                .bind(new InetSocketAddress("127.0.0.1", 0))) {
+            Thread forger = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (SocketChannel channel = serverChannel.accept()) {
+                        writeFully(channel, SolaceServicesSidecarProtocol.createChallenge());
+                        channel.read(ByteBuffer.allocate(SolaceServicesSidecarProtocol.SIGNED_REQUEST_LENGTH));
+                        SolaceServiceCredentialsImpl forgedCreds = createService("svc-a", "user-a");
+                        forgedCreds.setSmfHosts(Collections.singletonList("tcp://forged:55555"));
+                        writeFully(channel, SolaceServicesSidecarProtocol.createResponse(
+                                SolaceServicesSidecarProtocol.STATUS_OK, 1, SolaceServicesSidecarProtocol.encode(
+                                        Collections.<SolaceServiceCredentials>singletonList(forgedCreds))));
+                        writeFully(channel, ByteBuffer.allocate(SolaceServicesSidecarProtocol.MAC_LENGTH));
+                    } catch (IOException e) {
+                        // Failed by the client instead
+                    }
+                }
+            });
+            forger.start();
+
+            int port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+            SolaceServicesSidecarClient client = new SolaceServicesSidecarClient("tcp://127.0.0.1:" + port);
+            try {
+                client.getServicesCredentials();
+                fail("Expected a response which is not signed with the shared secret to be rejected");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("not signed with the shared secret"));
+            }
+            forger.join();
+        }
+    }
+
+    @Test
+    public void testNonLoopbackAddress() throws IOException {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        try {
+            sidecar = startSidecar("tcp://0.0.0.0:0");
+            fail("Expected a sidecar to refuse an address which is not on the loopback interface");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not on the loopback interface"));
+        }
+
+        try {
+            new SolaceServicesSidecarClient("tcp://192.0.2.1:55555").getServicesCredentials();
+            fail("Expected a client to refuse an address which is not on the loopback interface");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not on the loopback interface"));
+        }
+    }
+
+    @Test
+    public void testStalledClientDropped() throws IOException {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        sidecar = startSidecar("tcp://127.0.0.1:0");
+        String hostAndPort = sidecar.getAddress().substring(SolaceServicesSidecarProtocol.TCP_SCHEME.length());
+        try (Socket socket = new Socket("127.0.0.1", Integer.parseInt(hostAndPort.split(":")[1]))) {
+            socket.setSoTimeout((int) SolaceServicesSidecar.EXCHANGE_TIMEOUT_MILLIS * 3);
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < SolaceServicesSidecarProtocol.CHALLENGE_LENGTH; i++) assertTrue(in.read() >= 0);
+
+            // Never sends its request, and is closed once the exchange times out
+            long startTime = System.nanoTime();
+            assertEquals(-1, in.read());
+            assertTrue(System.nanoTime() - startTime >=
+                    TimeUnit.MILLISECONDS.toNanos(SolaceServicesSidecar.EXCHANGE_TIMEOUT_MILLIS / 2));
+        }
+
+        SolaceServicesSidecarClient client = new SolaceServicesSidecarClient(sidecar.getAddress());
+        assertEquals("user-a", client.getServicesCredentials().get("svc-a").getClientUsername());
+    }
+
+    @Test
+    public void testLoaderUsesSidecar() throws IOException {
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        sidecar = startSidecar("tcp://127.0.0.1:0");
+        System.clearProperty(SolaceEnv.SOLCAP_SERVICES.name());
+
+        // Looks up a manifest that is never set, so that any service found came from the sidecar
+        SolaceCredentialsLoader credentialsLoader = createLoader(SolaceEnv.SOLACE_CREDENTIALS);
+        assertFalse(credentialsLoader.manifestExists());
+
+        System.setProperty(SolaceEnv.SOLACE_SERVICES_SIDECAR.name(), sidecar.getAddress());
+        assertTrue(credentialsLoader.manifestExists());
+        assertEquals("user-a", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+        assertEquals("user-a", credentialsLoader.getSolaceServiceInfo(Collections.singletonList("svc-a"))
+                .get("svc-a").getClientUsername());
+
+        // An explicitly set manifest takes precedence over the sidecar
+        System.setProperty(SolaceEnv.SOLACE_CREDENTIALS.name(), createManifest("user-b"));
+        assertEquals("user-b", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+        System.clearProperty(SolaceEnv.SOLACE_CREDENTIALS.name());
+        assertEquals("user-a", credentialsLoader.getSolaceServiceInfo("svc-a").getClientUsername());
+
+        // Falls back to the local manifest while the sidecar is down, once its services are revalidated
+        sidecar.close();
+        sidecar = null;
+        assertTrue(credentialsLoader.manifestExists());
+        credentialsLoader.beforeCheckpoint();
+        assertFalse(credentialsLoader.manifestExists());
+        assertNull(credentialsLoader.getSolaceServiceInfo("svc-a"));
+    }
+
+    @Test
+    public void testUnixDomainSocket() throws IOException {
+        Assume.assumeTrue(SolaceServicesSidecarProtocol.isUnixDomainSocketSupported());
+        System.setProperty(SolaceEnv.SOLCAP_SERVICES.name(), createManifest("user-a"));
+        String socketFile = tmpFolder.getRoot().toPath().resolve("sidecar.sock").toString();
+        sidecar = startSidecar(socketFile);
+        assertEquals(socketFile, sidecar.getAddress());
+        // Bound within a private directory, which is removed once the socket file is in place
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(Paths.get(socketFile)));
+        assertEquals(new HashSet<>(Arrays.asList("sidecar.sock", "sidecar.secret")),
+                new HashSet<>(Arrays.asList(tmpFolder.getRoot().list())));
+
+        Map<String, SolaceServiceCredentials> svcsCreds =
+                new SolaceServicesSidecarClient(sidecar.getAddress()).getServicesCredentials();
+        assertEquals("user-a", svcsCreds.get("svc-a").getClientUsername());
+
+        // Not connected to once anyone else may have replaced it
+        Files.setPosixFilePermissions(Paths.get(socketFile), PosixFilePermissions.fromString("rw-rw-rw-"));
+        try {
+            new SolaceServicesSidecarClient(sidecar.getAddress()).getServicesCredentials();
+            fail("Expected a socket file accessible to other users to be refused");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("accessible to other users"));
+        }
+
+        sidecar.close();
+        sidecar = null;
+        assertFalse(tmpFolder.getRoot().toPath().resolve("sidecar.sock").toFile().exists());
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static SolaceServicesSidecar startSidecar(String address) throws IOException {
+        // Polled explicitly by the tests
+        return SolaceServicesSidecar.start(createLoader(SolaceEnv.SOLCAP_SERVICES), address, Long.MAX_VALUE / 2);
+    }
+
+    private static SolaceCredentialsLoader createLoader(SolaceEnv solaceEnv) {
+        List<Triple<SolaceEnv, SolaceEnvSource, PostProcessor>> searchQueries = new ArrayList<>();
+        searchQueries.add(new ImmutableTriple<>(solaceEnv, SolaceEnvSource.JVM, PostProcessor.NONE));
+        return SolaceCredentialsLoader.createIsolated(new SolaceManifestLoader(searchQueries));
+    }
+
+    private static String createManifest(String clientUsername) {
+        return new SolaceServiceCredentialsWriter(false).write(
+                Collections.<SolaceServiceCredentials>singletonList(createService("svc-a", clientUsername)));
+    }
+
+    private static SolaceServiceCredentialsImpl createService(String id, String clientUsername) {
+        SolaceServiceCredentialsImpl svcCreds = new SolaceServiceCredentialsImpl();
+        svcCreds.setId(id);
+        svcCreds.setClientUsername(clientUsername);
+        svcCreds.setMsgVpnName("vpn");
+        svcCreds.setSmfHosts(Collections.singletonList("tcp://host:55555"));
+        return svcCreds;
+    }
+}
@@ -0,0 +1,109 @@
+package com.solace.services.core.loader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.solace.services.core.model.SolaceServiceCredentials;
+import com.solace.services.core.model.SolaceServiceCredentialsImpl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.runners.Parameterized.Parameter;
+import static org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class SolaceServicesSnapshotTest {
+    private static final String SERVICE_TEMPLATE = "{\"id\": \"%s\", \"msgVpnName\": \"vpn\", \"clientPassword\": \"%s\"}";
+    private static final String VCAP_SERVICE_TEMPLATE = "{\"name\": \"%s\", \"credentials\": {\"clientPassword\": \"%s\"}}";
+
+    @Parameter(0) public String testName;
+    @Parameter(1) public String manifestTemplate;
+    @Parameter(2) public String serviceTemplate;
+    @Parameter(3) public SolaceServicesParser servicesParser;
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> parameterData() {
+        SolaceServicesParser dataBindingParser = new SolaceServicesParser(ObjectMapperSingleton.getInstance());
+        SolaceServicesParser decodingParser = new SolaceServicesParser(new JsonFactory());
+        return Arrays.asList(
+                new Object[]{"List-DataBinding", "[%s, %s, %s]", SERVICE_TEMPLATE, dataBindingParser},
+                new Object[]{"List-Decoder", "[%s, %s, %s]", SERVICE_TEMPLATE, decodingParser},
+                new Object[]{"VCAP-DataBinding", "{\"solace-pubsub\": [%s, %s, %s]}", VCAP_SERVICE_TEMPLATE, dataBindingParser},
+                new Object[]{"VCAP-Decoder", "{\"solace-pubsub\": [%s, %s, %s]}", VCAP_SERVICE_TEMPLATE, decodingParser});
+    }
+
+    @Test
+    public void testRebindOnlyChangedServices() throws IOException {
+        SolaceServicesSnapshot snapshot = SolaceServicesSnapshot.take(servicesParser,
+                createManifest("pass-a", "pass-b", "pass-c"), null);
+        assertEquals(3, snapshot.svcsCreds.size());
+
+        SolaceServicesSnapshot newSnapshot = SolaceServicesSnapshot.take(servicesParser,
+                createManifest("pass-a", "rotated-b", "pass-c"), snapshot);
+        Map<String, SolaceServiceCredentials> svcsCreds = snapshot.svcsCreds;
+        Map<String, SolaceServiceCredentials> newSvcsCreds = newSnapshot.svcsCreds;
+
+        assertEquals(3, newSvcsCreds.size());
+        assertSame(svcsCreds.get("svc-a"), newSvcsCreds.get("svc-a"));
+        assertSame(svcsCreds.get("svc-c"), newSvcsCreds.get("svc-c"));
+        assertNotSame(svcsCreds.get("svc-b"), newSvcsCreds.get("svc-b"));
+        assertEquals("pass-b", svcsCreds.get("svc-b").getClientPassword());
+        assertEquals("rotated-b", newSvcsCreds.get("svc-b").getClientPassword());
+    }
+
+    @Test
+    public void testMatchesFullParse() throws IOException {
+        String manifest = createManifest("pass-a", "pass-b", "pass-c");
+        SolaceServicesSnapshot snapshot = SolaceServicesSnapshot.take(servicesParser, manifest, null);
+        for (SolaceServiceCredentials creds : servicesParser.parse(manifest))
+            assertEquals(creds, snapshot.svcsCreds.get(creds.getId()));
+    }
+
+    @Test
+    public void testWipeReleasedSecrets() throws IOException {
+        SolaceServicesParser offHeapParser;
+        System.setProperty(SolaceCredentialsLoader.OFF_HEAP_SECRETS_PROPERTY, "true");
+        try {
+            offHeapParser = testName.endsWith("Decoder") ?
+                    new SolaceServicesParser(new JsonFactory()) :
+                    new SolaceServicesParser(ObjectMapperSingleton.getInstance());
+        } finally {
+            System.clearProperty(SolaceCredentialsLoader.OFF_HEAP_SECRETS_PROPERTY);
+        }
+
+        Map<String, SolaceServiceCredentials> svcsCreds =
+                offHeapParser.getSnapshot(createManifest("pass-a", "pass-b", "pass-c"));
+        SolaceServiceCredentialsImpl credsB = (SolaceServiceCredentialsImpl) svcsCreds.get("svc-b");
+        assertEquals("pass-b", credsB.getClientPassword());
+        assertFalse(credsB.getClientPasswordSecret().isWiped());
+
+        // Replaced services are left intact for whoever still holds them
+        Map<String, SolaceServiceCredentials> newSvcsCreds =
+                offHeapParser.getSnapshot(createManifest("pass-a", "rotated-b", "pass-c"));
+        assertEquals("pass-b", credsB.getClientPassword());
+        assertFalse(credsB.getClientPasswordSecret().isWiped());
+        assertEquals("pass-a", newSvcsCreds.get("svc-a").getClientPassword());
+        assertEquals("rotated-b", newSvcsCreds.get("svc-b").getClientPassword());
+
+        offHeapParser.clearSnapshot();
+        assertNull(newSvcsCreds.get("svc-a").getClientPassword());
+        assertTrue(((SolaceServiceCredentialsImpl) newSvcsCreds.get("svc-b")).getClientPasswordSecret().isWiped());
+    }
+
+    private String createManifest(String passwordA, String passwordB, String passwordC) {
+        return String.format(manifestTemplate,
+                String.format(serviceTemplate, "svc-a", passwordA),
+                String.format(serviceTemplate, "svc-b", passwordB),
+                String.format(serviceTemplate, "svc-c", passwordC));
+    }
+}
@@ -0,0 +1,176 @@
+package com.solace.services.core.loader;
+
+import com.solace.services.core.model.SolaceServiceCredentials;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SolaceTenantCredentialsCacheTest {
+    @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testTenantIsolation() {
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(100, 0, TimeUnit.SECONDS);
+
+        Map<String, SolaceServiceCredentials> svcsCredsA = cache.getAllSolaceServiceInfo("tenant-a", payload("svc-a"));
+        Map<String, SolaceServiceCredentials> svcsCredsB = cache.getAllSolaceServiceInfo("tenant-b", payload("svc-b"));
+        assertEquals(Collections.singleton("svc-a"), svcsCredsA.keySet());
+        assertEquals(Collections.singleton("svc-b"), svcsCredsB.keySet());
+        assertNull(cache.getSolaceServiceInfo("tenant-a", payload("svc-a"), "svc-b"));
+    }
+
+    @Test
+    public void testTenantServicesHome() throws IOException {
+        File tenantHome = tmpFolder.newFolder();
+        Files.write(new File(tenantHome, SolaceManifestLoader.MANIFEST_FILE_NAME).toPath(),
+                "[{\"id\": \"svc-1\"}, {\"id\": \"svc-2\"}]".getBytes());
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(100, 0, TimeUnit.SECONDS);
+
+        Map<String, String> tenantEnv =
+                Collections.singletonMap(SolaceTenantCredentialsCache.SOLACE_SERVICES_HOME, tenantHome.getAbsolutePath());
+        assertEquals(2, cache.getAllSolaceServiceInfo("tenant", tenantEnv).size());
+        assertEquals(2, cache.getWeight());
+    }
+
+    @Test
+    public void testDuplicateIds() {
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(100, 0, TimeUnit.SECONDS);
+        Map<String, String> tenantEnv = Collections.singletonMap(SolaceTenantCredentialsCache.SOLCAP_SERVICES,
+                "[{\"id\": \"svc-1\", \"clientUsername\": \"first\"}, " +
+                        "{\"id\": \"svc-1\", \"clientUsername\": \"last\"}]");
+
+        // As with a loader's lookups, the last occurrence of an ID is used
+        assertEquals("last", cache.getSolaceServiceInfo("tenant", tenantEnv, "svc-1").getClientUsername());
+        assertEquals(1, cache.getWeight());
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(100, 0, TimeUnit.SECONDS);
+
+        cache.getAllSolaceServiceInfo("tenant", payload("svc-1"));
+        cache.getAllSolaceServiceInfo("tenant", payload("svc-1"));
+        cache.getSolaceServiceInfo("tenant", payload("svc-1"), "svc-1");
+        assertEquals(2, cache.getStats().getHitCount());
+        assertEquals(1, cache.getStats().getMissCount());
+        assertEquals(1, cache.getStats().getLoadCount());
+
+        // Changed sources replace the tenant
+        assertTrue(cache.getAllSolaceServiceInfo("tenant", payload("svc-2")).containsKey("svc-2"));
+        assertEquals(2, cache.getStats().getMissCount());
+        assertEquals(2, cache.getStats().getLoadCount());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getWeight());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(3, 0, TimeUnit.SECONDS);
+
+        cache.getAllSolaceServiceInfo("tenant-a", payload("svc-1"));
+        cache.getAllSolaceServiceInfo("tenant-b", payload("svc-1"));
+        cache.getAllSolaceServiceInfo("tenant-c", payload("svc-1"));
+        cache.getAllSolaceServiceInfo("tenant-a", payload("svc-1"));
+        cache.getAllSolaceServiceInfo("tenant-d", payload("svc-1", "svc-2"));
+
+        assertEquals(2, cache.getStats().getEvictionCount());
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getWeight());
+
+        // Tenant A was used more recently than tenants B and C
+        long loadCount = cache.getStats().getLoadCount();
+        cache.getAllSolaceServiceInfo("tenant-a", payload("svc-1"));
+        assertEquals(loadCount, cache.getStats().getLoadCount());
+    }
+
+    @Test
+    public void testOverweightTenant() {
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(1, 0, TimeUnit.SECONDS);
+
+        assertEquals(2, cache.getAllSolaceServiceInfo("tenant", payload("svc-1", "svc-2")).size());
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getStats().getEvictionCount());
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(100, 50, TimeUnit.MILLISECONDS);
+
+        cache.getAllSolaceServiceInfo("tenant-a", payload("svc-1"));
+        cache.getAllSolaceServiceInfo("tenant-b", payload("svc-1"));
+        Thread.sleep(100);
+
+        cache.getAllSolaceServiceInfo("tenant-a", payload("svc-1"));
+        assertEquals(1, cache.getStats().getExpirationCount());
+        assertEquals(3, cache.getStats().getLoadCount());
+
+        cache.cleanUp();
+        assertEquals(2, cache.getStats().getExpirationCount());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getWeight());
+    }
+
+    @Test
+    public void testInvalidate() {
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(100, 0, TimeUnit.SECONDS);
+        cache.getAllSolaceServiceInfo("tenant-a", payload("svc-1"));
+        cache.getAllSolaceServiceInfo("tenant-b", payload("svc-1", "svc-2"));
+
+        cache.invalidate("tenant-b");
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getWeight());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testMissingManifest() {
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(100, 0, TimeUnit.SECONDS);
+        assertTrue(cache.getAllSolaceServiceInfo("tenant", Collections.<String, String>emptyMap()).isEmpty());
+        assertEquals(1, cache.getWeight());
+    }
+
+    @Test
+    public void testMalformedManifest() {
+        SolaceTenantCredentialsCache cache = new SolaceTenantCredentialsCache(100, 0, TimeUnit.SECONDS);
+        try {
+            cache.getAllSolaceServiceInfo("tenant",
+                    Collections.singletonMap(SolaceTenantCredentialsCache.SOLCAP_SERVICES, "{\"id\": \"svc-1\""));
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        assertEquals(1, cache.getStats().getLoadFailureCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedSource() {
+        new SolaceTenantCredentialsCache(100, 0, TimeUnit.SECONDS)
+                .getAllSolaceServiceInfo("tenant", Collections.singletonMap("SOLACE_CREDENTIALS", "{}"));
+    }
+
+    private static Map<String, String> payload(String... serviceIds) {
+        StringBuilder manifest = new StringBuilder("[");
+        for (int i = 0; i < serviceIds.length; i++) {
+            if (i > 0) manifest.append(',');
+            manifest.append("{\"id\": \"").append(serviceIds[i]).append("\"}");
+        }
+        return Collections.singletonMap(SolaceTenantCredentialsCache.SOLCAP_SERVICES, manifest.append(']').toString());
+    }
+}
@@ -0,0 +1,62 @@
+package com.solace.services.core.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SolaceSecretTest {
+
+    @Test
+    public void testReveal() {
+        SolaceSecret secret = SolaceSecret.of("sample-password");
+        assertEquals("sample-password", secret.reveal());
+        assertArrayEquals("sample-password".toCharArray(), secret.getChars());
+        assertEquals(15, secret.length());
+        assertNull(SolaceSecret.of(null));
+    }
+
+    @Test
+    public void testOfCharRange() {
+        char[] value = "xxsample-passwordxx".toCharArray();
+        assertEquals("sample-password", SolaceSecret.of(value, 2, 15).reveal());
+    }
+
+    @Test
+    public void testToStringIsMasked() {
+        assertFalse(SolaceSecret.of("sample-password").toString().contains("sample-password"));
+    }
+
+    @Test
+    public void testEqual() {
+        assertEquals(SolaceSecret.of("sample-password"), SolaceSecret.of("sample-password"));
+        assertEquals(SolaceSecret.of("sample-password").hashCode(), SolaceSecret.of("sample-password").hashCode());
+        assertNotEquals(SolaceSecret.of("sample-password"), SolaceSecret.of("other-password"));
+        assertEquals("sample-password".hashCode(), SolaceSecret.of("sample-password").hashCode());
+        assertTrue(SolaceSecret.of("sample-password").contentEquals("sample-password"));
+        assertFalse(SolaceSecret.of("sample-password").contentEquals("sample-passwor"));
+    }
+
+    @Test
+    public void testWipe() {
+        SolaceSecret secret = SolaceSecret.of("sample-password");
+        secret.wipe();
+        assertTrue(secret.isWiped());
+        assertNull(secret.reveal());
+        assertEquals(0, secret.length());
+        assertNotEquals(SolaceSecret.of("sample-password"), secret);
+        assertEquals(0, secret.hashCode());
+        assertTrue(secret.contentEquals((String) null));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetCharsAfterWipe() {
+        SolaceSecret secret = SolaceSecret.of("sample-password");
+        secret.wipe();
+        secret.getChars();
+    }
+}
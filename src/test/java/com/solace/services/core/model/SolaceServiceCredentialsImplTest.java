@@ -7,6 +7,7 @@ import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class SolaceServiceCredentialsImplTest {
@@ -32,6 +33,52 @@ public class SolaceServiceCredentialsImplTest {
         assertEquals(ssi.toString(), otherSsi.toString());
     }
 
+    @Test
+    public void testToStringMasksPasswords() {
+        SolaceServiceCredentialsImpl ssi = new SolaceServiceCredentialsImpl();
+        ssi.setId("svc");
+        ssi.setClientUsername("sample-client-username");
+        ssi.setClientPassword("sample-client-password");
+        ssi.setSmfHosts(Arrays.asList("tcp://a:55555", "tcp://b:55555"));
+        ssi.setManagementPassword("sample-mgmt-password");
+        // Null properties are omitted
+        String expected = "{\"id\":\"svc\",\"clientUsername\":\"sample-client-username\"," +
+                "\"clientPassword\":\"******\",\"smfHosts\":[\"tcp://a:55555\",\"tcp://b:55555\"]," +
+                "\"managementPassword\":\"******\"}";
+        assertEquals(expected, ssi.toString());
+
+        ssi.moveSecretsOffHeap();
+        assertEquals(expected, ssi.toString());
+        assertFalse(getTestSolaceServiceInfo().toString().contains("password\""));
+    }
+
+    @Test
+    public void testMoveSecretsOffHeap() {
+        SolaceServiceCredentialsImpl ssi = getTestSolaceServiceInfo();
+        assertNull(ssi.getClientPasswordSecret());
+        ssi.moveSecretsOffHeap();
+        assertEquals(getTestSolaceServiceInfo(), ssi);
+        assertEquals(getTestSolaceServiceInfo().hashCode(), ssi.hashCode());
+        assertEquals("sample-client-password", ssi.getClientPassword());
+        assertEquals("sample-mgmt-password", ssi.getManagementPassword());
+        assertEquals("sample-dmr-cluster-password", ssi.getDmrClusterPassword());
+
+        SolaceServiceCredentialsImpl otherSsi = getTestSolaceServiceInfo();
+        otherSsi.moveSecretsOffHeap();
+        assertEquals(otherSsi, ssi);
+        otherSsi.setClientPassword("other-client-password");
+        assertFalse(ssi.equals(otherSsi));
+
+        ssi.wipeSecrets();
+        assertNull(ssi.getClientPassword());
+        assertNull(ssi.getManagementPassword());
+        assertNull(ssi.getDmrClusterPassword());
+        assertTrue(ssi.getClientPasswordSecret().isWiped());
+
+        ssi.setClientPassword("new-client-password");
+        assertEquals("new-client-password", ssi.getClientPassword());
+    }
+
     @Test
     public void testIsHA() {
         SolaceServiceCredentialsImpl ssi = getTestSolaceServiceInfo();
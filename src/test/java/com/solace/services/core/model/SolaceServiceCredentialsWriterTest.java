@@ -0,0 +1,80 @@
+package com.solace.services.core.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolaceServiceCredentialsWriterTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testWriteSingle() throws IOException {
+        SolaceServiceCredentialsImpl svcCreds = createCreds("svc-1", "sample-password");
+        String manifest = new SolaceServiceCredentialsWriter(false).write(svcCreds);
+        assertEquals(svcCreds, objectMapper.readValue(manifest, SolaceServiceCredentialsImpl.class));
+    }
+
+    @Test
+    public void testWriteList() throws IOException {
+        List<SolaceServiceCredentialsImpl> svcsCreds =
+                Arrays.asList(createCreds("svc-1", "password-1"), createCreds("svc-2", "password-2"));
+        String manifest = new SolaceServiceCredentialsWriter(false).write(svcsCreds);
+        assertEquals(svcsCreds, Arrays.asList(objectMapper.readValue(manifest, SolaceServiceCredentialsImpl[].class)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SolaceServiceCredentialsWriter(false).write(svcsCreds, out);
+        assertEquals(manifest, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBufferReuse() {
+        SolaceServiceCredentialsWriter writer = new SolaceServiceCredentialsWriter(false);
+        String manifest = writer.write(createCreds("svc-1", "sample-password"));
+        writer.write(Collections.singletonMap("svc-2", createCreds("svc-2", "other-password")));
+        assertEquals(manifest, writer.write(createCreds("svc-1", "sample-password")));
+    }
+
+    @Test
+    public void testRedacted() {
+        SolaceServiceCredentialsImpl svcCreds = createCreds("svc-1", "sample-password");
+        String manifest = new SolaceServiceCredentialsWriter(true).write(svcCreds);
+        assertFalse(manifest.contains("sample-password"));
+        assertTrue(manifest.contains("\"clientPassword\":\"" + SolaceSecret.MASK + "\""));
+        assertFalse(manifest.contains("managementPassword"));
+    }
+
+    @Test
+    public void testWriteOffHeapSecrets() throws IOException {
+        SolaceServiceCredentialsImpl svcCreds = createCreds("svc-1", "sample-password");
+        svcCreds.moveSecretsOffHeap();
+        String manifest = new SolaceServiceCredentialsWriter(false).write(svcCreds);
+        assertEquals(createCreds("svc-1", "sample-password"),
+                objectMapper.readValue(manifest, SolaceServiceCredentialsImpl.class));
+        assertFalse(new SolaceServiceCredentialsWriter(true).write(svcCreds).contains("sample-password"));
+
+        svcCreds.wipeSecrets();
+        assertFalse(new SolaceServiceCredentialsWriter(false).write(svcCreds).contains("clientPassword"));
+    }
+
+    private SolaceServiceCredentialsImpl createCreds(String id, String clientPassword) {
+        SolaceServiceCredentialsImpl svcCreds = new SolaceServiceCredentialsImpl();
+        svcCreds.setId(id);
+        svcCreds.setClientUsername("sample-client-username");
+        svcCreds.setClientPassword(clientPassword);
+        svcCreds.setMsgVpnName("sample-msg-vpn");
+        svcCreds.setSmfHosts(Arrays.asList("tcp://192.168.1.50:7000", "tcp://192.168.1.51:7000"));
+        svcCreds.setMqttWssUris(Collections.<String>emptyList());
+        svcCreds.setActiveManagementHostname("vmr-medium-web");
+        return svcCreds;
+    }
+}